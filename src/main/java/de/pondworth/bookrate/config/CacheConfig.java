@@ -0,0 +1,20 @@
+package de.pondworth.bookrate.config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * Aktiviert Spring Caching. Größe, TTL und Statistiken des Caches kommen aus
+ * spring.cache.caffeine.spec in der application.properties.
+ * Der Cache-Advice liegt außen um @Transactional: ein @CacheEvict läuft erst nach dem Commit (sonst könnte ein
+ * anderer Leser zwischen Evict und Commit den alten Stand wieder in den Cache laden), und ein Treffer braucht
+ * gar keine Transaktion.
+ */
+@Configuration
+@EnableCaching(order = Ordered.LOWEST_PRECEDENCE - 1)
+public class CacheConfig {
+
+    // Read-Through-Cache für BookService.getBookById (Schlüssel: Buch-ID)
+    public static final String BOOKS = "books";
+}
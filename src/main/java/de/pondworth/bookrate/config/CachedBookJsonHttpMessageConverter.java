@@ -0,0 +1,126 @@
+package de.pondworth.bookrate.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import de.pondworth.bookrate.model.Book;
+import de.pondworth.bookrate.service.BookChangedEvent;
+import de.pondworth.bookrate.service.CatalogGeneration;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.lang.Nullable;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.util.List;
+
+/**
+ * Schreibt List&lt;Book&gt; als JSON aus fertig serialisierten Büchern: pro Buch liegen die JSON-Bytes in einem
+ * Caffeine-Cache, gültig für genau eine Version. Eine Liste ist dann nur noch "[", die Bytes der Bücher mit ","
+ * dazwischen und "]"; Jackson läuft nur für neue oder geänderte Bücher.
+ * Gilt für alle Listen-Endpunkte mit List&lt;Book&gt; (Liste, Filter, Suche, Query), andere Typen, CBOR und Smile
+ * schreiben weiter die Jackson-Konverter. Voraussetzung: jede Änderung an einem Buch erhöht seine Version
+ * (Update über JPA und PATCH tun das).
+ */
+public class CachedBookJsonHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+    private final ObjectWriter writer;
+    // Buch-ID -> Bytes einer Version; ein Eintrag mit anderer Version wird beim nächsten Schreiben ersetzt
+    private final Cache<Long, SerializedBook> cache;
+
+    public CachedBookJsonHttpMessageConverter(ObjectMapper objectMapper, long maximumSize) {
+        super(MediaType.APPLICATION_JSON);
+        this.writer = objectMapper.writerFor(Book.class);
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+    }
+
+    Cache<Long, SerializedBook> cache() {
+        return cache;
+    }
+
+    // Geänderte und gelöschte Bücher sofort freigeben, statt sie bis zur Verdrängung zu halten
+    @Order(CatalogGeneration.BEFORE_GENERATION)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        if (event.id() != null) {
+            cache.invalidate(event.id());
+        }
+    }
+
+    @Override
+    public boolean canWrite(@Nullable Type type, Class<?> clazz, @Nullable MediaType mediaType) {
+        return isBookList(type) && canWrite(mediaType);
+    }
+
+    // Nur über canWrite mit Typ: am Laufzeittyp List ist nicht zu erkennen, ob Bücher darin stehen
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return false;
+    }
+
+    @Override
+    public boolean canRead(Type type, @Nullable Class<?> contextClass, @Nullable MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public Object read(Type type, @Nullable Class<?> contextClass, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Nur zum Schreiben von Buchlisten", inputMessage);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Nur zum Schreiben von Buchlisten", inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(Object books, @Nullable Type type, HttpOutputMessage outputMessage) throws IOException {
+        OutputStream body = outputMessage.getBody();
+        body.write('[');
+        boolean first = true;
+        for (Object book : (List<?>) books) {
+            if (!first) {
+                body.write(',');
+            }
+            first = false;
+            body.write(serialize((Book) book));
+        }
+        body.write(']');
+    }
+
+    byte[] serialize(Book book) throws IOException {
+        // Noch nicht gespeichert: keine ID, unter der es sich merken ließe
+        if (book.getId() == null) {
+            return writer.writeValueAsBytes(book);
+        }
+        SerializedBook cached = cache.getIfPresent(book.getId());
+        if (cached != null && cached.version() == book.getVersion()) {
+            return cached.json();
+        }
+        byte[] json = writer.writeValueAsBytes(book);
+        cache.put(book.getId(), new SerializedBook(book.getVersion(), json));
+        return json;
+    }
+
+    private static boolean isBookList(@Nullable Type type) {
+        if (type == null) {
+            return false;
+        }
+        ResolvableType resolved = ResolvableType.forType(type);
+        return List.class.isAssignableFrom(resolved.toClass()) && resolved.asCollection().resolveGeneric(0) == Book.class;
+    }
+
+    record SerializedBook(long version, byte[] json) {
+    }
+}
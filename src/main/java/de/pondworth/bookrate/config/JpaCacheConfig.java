@@ -0,0 +1,76 @@
+package de.pondworth.bookrate.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.time.Duration;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * Second-Level-Cache für Book und Query-Cache für die Filter (findBooks ohne Suchbegriff), beides über JCache
+ * mit Caffeine. Die Regionen werden hier mit fester Größe angelegt, die Vorgabe von Caffeine wäre unbegrenzt.
+ * Invalidiert wird von Hibernate selbst: jeder Schreibzugriff auf die Tabelle book setzt deren Zeitstempel, ältere
+ * Query-Ergebnisse werden danach nicht mehr verwendet. In der Region book ersetzt bzw. entfernt ein Schreibzugriff
+ * nur das eine Buch, solange er über die Entity läuft. JPQL-/Criteria-Updates und -Deletes leeren dagegen die ganze
+ * Region; PATCH und DELETE laufen deshalb über die Entity (siehe BookRepositoryCustom).
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(prefix = "bookrate.jpa-cache", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class JpaCacheConfig {
+
+    // Region der Book-Entities (siehe @Cache an Book)
+    public static final String BOOK_REGION = "book";
+
+    // Eigener CacheManager pro Anwendungskontext, damit sich z. B. Tests mit verschiedenen Datenbanken nichts teilen
+    @Bean(destroyMethod = "close")
+    CacheManager hibernateCacheManager(
+            @Value("${bookrate.jpa-cache.entities.maximum-size:20000}") long entitySize,
+            @Value("${bookrate.jpa-cache.queries.maximum-size:1000}") long querySize,
+            @Value("${bookrate.jpa-cache.queries.expire-after-write:10m}") Duration queryTtl) {
+        CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager(URI.create("bookrate-jpa-" + UUID.randomUUID()), JpaCacheConfig.class.getClassLoader());
+        cacheManager.createCache(BOOK_REGION, region(entitySize, null));
+        cacheManager.createCache(RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME, region(querySize, queryTtl));
+        // Zeitstempel pro Tabelle: darf nie verdrängt werden, sonst gälten veraltete Query-Ergebnisse wieder als gültig
+        cacheManager.createCache(RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME, region(null, null));
+        return cacheManager;
+    }
+
+    @Bean
+    HibernatePropertiesCustomizer hibernateCacheCustomizer(CacheManager hibernateCacheManager) {
+        return properties -> {
+            properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+            properties.put(AvailableSettings.USE_QUERY_CACHE, true);
+            properties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+            properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+            // Alle Regionen sind oben angelegt, eine fehlende wäre ein Fehler in der Konfiguration
+            properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+        };
+    }
+
+    // Store-by-Reference: Hibernate legt ohnehin unveränderliche, zerlegte Einträge ab, eine Kopie pro Zugriff wäre umsonst
+    private static CaffeineConfiguration<Object, Object> region(Long maximumSize, Duration expireAfterWrite) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setStoreByValue(false);
+        configuration.setStatisticsEnabled(true);
+        if (maximumSize != null) {
+            configuration.setMaximumSize(OptionalLong.of(maximumSize));
+        }
+        if (expireAfterWrite != null) {
+            configuration.setExpireAfterWrite(OptionalLong.of(expireAfterWrite.toNanos()));
+        }
+        return configuration;
+    }
+}
@@ -0,0 +1,77 @@
+package de.pondworth.bookrate.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Binäre Antwortformate per Content Negotiation: mit "Accept: application/cbor" bzw.
+ * "Accept: application/x-jackson-smile" liefert die API CBOR oder Smile statt JSON, ohne Accept-Header bleibt es JSON.
+ * Beide Mapper kommen aus dem Jackson-Builder von Spring Boot und schreiben damit dieselben Felder wie JSON.
+ * JSON-Listen von Büchern schreibt der CachedBookJsonHttpMessageConverter aus zwischengespeicherten Bytes pro Buch.
+ * Gzip-Kompression großer Antworten: server.compression.* in der application.properties.
+ */
+@Configuration(proxyBeanMethods = false)
+public class MessageFormatConfig implements WebMvcConfigurer {
+
+    public static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+
+    // Ersetzt den Standard-Konverter von Spring MVC, der die spring.jackson.*-Einstellungen nicht kennt
+    @Bean
+    MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+
+    // Wiederkehrende Werte (Genre, Status, Autor) stehen in Listen nur einmal im Body, danach als Rückverweis
+    @Bean
+    MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        SmileFactory factory = SmileFactory.builder()
+                .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+                .build();
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(factory).build());
+    }
+
+    // Steht als eigene Bean vor dem JSON-Konverter von Spring Boot; Treffer und Fehlschläge unter cache.*?tag=cache:book-json.
+    // Dieselben Tag-Schlüssel wie die Meter des books-Caches von Spring, sonst verwirft Prometheus eine der beiden Reihen
+    @Bean
+    @ConditionalOnProperty(prefix = "bookrate.json-cache", name = "enabled", havingValue = "true", matchIfMissing = true)
+    CachedBookJsonHttpMessageConverter cachedBookJsonHttpMessageConverter(
+            ObjectMapper objectMapper,
+            ObjectProvider<MeterRegistry> meterRegistry,
+            @Value("${bookrate.json-cache.maximum-size:100000}") long maximumSize) {
+        CachedBookJsonHttpMessageConverter converter = new CachedBookJsonHttpMessageConverter(objectMapper, maximumSize);
+        meterRegistry.ifAvailable(registry -> CaffeineCacheMetrics.monitor(registry, converter.cache(), "book-json",
+                Tags.of("cache.manager", "bookJson", "name", "book-json")));
+        return converter;
+    }
+
+    // Dieselbe URL liefert je nach Accept ein anderes Format: Caches dürfen die Varianten nicht vermischen
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new HandlerInterceptor() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+                response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+                return true;
+            }
+        }).addPathPatterns("/api/**");
+    }
+}
@@ -0,0 +1,39 @@
+package de.pondworth.bookrate.config;
+
+import de.pondworth.bookrate.metrics.RepositoryMetricsInterceptor;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+
+import java.time.Duration;
+
+/**
+ * Hängt an jedes Spring-Data-Repository den RepositoryMetricsInterceptor (Ergebnisgrößen und Slow-Query-Log).
+ * Histogramme für Endpunkte, Repository-Laufzeiten und Hikari-Wartezeit kommen aus management.metrics.* in der
+ * application.properties.
+ */
+@Configuration
+public class MetricsConfig {
+
+    // static, damit der BeanPostProcessor nicht die ganze Konfiguration vorzeitig initialisiert;
+    // die MeterRegistry wird erst beim ersten Aufruf geholt
+    @Bean
+    static BeanPostProcessor repositoryMetricsPostProcessor(ObjectProvider<MeterRegistry> registry, Environment environment) {
+        Duration threshold = environment.getProperty("bookrate.metrics.slow-query-threshold", Duration.class, Duration.ofMillis(200));
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> factoryBean) {
+                    factoryBean.addRepositoryFactoryCustomizer(factory -> factory.addRepositoryProxyPostProcessor(
+                            (proxy, information) -> proxy.addAdvice(new RepositoryMetricsInterceptor(
+                                    information.getRepositoryInterface().getSimpleName(), registry::getObject, threshold))));
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,78 @@
+package de.pondworth.bookrate.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.persistence.EntityManagerFactory;
+import de.pondworth.bookrate.datasource.ReadYourWritesFilter;
+import de.pondworth.bookrate.datasource.ReplicaAwareJpaTransactionManager;
+import de.pondworth.bookrate.datasource.ReplicaRoutingDataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.transaction.TransactionManagerCustomizers;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.orm.jpa.JpaTransactionManager;
+
+import javax.sql.DataSource;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Properties;
+
+/**
+ * Lesereplikat: aktiv, sobald bookrate.datasource.replica.jdbc-url gesetzt ist. Dann ersetzt diese Konfiguration
+ * die DataSource von Spring Boot durch zwei Hikari-Pools (Primary aus spring.datasource.*, Replikat mit
+ * bookrate.datasource.replica.*) hinter einem Routing: read-only-Transaktionen lesen vom Replikat, alles andere
+ * und alle Requests im Read-your-writes-Fenster nach einem Schreibzugriff laufen auf dem Primary.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(prefix = "bookrate.datasource.replica", name = "jdbc-url")
+public class ReplicaDataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("bookrate-primary");
+        return dataSource;
+    }
+
+    // Benutzer, Passwort und Treiber-Einstellungen (z. B. prepareThreshold) wie beim Primary, sofern nicht überschrieben
+    @Bean
+    @ConfigurationProperties("bookrate.datasource.replica")
+    HikariDataSource replicaDataSource(DataSourceProperties properties,
+                                       @Qualifier("primaryDataSource") HikariDataSource primary) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("bookrate-replica");
+        dataSource.setReadOnly(true);
+        dataSource.setDataSourceProperties((Properties) primary.getDataSourceProperties().clone());
+        return dataSource;
+    }
+
+    // Lazy: die Verbindung wird erst beim ersten Statement geholt, wenn das read-only-Flag der Transaktion feststeht
+    @Bean
+    @Primary
+    DataSource dataSource(@Qualifier("primaryDataSource") HikariDataSource primary,
+                          @Qualifier("replicaDataSource") HikariDataSource replica) {
+        return new LazyConnectionDataSourceProxy(new ReplicaRoutingDataSource(primary, replica));
+    }
+
+    // Ersetzt den JpaTransactionManager von Spring Boot: Lesen vom Replikat füllt die Hibernate-Caches nicht
+    @Bean
+    JpaTransactionManager transactionManager(EntityManagerFactory entityManagerFactory,
+                                             ObjectProvider<TransactionManagerCustomizers> customizers) {
+        JpaTransactionManager transactionManager = new ReplicaAwareJpaTransactionManager(entityManagerFactory);
+        customizers.ifAvailable(customizer -> customizer.customize(transactionManager));
+        return transactionManager;
+    }
+
+    @Bean
+    ReadYourWritesFilter readYourWritesFilter(
+            @Value("${bookrate.datasource.read-your-writes-window:5s}") Duration window) {
+        return new ReadYourWritesFilter(window, Clock.systemUTC());
+    }
+}
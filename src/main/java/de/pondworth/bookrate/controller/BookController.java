@@ -1,31 +1,90 @@
 package de.pondworth.bookrate.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import de.pondworth.bookrate.model.Book;
+import de.pondworth.bookrate.search.Suggestion;
+import de.pondworth.bookrate.service.BookBatch;
+import de.pondworth.bookrate.service.BookChangeFeed;
+import de.pondworth.bookrate.service.BookFieldsPage;
+import de.pondworth.bookrate.service.BookFilter;
+import de.pondworth.bookrate.service.BookImportService;
+import de.pondworth.bookrate.service.BookPage;
+import de.pondworth.bookrate.service.BookPatch;
 import de.pondworth.bookrate.service.BookService;
+import de.pondworth.bookrate.service.BookSubmission;
+import de.pondworth.bookrate.service.BookWriteBehind;
+import de.pondworth.bookrate.service.BulkImportResult;
+import de.pondworth.bookrate.service.CatalogGeneration;
+import de.pondworth.bookrate.stats.CatalogStats;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
 
 @RestController
 @RequestMapping("/api/books")
-@CrossOrigin
+@CrossOrigin(exposedHeaders = {HttpHeaders.LINK, HttpHeaders.ETAG, HttpHeaders.LOCATION, HttpHeaders.RETRY_AFTER})
 public class BookController {
 
+    // Nach so vielen Zeilen wird der Export an den Client geflusht
+    private static final int EXPORT_FLUSH_ROWS = 500;
+
     private final BookService bookService;
+    private final BookImportService bookImportService;
+    private final ObjectMapper objectMapper;
+    private final CatalogGeneration catalogGeneration;
+    private final BookWriteBehind writeBehind;
+    private final BookChangeFeed changeFeed;
 
-    public BookController(BookService bookService) {
+    public BookController(BookService bookService, BookImportService bookImportService, ObjectMapper objectMapper,
+                          CatalogGeneration catalogGeneration, BookWriteBehind writeBehind, BookChangeFeed changeFeed) {
         this.bookService = bookService;
+        this.bookImportService = bookImportService;
+        this.objectMapper = objectMapper;
+        this.catalogGeneration = catalogGeneration;
+        this.writeBehind = writeBehind;
+        this.changeFeed = changeFeed;
     }
 
     // 📘 1. Alle Bücher anzeigen oder nach Rating/Genre filtern
+    // Mit "after" und/oder "limit" wird seitenweise geliefert, die nächste Seite steht im Link-Header
+    // Listen tragen den ETag des Katalogs, bei unverändertem Stand gibt es 304 ohne Datenbankabfrage
+    // (mit Lesereplikat nur im Read-your-writes-Fenster, siehe CatalogGeneration.etag)
     @GetMapping
     public ResponseEntity<List<Book>> getAllBooks(
             @RequestParam(required = false) Integer rating,
-            @RequestParam(required = false) String genre
+            @RequestParam(required = false) String genre,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit,
+            WebRequest request
     ) {
+        if (request.checkNotModified(catalogGeneration.etag())) {
+            return null;
+        }
         try {
+            if (after != null || limit != null) {
+                BookPage page = bookService.getAllBooks(rating, genre, after, limit);
+                return pageResponse(page.books(), page.nextCursor());
+            }
             List<Book> books = bookService.getAllBooks(rating, genre);
             return ResponseEntity.ok(books);
         } catch (IllegalArgumentException e) {
@@ -34,20 +93,30 @@ public class BookController {
     }
 
     // 📘 2. Buch nach ID anzeigen
+    // Schwacher ETag aus ID und Version: kommt der Stand aus dem Cache, kostet ein 304 keine Abfrage
     @GetMapping("/{id}")
-    public ResponseEntity<Book> getBookById(@PathVariable Long id) {
+    public ResponseEntity<Book> getBookById(@PathVariable Long id, WebRequest request) {
         try {
-            return bookService.getBookById(id)
-                    .map(ResponseEntity::ok)
-                    .orElse(ResponseEntity.notFound().build());
+            Optional<Book> book = bookService.getBookById(id);
+            if (book.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            if (request.checkNotModified(bookEtag(id, book.get().getVersion()))) {
+                return null;
+            }
+            return ResponseEntity.ok(book.get());
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().build();
         }
     }
 
     // 📘 3. Neues Buch hinzufügen
+    // Im Write-Behind-Modus: 202 mit Tracking-ID, gespeichert wird gesammelt im Hintergrund (siehe 16.)
     @PostMapping
-    public ResponseEntity<Book> createBook(@RequestBody Book book) {
+    public ResponseEntity<?> createBook(@RequestBody Book book) {
+        if (writeBehind.isEnabled()) {
+            return submitBook(book);
+        }
         try {
             Book createdBook = bookService.createBook(book);
             return ResponseEntity.status(HttpStatus.CREATED).body(createdBook);
@@ -79,23 +148,383 @@ public class BookController {
     }
 
     // 🔍 6. Suche nach Titel oder Autor
+    // Mit fuzzy=true fehlertolerant ("tolkein" findet "Tolkien"), nach Anzahl der Tippfehler sortiert, ohne Cursor
     @GetMapping("/search")
-    public ResponseEntity<List<Book>> searchBooks(@RequestParam String query) {
+    public ResponseEntity<List<Book>> searchBooks(
+            @RequestParam String query,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(defaultValue = "false") boolean fuzzy,
+            WebRequest request
+    ) {
+        if (fuzzy && after != null) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (request.checkNotModified(catalogGeneration.etag())) {
+            return null;
+        }
         try {
+            if (fuzzy) {
+                return ResponseEntity.ok(bookService.searchBooksFuzzy(query, limit));
+            }
+            if (after != null || limit != null) {
+                BookPage page = bookService.searchBooks(query, after, limit);
+                return pageResponse(page.books(), page.nextCursor());
+            }
             List<Book> books = bookService.searchBooks(query);
             return ResponseEntity.ok(books);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "5")
+                    .build();
         }
     }
 
     // 🔍 7. Filtern nach Genre und/oder Status
     @GetMapping("/filter")
     public ResponseEntity<List<Book>> filterBooks(
+            @RequestParam(required = false) String genre,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit,
+            WebRequest request
+    ) {
+        if (request.checkNotModified(catalogGeneration.etag())) {
+            return null;
+        }
+        try {
+            if (after != null || limit != null) {
+                BookPage page = bookService.filterBooks(genre, status, after, limit);
+                return pageResponse(page.books(), page.nextCursor());
+            }
+            List<Book> books = bookService.filterBooks(genre, status);
+            return ResponseEntity.ok(books);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // 📦 8. Export als NDJSON (ein Buch pro Zeile), direkt aus dem Datenbank-Cursor gestreamt
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportBooks(
             @RequestParam(required = false) String genre,
             @RequestParam(required = false) String status
     ) {
-        List<Book> books = bookService.filterBooks(genre, status);
-        return ResponseEntity.ok(books);
+        ObjectWriter writer = objectMapper.writerFor(Book.class);
+        StreamingResponseBody body = out -> {
+            int[] rows = {0};
+            bookService.exportBooks(genre, status, book -> {
+                try {
+                    out.write(writer.writeValueAsBytes(book));
+                    out.write('\n');
+                    if (++rows[0] % EXPORT_FLUSH_ROWS == 0) {
+                        out.flush();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            out.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    // 📦 9. Massenimport als JSON-Array oder NDJSON, Fehler werden pro Zeile gemeldet
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<BulkImportResult> importBooks(HttpServletRequest request) throws IOException {
+        // readValues liest sowohl ein Array als auch einzelne Objekte hintereinander (NDJSON),
+        // ohne den ganzen Request-Body in den Speicher zu laden
+        try (MappingIterator<Book> books = objectMapper.readerFor(Book.class).readValues(request.getInputStream())) {
+            BulkImportResult result = bookImportService.importBooks(rows(books));
+            return ResponseEntity.ok(result);
+        }
+    }
+
+    // Lesefehler von Jackson als IllegalArgumentException weitergeben, damit der Import sie der Zeile zuordnet
+    private static Iterator<Book> rows(MappingIterator<Book> books) {
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                try {
+                    return books.hasNextValue();
+                } catch (IOException e) {
+                    throw parseError(e);
+                }
+            }
+
+            @Override
+            public Book next() {
+                try {
+                    return books.nextValue();
+                } catch (IOException e) {
+                    throw parseError(e);
+                }
+            }
+        };
+    }
+
+    private static IllegalArgumentException parseError(IOException e) {
+        String message = e instanceof JsonProcessingException json ? json.getOriginalMessage() : e.getMessage();
+        return new IllegalArgumentException("Ungültiges JSON: " + message);
+    }
+
+    // 📊 10. Statistiken pro Genre und Status (Anzahl, Durchschnitt, Sterne-Verteilung)
+    @GetMapping("/stats")
+    public ResponseEntity<CatalogStats> getStatistics() {
+        try {
+            return ResponseEntity.ok(bookService.getStatistics());
+        } catch (IllegalStateException e) {
+            // Zähler werden direkt nach dem Start noch aufgebaut
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+
+    // 📘 11. Wie 1., aber nur mit den Feldern aus ?fields=id,title,author,rating (die ID ist immer dabei)
+    // Nicht benötigte Spalten (z. B. comment) werden weder gelesen noch serialisiert
+    @GetMapping(params = "fields")
+    public ResponseEntity<List<Map<String, Object>>> getAllBookFields(
+            @RequestParam(required = false) Integer rating,
+            @RequestParam(required = false) String genre,
+            @RequestParam String fields,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit,
+            WebRequest request
+    ) {
+        if (request.checkNotModified(catalogGeneration.etag())) {
+            return null;
+        }
+        try {
+            BookFieldsPage page = bookService.getAllBookFields(rating, genre, fields, after, limit);
+            return pageResponse(page.books(), page.nextCursor());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // 🔍 12. Wie 6., aber nur mit den Feldern aus ?fields=...
+    @GetMapping(value = "/search", params = "fields")
+    public ResponseEntity<List<Map<String, Object>>> searchBookFields(
+            @RequestParam String query,
+            @RequestParam String fields,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit,
+            WebRequest request
+    ) {
+        if (request.checkNotModified(catalogGeneration.etag())) {
+            return null;
+        }
+        try {
+            BookFieldsPage page = bookService.searchBookFields(query, fields, after, limit);
+            return pageResponse(page.books(), page.nextCursor());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // 🔍 13. Wie 7., aber nur mit den Feldern aus ?fields=...
+    @GetMapping(value = "/filter", params = "fields")
+    public ResponseEntity<List<Map<String, Object>>> filterBookFields(
+            @RequestParam(required = false) String genre,
+            @RequestParam(required = false) String status,
+            @RequestParam String fields,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit,
+            WebRequest request
+    ) {
+        if (request.checkNotModified(catalogGeneration.etag())) {
+            return null;
+        }
+        try {
+            BookFieldsPage page = bookService.filterBookFields(genre, status, fields, after, limit);
+            return pageResponse(page.books(), page.nextCursor());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // 🔎 14. Kombinierter Filter: Rating (genau oder minRating/maxRating), Genre, Status und Suchbegriff
+    // in einer Anfrage, sortiert nach ?sort=id|title|author|rating (mit "-" absteigend)
+    @GetMapping("/query")
+    public ResponseEntity<List<Book>> queryBooks(
+            @RequestParam(required = false) Integer rating,
+            @RequestParam(required = false) Integer minRating,
+            @RequestParam(required = false) Integer maxRating,
+            @RequestParam(required = false) String genre,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String query,
+            @RequestParam(required = false) String sort,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit,
+            WebRequest request
+    ) {
+        if (request.checkNotModified(catalogGeneration.etag())) {
+            return null;
+        }
+        try {
+            BookFilter filter = new BookFilter(rating, minRating, maxRating, genre, status, query, sort);
+            BookPage page = bookService.queryBooks(filter, after, limit);
+            return pageResponse(page.books(), page.nextCursor());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // 📘 15. Buch teilweise ändern: nur die Felder im Body
+    // If-Match mit dem ETag aus 2. (W/"id-version") ist Pflicht: 412, wenn das Buch inzwischen geändert wurde
+    @PatchMapping("/{id}")
+    public ResponseEntity<Void> patchBook(
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestBody BookPatch patch
+    ) {
+        if (ifMatch == null) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_REQUIRED).build();
+        }
+        try {
+            OptionalLong version = bookService.patchBook(id, expectedVersion(id, ifMatch), patch);
+            if (version.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.noContent().eTag(bookEtag(id, version.getAsLong())).build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+        }
+    }
+
+    // Schwach wie der Katalog-ETag: JSON, CBOR, Smile und gzip sind gleichwertig, aber nicht byte-gleich
+    private static String bookEtag(Long id, long version) {
+        return "W/\"" + id + "-" + version + "\"";
+    }
+
+    // Version aus dem ETag W/"id-version"; verglichen wird schwach, "id-version" ohne W/ passt also auch.
+    // Ein ETag eines anderen Buchs ist ein Fehler des Clients
+    private static long expectedVersion(Long id, String ifMatch) {
+        String etag = ifMatch.trim();
+        if (etag.startsWith("W/")) {
+            etag = etag.substring(2);
+        }
+        if (etag.length() >= 2 && etag.startsWith("\"") && etag.endsWith("\"")) {
+            etag = etag.substring(1, etag.length() - 1);
+        }
+        String prefix = id + "-";
+        if (etag.startsWith(prefix)) {
+            try {
+                return Long.parseLong(etag.substring(prefix.length()));
+            } catch (NumberFormatException e) {
+                // unten als ungültiger ETag gemeldet
+            }
+        }
+        throw new IllegalArgumentException("If-Match passt nicht zu Buch " + id + ": " + ifMatch);
+    }
+
+    // 📘 16. Stand einer Einreichung aus dem Write-Behind-Modus (PENDING, CREATED mit bookId oder FAILED)
+    @GetMapping("/submissions/{trackingId}")
+    public ResponseEntity<BookSubmission> getSubmission(@PathVariable String trackingId) {
+        return writeBehind.status(trackingId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    // 📘 17. Änderungs-Feed als Server-Sent Events (created, updated, deleted mit ID, Version und Feldern)
+    // Statt getAllBooks zu pollen, bleibt der Client verbunden; nach einem Abbruch setzt er mit Last-Event-ID fort
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamChanges(
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId
+    ) {
+        try {
+            return ResponseEntity.ok()
+                    .cacheControl(CacheControl.noStore())
+                    // nginx würde den Stream sonst puffern
+                    .header("X-Accel-Buffering", "no")
+                    .body(changeFeed.subscribe(lastEventId));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "5")
+                    .build();
+        }
+    }
+
+    // 🔎 18. Autovervollständigung für Titel und Autoren (Präfix, auch ab einem Wortanfang)
+    @GetMapping("/suggest")
+    public ResponseEntity<List<Suggestion>> suggest(
+            @RequestParam String prefix,
+            @RequestParam(required = false) Integer limit,
+            WebRequest request
+    ) {
+        if (request.checkNotModified(catalogGeneration.etag())) {
+            return null;
+        }
+        try {
+            return ResponseEntity.ok(bookService.suggest(prefix, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "5")
+                    .build();
+        }
+    }
+
+    // 📘 19. Mehrere Bücher auf einmal, z. B. für eine Leseliste: GET /batch?ids=1,2,3 statt N Einzelabrufen
+    // Reihenfolge wie angefragt, IDs ohne Buch stehen in "missing"; lange Listen per POST (siehe 20.)
+    @GetMapping("/batch")
+    public ResponseEntity<BookBatch> getBooksBatch(@RequestParam List<Long> ids, WebRequest request) {
+        if (request.checkNotModified(catalogGeneration.etag())) {
+            return null;
+        }
+        return booksBatch(ids);
+    }
+
+    // 📘 20. Wie 19., die IDs als JSON-Array im Body ([1, 2, 3]), wenn sie nicht mehr in die URL passen
+    @PostMapping("/batch")
+    public ResponseEntity<BookBatch> postBooksBatch(@RequestBody List<Long> ids) {
+        return booksBatch(ids);
+    }
+
+    private ResponseEntity<BookBatch> booksBatch(List<Long> ids) {
+        try {
+            return ResponseEntity.ok(bookService.getBooksByIds(ids));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // Puffer voll oder Shutdown: 503 mit Retry-After, damit Clients kurz warten statt sofort erneut zu senden
+    private ResponseEntity<BookSubmission> submitBook(Book book) {
+        try {
+            BookSubmission submission = writeBehind.submit(book);
+            return ResponseEntity.accepted()
+                    .location(ServletUriComponentsBuilder.fromCurrentRequest()
+                            .path("/submissions/{trackingId}")
+                            .buildAndExpand(submission.trackingId())
+                            .toUri())
+                    .body(submission);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .build();
+        }
+    }
+
+    // Seite als Liste zurückgeben, die nächste Seite als RFC-8288-Link (rel="next")
+    private <T> ResponseEntity<List<T>> pageResponse(List<T> items, String nextCursor) {
+        if (nextCursor == null) {
+            return ResponseEntity.ok(items);
+        }
+        String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                .replaceQueryParam("after", nextCursor)
+                .build()
+                .toUriString();
+        return ResponseEntity.ok()
+                .header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"")
+                .body(items);
     }
 }
\ No newline at end of file
@@ -0,0 +1,42 @@
+package de.pondworth.bookrate.datasource;
+
+/**
+ * Bindet den aktuellen Thread an den Primary, auch für read-only-Transaktionen.
+ * Gesetzt vom ReadYourWritesFilter für schreibende Requests und für Clients, die kürzlich geschrieben haben:
+ * das Replikat hinkt hinterher, ein eben gespeichertes Buch soll beim nächsten Lesen trotzdem da sein.
+ */
+public final class ReadYourWrites {
+
+    private static final ThreadLocal<Boolean> PINNED = new ThreadLocal<>();
+
+    private ReadYourWrites() {}
+
+    public static boolean isPinned() {
+        return PINNED.get() != null;
+    }
+
+    public static void pin() {
+        PINNED.set(Boolean.TRUE);
+    }
+
+    public static void release() {
+        PINNED.remove();
+    }
+
+    /**
+     * Führt action auf dem Primary aus, z. B. den Aufbau der In-Memory-Indizes beim Start: die werden danach nur
+     * noch über Events nachgeführt und müssen deshalb vom aktuellen Stand ausgehen, nicht von einem verzögerten
+     */
+    public static void onPrimary(Runnable action) {
+        if (isPinned()) {
+            action.run();
+            return;
+        }
+        pin();
+        try {
+            action.run();
+        } finally {
+            release();
+        }
+    }
+}
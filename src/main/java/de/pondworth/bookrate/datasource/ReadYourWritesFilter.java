@@ -0,0 +1,74 @@
+package de.pondworth.bookrate.datasource;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Read-your-writes für das Replikat: Nach einem schreibenden Request bekommt der Client ein Cookie mit dem
+ * Zeitpunkt, bis zu dem seine Lesezugriffe noch vom Primary kommen. Der Request selbst läuft komplett
+ * auf dem Primary (mit Open-in-View hält Hibernate die erste Verbindung bis zum Ende des Requests).
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    public static final String COOKIE = "bookrate-primary-until";
+
+    private static final Set<String> READ_METHODS = Set.of("GET", "HEAD", "OPTIONS");
+
+    private final Duration window;
+    private final Clock clock;
+
+    public ReadYourWritesFilter(Duration window, Clock clock) {
+        this.window = window;
+        this.clock = clock;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        boolean write = !READ_METHODS.contains(request.getMethod());
+        if (write) {
+            // Vor der Verarbeitung setzen, danach ist die Antwort womöglich schon committet
+            Cookie cookie = new Cookie(COOKIE, Long.toString(clock.millis() + window.toMillis()));
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            cookie.setMaxAge((int) Math.max(1, window.toSeconds()));
+            response.addCookie(cookie);
+        }
+        if (!write && !recentlyWrote(request)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        ReadYourWrites.pin();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ReadYourWrites.release();
+        }
+    }
+
+    private boolean recentlyWrote(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return false;
+        }
+        for (Cookie cookie : cookies) {
+            if (COOKIE.equals(cookie.getName())) {
+                try {
+                    return Long.parseLong(cookie.getValue()) > clock.millis();
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+}
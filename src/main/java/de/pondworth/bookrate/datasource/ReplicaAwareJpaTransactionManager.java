@@ -0,0 +1,33 @@
+package de.pondworth.bookrate.datasource;
+
+import jakarta.persistence.CacheStoreMode;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.jpa.SpecHints;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * JpaTransactionManager für den Betrieb mit Lesereplikat: Transaktionen, die vom Replikat lesen, dürfen aus dem
+ * Second-Level-Cache von Hibernate lesen, aber nichts hineinlegen (CacheStoreMode.BYPASS); den Query-Cache lassen
+ * sie ganz aus (siehe BookRepositoryCustomImpl.findBooks). Sonst könnte ein verzögertes Replikat den alten Stand
+ * eines eben geänderten Buchs wieder in den Cache bringen, und auch Clients im Read-your-writes-Fenster bekämen ihn
+ * von dort statt vom Primary.
+ */
+public class ReplicaAwareJpaTransactionManager extends JpaTransactionManager {
+
+    public ReplicaAwareJpaTransactionManager(EntityManagerFactory entityManagerFactory) {
+        super(entityManagerFactory);
+    }
+
+    @Override
+    protected void doBegin(Object transaction, TransactionDefinition definition) {
+        super.doBegin(transaction, definition);
+        EntityManagerHolder holder = (EntityManagerHolder) TransactionSynchronizationManager.getResource(obtainEntityManagerFactory());
+        // Gleiche Regel wie ReplicaRoutingDataSource.currentTarget, nur schon beim Beginn der Transaktion
+        boolean replica = definition.isReadOnly() && !ReadYourWrites.isPinned();
+        // Über die Session-Property, nicht Session.setCacheMode: neue Queries übernehmen ihren Cache-Modus von dort
+        holder.getEntityManager().setProperty(SpecHints.HINT_SPEC_CACHE_STORE_MODE, replica ? CacheStoreMode.BYPASS : CacheStoreMode.USE);
+    }
+}
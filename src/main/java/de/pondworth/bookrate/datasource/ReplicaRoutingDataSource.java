@@ -0,0 +1,38 @@
+package de.pondworth.bookrate.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Leitet read-only-Transaktionen an das Replikat, alles andere an den Primary.
+ * Muss hinter einem LazyConnectionDataSourceProxy stehen: erst beim ersten Statement ist bekannt,
+ * ob die laufende Transaktion read-only ist.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    public enum Target { PRIMARY, REPLICA }
+
+    public ReplicaRoutingDataSource(DataSource primary, DataSource replica) {
+        setTargetDataSources(Map.of(Target.PRIMARY, primary, Target.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return currentTarget();
+    }
+
+    /**
+     * Ziel für den aktuellen Thread: Replikat nur in read-only-Transaktionen ohne Read-your-writes-Bindung
+     */
+    public static Target currentTarget() {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly() && !ReadYourWrites.isPinned()) {
+            return Target.REPLICA;
+        }
+        return Target.PRIMARY;
+    }
+}
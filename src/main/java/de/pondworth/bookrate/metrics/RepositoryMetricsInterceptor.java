@@ -0,0 +1,98 @@
+package de.pondworth.bookrate.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Slice;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Misst pro Repository-Methode, wie viele Zeilen zurückkommen, und loggt langsame Aufrufe mit ihren Parametern.
+ * Die Laufzeit selbst misst Spring Boot bereits als Timer "spring.data.repository.invocations".
+ */
+public class RepositoryMetricsInterceptor implements MethodInterceptor {
+
+    public static final String RESULTS = "bookrate.repository.results";
+
+    private static final Logger log = LoggerFactory.getLogger(RepositoryMetricsInterceptor.class);
+
+    // Sehr lange Parameter (z. B. 1000 IDs für findAllById) werden im Log abgeschnitten
+    private static final int MAX_LOGGED_ARGUMENTS = 200;
+
+    private final String repository;
+    private final Supplier<MeterRegistry> registry;
+    private final long slowQueryNanos;
+    private final Map<Method, DistributionSummary> results = new ConcurrentHashMap<>();
+
+    /**
+     * @param slowQueryThreshold ab dieser Dauer wird geloggt, Duration.ZERO schaltet das Log ab
+     */
+    public RepositoryMetricsInterceptor(String repository, Supplier<MeterRegistry> registry, Duration slowQueryThreshold) {
+        this.repository = repository;
+        this.registry = registry;
+        this.slowQueryNanos = slowQueryThreshold.toNanos();
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        long start = System.nanoTime();
+        Object result = invocation.proceed();
+        long nanos = System.nanoTime() - start;
+
+        int rows = rows(result);
+        if (rows >= 0) {
+            results.computeIfAbsent(invocation.getMethod(), this::summary).record(rows);
+        }
+        if (slowQueryNanos > 0 && nanos >= slowQueryNanos && !hasCallback(invocation.getArguments())) {
+            log.warn("Langsame Abfrage {}.{} ({} ms, {} Zeilen), Parameter: {}", repository, invocation.getMethod().getName(),
+                    nanos / 1_000_000, rows < 0 ? "?" : rows, abbreviate(Arrays.deepToString(invocation.getArguments())));
+        }
+        return result;
+    }
+
+    private DistributionSummary summary(Method method) {
+        return DistributionSummary.builder(RESULTS)
+                .description("Anzahl der Zeilen pro Repository-Aufruf")
+                .baseUnit("rows")
+                .tag("repository", repository)
+                .tag("method", method.getName())
+                .publishPercentileHistogram()
+                .maximumExpectedValue(1_000_000.0)
+                .register(registry.get());
+    }
+
+    // -1, wenn sich die Größe nicht ohne Seiteneffekt bestimmen lässt (Streams, void)
+    private static int rows(Object result) {
+        if (result instanceof Collection<?> collection) {
+            return collection.size();
+        }
+        if (result instanceof Slice<?> slice) {
+            return slice.getNumberOfElements();
+        }
+        if (result instanceof Optional<?> optional) {
+            return optional.isPresent() ? 1 : 0;
+        }
+        return -1;
+    }
+
+    // Bei forEachBook zählt auch die Arbeit im Callback (z. B. der Export zum Client) zur Laufzeit
+    private static boolean hasCallback(Object[] arguments) {
+        return Arrays.stream(arguments).anyMatch(Consumer.class::isInstance);
+    }
+
+    private static String abbreviate(String arguments) {
+        return arguments.length() <= MAX_LOGGED_ARGUMENTS ? arguments : arguments.substring(0, MAX_LOGGED_ARGUMENTS) + "...";
+    }
+}
@@ -1,20 +1,50 @@
 package de.pondworth.bookrate.model;
 
+import de.pondworth.bookrate.repository.BookDictionaryListener;
+import de.pondworth.bookrate.repository.GenreConverter;
+import de.pondworth.bookrate.repository.StatusConverter;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
 
+// Indizes für die Filter inkl. Keyset-Pagination (WHERE ... AND id > ? ORDER BY id):
+// (genre, status) deckt auch reine Genre-Filter ab, (rating, genre) auch reine Rating-Filter
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_book_genre_status", columnList = "genre_id, status_id, id"),
+        @Index(name = "idx_book_rating_genre", columnList = "rating, genre_id, id"),
+        @Index(name = "idx_book_status", columnList = "status_id, id")
+})
+@EntityListeners(BookDictionaryListener.class)
+// Second-Level-Cache (Region in JpaCacheConfig): Filter aus dem Query-Cache laden die Bücher per ID von hier
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "book")
 public class Book {
 
+    // Sequenz mit Pooled-Optimizer: Hibernate holt sich 50 IDs pro Round-Trip
+    // und kann Inserts bündeln (mit IDENTITY geht kein JDBC-Batching)
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "book_seq")
+    @SequenceGenerator(name = "book_seq", sequenceName = "book_seq", allocationSize = 50)
     private Long id;
     private String title;
     private String author;
     private int rating; // 1 bis 5 Sterne
     private String comment; //kleiner Bewertungskommentar
+    // Genre und Status liegen als SMALLINT-Verweis auf die Wörterbücher genre/book_status in der Tabelle
+    @Convert(converter = GenreConverter.class)
+    @Column(name = "genre_id")
     private String genre = "Unbekannt"; // 🟡 Standardwert gesetzt
+    @Convert(converter = StatusConverter.class)
+    @Column(name = "status_id")
     private String status = "Unbekannt"; // 🟡 Standardwert gesetzt
 
+    // Wird von Hibernate bei jedem Update hochgezählt, dient als ETag für das einzelne Buch
+    @Version
+    @ColumnDefault("0")
+    private long version;
+
     // Leerer Konstruktor für JPA
     public Book() {}
 
@@ -60,4 +90,7 @@ public class Book {
         this.status = status;
     }
 
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
+
 }
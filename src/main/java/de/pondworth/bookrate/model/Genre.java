@@ -0,0 +1,26 @@
+package de.pondworth.bookrate.model;
+
+import jakarta.persistence.*;
+
+/**
+ * Wörterbuch-Tabelle für Genres: Book speichert nur die kleine ID (genre_id).
+ * Gelesen und geschrieben wird über BookDictionaries, die Entity sorgt nur für das Schema.
+ */
+@Entity
+@Table(name = "genre")
+public class Genre {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Short id;
+
+    @Column(nullable = false, unique = true)
+    private String name;
+
+    // Leerer Konstruktor für JPA
+    public Genre() {}
+
+    public Short getId() { return id; }
+
+    public String getName() { return name; }
+}
@@ -0,0 +1,28 @@
+package de.pondworth.bookrate.repository;
+
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * Die beiden Wörterbücher für Book: Genre und Status werden als SMALLINT gespeichert
+ */
+@Component
+public class BookDictionaries {
+
+    private final NameDictionary genres;
+    private final NameDictionary statuses;
+
+    public BookDictionaries(DataSource dataSource) {
+        this.genres = new NameDictionary(dataSource, "genre");
+        this.statuses = new NameDictionary(dataSource, "book_status");
+    }
+
+    public NameDictionary genres() {
+        return genres;
+    }
+
+    public NameDictionary statuses() {
+        return statuses;
+    }
+}
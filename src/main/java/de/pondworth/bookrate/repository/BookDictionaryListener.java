@@ -0,0 +1,30 @@
+package de.pondworth.bookrate.repository;
+
+import de.pondworth.bookrate.model.Book;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+
+/**
+ * Legt neue Genre- und Statusnamen an, bevor Hibernate ein Buch schreibt.
+ * Gilt für jeden Weg über den EntityManager (save, saveAll, Dirty-Checking);
+ * JPQL-/Criteria-Updates umgehen Entity-Callbacks und müssen selbst registrieren.
+ */
+public class BookDictionaryListener {
+
+    private final BookDictionaries dictionaries;
+
+    public BookDictionaryListener(BookDictionaries dictionaries) {
+        this.dictionaries = dictionaries;
+    }
+
+    @PrePersist
+    @PreUpdate
+    public void register(Book book) {
+        if (book.getGenre() != null) {
+            dictionaries.genres().register(book.getGenre());
+        }
+        if (book.getStatus() != null) {
+            dictionaries.statuses().register(book.getStatus());
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package de.pondworth.bookrate.repository;
+
+import de.pondworth.bookrate.model.Book;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Eigene Repository-Methoden, die sich nicht als Spring-Data-Query ausdrücken lassen
+ */
+public interface BookRepositoryCustom {
+
+    /**
+     * Liest alle Bücher (optional gefiltert nach Genre/Status) per Datenbank-Cursor
+     * und reicht sie einzeln an die action weiter. Jedes Buch wird danach aus dem
+     * Persistence Context gelöst, damit der Speicherverbrauch konstant bleibt.
+     */
+    @Transactional(readOnly = true)
+    void forEachBook(String genre, String status, Consumer<? super Book> action);
+
+    /**
+     * Liest nur die angegebenen Spalten, sortiert nach ID. Als Tuple-Query entstehen keine Entities:
+     * kein Persistence Context, kein Dirty-Checking-Snapshot, nicht benötigte Spalten werden nie gelesen.
+     * Jede Zeile ist eine Map Feldname -> Wert in der Reihenfolge von fields.
+     */
+    @Transactional(readOnly = true)
+    List<Map<String, Object>> findFields(List<String> fields, Specification<Book> where, Limit limit);
+
+    /**
+     * Bücher zu einer beliebigen Kombination von Specifications, sortiert nach sort.
+     * Filterwerte werden immer als Parameter gebunden: gleiche Filterkombinationen ergeben dasselbe SQL
+     * und damit dasselbe Prepared Statement, unabhängig von den Werten.
+     * Mit cacheable kommt das Ergebnis (die IDs) aus dem Hibernate-Query-Cache, solange die Tabelle unverändert ist.
+     * Nur für Filter mit wenigen, wiederkehrenden Wertkombinationen, nicht für freie Suchbegriffe.
+     */
+    @Transactional(readOnly = true)
+    List<Book> findBooks(Specification<Book> where, Sort sort, Limit limit, boolean cacheable);
+
+    /**
+     * Setzt nur die Felder aus changes (Feldname -> Wert) und erhöht dabei die Version, aber nur, wenn das Buch noch
+     * die erwartete Version hat. Liefert die Anzahl geänderter Bücher (0 oder 1). Läuft über die verwaltete Entity:
+     * ein JPQL-/Criteria-Update würde die ganze Region book des Second-Level-Caches leeren.
+     */
+    @Transactional
+    int patch(long id, long version, Map<String, Object> changes);
+
+    /**
+     * Löscht das Buch, ebenfalls über die Entity statt per Bulk-DELETE. Liefert die Anzahl gelöschter Bücher (0 oder 1).
+     */
+    @Transactional
+    int deleteBook(long id);
+
+    /**
+     * Legt neue Bücher in einer Transaktion an und löst sie danach aus dem Persistence Context.
+     * Für Massenimporte: mit Open-Session-in-View bliebe sonst jedes gespeicherte Buch bis zum Ende der Anfrage
+     * im Persistence Context, und jeder weitere Commit prüfte alle vorherigen erneut auf Änderungen.
+     * Nur außerhalb einer laufenden Transaktion aufrufen, das clear() löst auch deren Entities.
+     */
+    @Transactional
+    List<Book> insertAll(List<Book> books);
+}
@@ -0,0 +1,159 @@
+package de.pondworth.bookrate.repository;
+
+import de.pondworth.bookrate.model.Book;
+import jakarta.persistence.CacheStoreMode;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import org.hibernate.jpa.HibernateHints;
+import org.hibernate.jpa.SpecHints;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+public class BookRepositoryCustomImpl implements BookRepositoryCustom {
+
+    // Zeilen pro Round-Trip beim Lesen über den JDBC-Cursor
+    static final int FETCH_SIZE = 500;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public void forEachBook(String genre, String status, Consumer<? super Book> action) {
+        StringBuilder jpql = new StringBuilder("SELECT b FROM Book b WHERE 1 = 1");
+        if (genre != null) {
+            jpql.append(" AND b.genre = :genre");
+        }
+        if (status != null) {
+            jpql.append(" AND b.status = :status");
+        }
+        jpql.append(" ORDER BY b.id");
+
+        TypedQuery<Book> query = entityManager.createQuery(jpql.toString(), Book.class)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, FETCH_SIZE)
+                .setHint(HibernateHints.HINT_READ_ONLY, true);
+        if (genre != null) {
+            query.setParameter("genre", genre);
+        }
+        if (status != null) {
+            query.setParameter("status", status);
+        }
+
+        try (Stream<Book> books = query.getResultStream()) {
+            books.forEach(book -> {
+                entityManager.detach(book);
+                action.accept(book);
+            });
+        }
+    }
+
+    @Override
+    public List<Map<String, Object>> findFields(List<String> fields, Specification<Book> where, Limit limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> criteria = cb.createTupleQuery();
+        Root<Book> root = criteria.from(Book.class);
+        criteria.multiselect(fields.stream().<Selection<?>>map(field -> root.get(field).alias(field)).toList());
+        if (where != null) {
+            Predicate predicate = where.toPredicate(root, criteria, cb);
+            if (predicate != null) {
+                criteria.where(predicate);
+            }
+        }
+        criteria.orderBy(cb.asc(root.get("id")));
+
+        TypedQuery<Tuple> query = entityManager.createQuery(criteria);
+        if (limit.isLimited()) {
+            query.setMaxResults(limit.max());
+        }
+
+        List<Tuple> tuples = query.getResultList();
+        List<Map<String, Object>> rows = new ArrayList<>(tuples.size());
+        for (Tuple tuple : tuples) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (String field : fields) {
+                row.put(field, tuple.get(field));
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    @Override
+    public List<Book> findBooks(Specification<Book> where, Sort sort, Limit limit, boolean cacheable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Book> criteria = cb.createQuery(Book.class);
+        Root<Book> root = criteria.from(Book.class);
+        if (where != null) {
+            Predicate predicate = where.toPredicate(root, criteria, cb);
+            if (predicate != null) {
+                criteria.where(predicate);
+            }
+        }
+        criteria.orderBy(QueryUtils.toOrders(sort, root, cb));
+
+        TypedQuery<Book> query = entityManager.createQuery(criteria);
+        if (limit.isLimited()) {
+            query.setMaxResults(limit.max());
+        }
+        // Hibernate legt Query-Ergebnisse auch bei CacheStoreMode.BYPASS ab, sobald der Query-Cache gelesen wird;
+        // Sessions, die nicht in den Cache schreiben dürfen (Replikat, siehe ReplicaAwareJpaTransactionManager), lassen ihn aus
+        if (cacheable && entityManager.getProperties().get(SpecHints.HINT_SPEC_CACHE_STORE_MODE) != CacheStoreMode.BYPASS) {
+            query.setHint(HibernateHints.HINT_CACHEABLE, true);
+        }
+        return query.getResultList();
+    }
+
+    @Override
+    public int patch(long id, long version, Map<String, Object> changes) {
+        // Über die verwaltete Entity statt als Criteria-Update: ein Bulk-Update leert in Hibernate die ganze
+        // Region book des Second-Level-Caches, so wird dort nur dieses Buch ersetzt. Geladen wird meist aus dem Cache.
+        Book book = entityManager.find(Book.class, id);
+        if (book == null || book.getVersion() != version) {
+            return 0;
+        }
+        BeanWrapper fields = PropertyAccessorFactory.forBeanPropertyAccess(book);
+        changes.forEach(fields::setPropertyValue);
+        // Gleich schreiben (UPDATE ... WHERE id = ? AND version = ?): ein Schreiber seit dem Laden
+        // führt hier zur OptimisticLockException statt zu einem stillen Überschreiben
+        entityManager.flush();
+        return 1;
+    }
+
+    @Override
+    public int deleteBook(long id) {
+        // Wie patch über die Entity, damit nur dieses Buch aus dem Second-Level-Cache fällt
+        Book book = entityManager.find(Book.class, id);
+        if (book == null) {
+            return 0;
+        }
+        entityManager.remove(book);
+        return 1;
+    }
+
+    @Override
+    public List<Book> insertAll(List<Book> books) {
+        for (Book book : books) {
+            entityManager.persist(book);
+        }
+        entityManager.flush();
+        entityManager.clear();
+        return books;
+    }
+}
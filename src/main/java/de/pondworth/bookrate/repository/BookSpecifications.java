@@ -0,0 +1,77 @@
+package de.pondworth.bookrate.repository;
+
+import de.pondworth.bookrate.model.Book;
+import jakarta.persistence.criteria.Path;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.Collection;
+
+/**
+ * Bausteine für dynamische WHERE-Klauseln über Book.
+ * Ist der Filterwert null, liefert die Specification kein Prädikat und schränkt nichts ein.
+ */
+public final class BookSpecifications {
+
+    private BookSpecifications() {}
+
+    public static Specification<Book> hasRating(Integer rating) {
+        return (root, query, cb) -> rating == null ? null : cb.equal(root.get("rating"), rating);
+    }
+
+    // Bereich, beide Grenzen inklusive; eine fehlende Grenze schränkt nicht ein
+    public static Specification<Book> ratingBetween(Integer min, Integer max) {
+        return (root, query, cb) -> {
+            if (min == null && max == null) {
+                return null;
+            }
+            if (max == null) {
+                return cb.greaterThanOrEqualTo(root.get("rating"), min);
+            }
+            if (min == null) {
+                return cb.lessThanOrEqualTo(root.get("rating"), max);
+            }
+            return cb.between(root.get("rating"), min, max);
+        };
+    }
+
+    public static Specification<Book> hasGenre(String genre) {
+        return (root, query, cb) -> genre == null ? null : cb.equal(root.get("genre"), genre);
+    }
+
+    public static Specification<Book> hasStatus(String status) {
+        return (root, query, cb) -> status == null ? null : cb.equal(root.get("status"), status);
+    }
+
+    // Wie searchByTitleOrAuthor: Teilstring in Titel oder Autor, Groß-/Kleinschreibung egal
+    public static Specification<Book> titleOrAuthorContains(String text) {
+        return (root, query, cb) -> {
+            String pattern = "%" + text.toLowerCase() + "%";
+            return cb.or(cb.like(cb.lower(root.get("title")), pattern), cb.like(cb.lower(root.get("author")), pattern));
+        };
+    }
+
+    public static Specification<Book> idIn(Collection<Long> ids) {
+        return (root, query, cb) -> root.get("id").in(ids);
+    }
+
+    // Keyset-Pagination: nur Zeilen hinter dem Cursor
+    public static Specification<Book> idAfter(long afterId) {
+        return (root, query, cb) -> cb.greaterThan(root.get("id"), afterId);
+    }
+
+    // Keyset-Pagination rückwärts (Sortierung nach ID absteigend)
+    public static Specification<Book> idBefore(long beforeId) {
+        return (root, query, cb) -> cb.lessThan(root.get("id"), beforeId);
+    }
+
+    // Keyset-Pagination bei Sortierung nach field, die ID entscheidet bei gleichem Wert (gleiche Richtung)
+    public static <T extends Comparable<? super T>> Specification<Book> sortedAfter(String field, T value, long lastId, boolean descending) {
+        return (root, query, cb) -> {
+            Path<T> path = root.get(field);
+            Path<Long> id = root.get("id");
+            return cb.or(
+                    descending ? cb.lessThan(path, value) : cb.greaterThan(path, value),
+                    cb.and(cb.equal(path, value), descending ? cb.lessThan(id, lastId) : cb.greaterThan(id, lastId)));
+        };
+    }
+}
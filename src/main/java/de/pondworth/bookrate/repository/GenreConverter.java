@@ -0,0 +1,31 @@
+package de.pondworth.bookrate.repository;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * Book.genre (Name) <-> genre_id. Wird von Hibernate über Spring erzeugt.
+ * Unbekannte Namen (z. B. in einem Filter) werden zu -1 und treffen keine Zeile;
+ * beim Speichern sind sie durch den BookDictionaryListener schon angelegt.
+ */
+@Converter
+public class GenreConverter implements AttributeConverter<String, Short> {
+
+    static final short UNKNOWN = -1;
+
+    private final BookDictionaries dictionaries;
+
+    public GenreConverter(BookDictionaries dictionaries) {
+        this.dictionaries = dictionaries;
+    }
+
+    @Override
+    public Short convertToDatabaseColumn(String genre) {
+        return genre == null ? null : dictionaries.genres().find(genre).orElse(UNKNOWN);
+    }
+
+    @Override
+    public String convertToEntityAttribute(Short id) {
+        return id == null ? null : dictionaries.genres().name(id);
+    }
+}
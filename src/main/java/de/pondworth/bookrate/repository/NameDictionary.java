@@ -0,0 +1,229 @@
+package de.pondworth.bookrate.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Name <-> ID einer Wörterbuch-Tabelle (id SMALLINT, name UNIQUE), im Speicher gecacht.
+ * Liest und schreibt über die Verbindung der laufenden Transaktion (sonst über eine eigene im Autocommit):
+ * ein Flush braucht so keine zweite Verbindung aus dem Pool, und ein neuer Name wird mit dem Buch
+ * zurückgerollt. In den Cache kommt er erst nach dem Commit, bis dahin kennt ihn nur die eigene Transaktion.
+ */
+public class NameDictionary {
+
+    // SQLState für Unique-Verletzung (PostgreSQL und H2)
+    private static final String UNIQUE_VIOLATION = "23505";
+
+    // Unbekannte Namen (z. B. ein Filter auf ein Genre, das es nicht gibt) fragen die Datenbank höchstens
+    // so oft ab; legt eine andere Instanz den Namen an, sieht diese ihn spätestens danach
+    static final Duration UNKNOWN_TTL = Duration.ofMinutes(1);
+    private static final int MAX_UNKNOWN = 10_000;
+
+    private final DataSource dataSource;
+    private final String table;
+    private final Map<String, Short> idsByName = new ConcurrentHashMap<>();
+    private final Map<Short, String> namesById = new ConcurrentHashMap<>();
+    private final Cache<String, Boolean> unknown = Caffeine.newBuilder()
+            .maximumSize(MAX_UNKNOWN)
+            .expireAfterWrite(UNKNOWN_TTL)
+            .build();
+    private volatile boolean loaded;
+
+    public NameDictionary(DataSource dataSource, String table) {
+        this.dataSource = dataSource;
+        this.table = table;
+    }
+
+    /**
+     * ID zu einem Namen, ohne ihn anzulegen (für Filter). Unbekannte Namen werden in der Datenbank
+     * nachgeschlagen, falls eine andere Instanz sie inzwischen angelegt hat, höchstens einmal pro UNKNOWN_TTL.
+     */
+    public Optional<Short> find(String name) {
+        Short id = cached().get(name);
+        if (id == null) {
+            id = pending().get(name);
+        }
+        if (id == null && unknown.getIfPresent(name) == null) {
+            id = lookup(name);
+        }
+        return Optional.ofNullable(id);
+    }
+
+    /**
+     * ID zu einem Namen, legt ihn bei Bedarf an (vor dem Speichern eines Buchs)
+     */
+    public short register(String name) {
+        Optional<Short> existing = find(name);
+        if (existing.isPresent()) {
+            return existing.get();
+        }
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            // In einer Transaktion: bei einer Unique-Verletzung nur bis hier zurück, nicht die ganze Transaktion
+            Savepoint savepoint = connection.getAutoCommit() ? null : connection.setSavepoint();
+            try (PreparedStatement insert = connection.prepareStatement("INSERT INTO " + table + " (name) VALUES (?)", new String[]{"id"})) {
+                insert.setString(1, name);
+                insert.executeUpdate();
+                try (ResultSet keys = insert.getGeneratedKeys()) {
+                    keys.next();
+                    short id = keys.getShort(1);
+                    created(id, name);
+                    return id;
+                }
+            } catch (SQLException e) {
+                // Parallel von einer anderen Transaktion oder Instanz angelegt
+                if (!UNIQUE_VIOLATION.equals(e.getSQLState())) {
+                    throw e;
+                }
+                if (savepoint != null) {
+                    connection.rollback(savepoint);
+                }
+                Short id = lookup(name);
+                if (id == null) {
+                    throw new IllegalStateException("Eintrag " + name + " in " + table + " fehlt", e);
+                }
+                return id;
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Eintrag " + name + " in " + table + " konnte nicht angelegt werden", e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    /**
+     * Name zu einer ID aus der Datenbank; unbekannte IDs laden das Wörterbuch einmal neu
+     */
+    public String name(short id) {
+        String name = cached(id);
+        if (name == null) {
+            name = pendingName(id);
+        }
+        if (name == null) {
+            reload();
+            name = namesById.get(id);
+        }
+        if (name == null) {
+            throw new IllegalStateException("Unbekannte ID " + id + " in " + table);
+        }
+        return name;
+    }
+
+    public int size() {
+        return cached().size();
+    }
+
+    private String cached(short id) {
+        cached();
+        return namesById.get(id);
+    }
+
+    private Map<String, Short> cached() {
+        if (!loaded) {
+            reload();
+        }
+        return idsByName;
+    }
+
+    private synchronized void reload() {
+        query("SELECT id, name FROM " + table, null);
+        loaded = true;
+    }
+
+    private Short lookup(String name) {
+        Short id = query("SELECT id, name FROM " + table + " WHERE name = ?", name);
+        if (id == null) {
+            unknown.put(name, Boolean.TRUE);
+        }
+        return id;
+    }
+
+    // Merkt sich alle gelesenen Zeilen und liefert die ID der letzten (oder null)
+    private Short query(String sql, String name) {
+        Short id = null;
+        Map<String, Short> pending = pending();
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try (PreparedStatement select = connection.prepareStatement(sql)) {
+            if (name != null) {
+                select.setString(1, name);
+            }
+            try (ResultSet rows = select.executeQuery()) {
+                while (rows.next()) {
+                    id = rows.getShort(1);
+                    String rowName = rows.getString(2);
+                    // Eigene, noch nicht committete Einträge nicht in den Cache
+                    if (!pending.containsKey(rowName)) {
+                        remember(id, rowName);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Wörterbuch " + table + " konnte nicht gelesen werden", e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+        return id;
+    }
+
+    // Neu angelegt: ohne Transaktion sofort in den Cache, sonst erst nach dem Commit
+    private void created(short id, String name) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            remember(id, name);
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, Short> pending = (Map<String, Short>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            Map<String, Short> created = new HashMap<>();
+            pending = created;
+            TransactionSynchronizationManager.bindResource(this, created);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(NameDictionary.this);
+                    if (status == STATUS_COMMITTED) {
+                        created.forEach((name, id) -> remember(id, name));
+                    }
+                }
+            });
+        }
+        pending.put(name, id);
+    }
+
+    // In der laufenden Transaktion angelegte, noch nicht committete Namen
+    @SuppressWarnings("unchecked")
+    private Map<String, Short> pending() {
+        Map<String, Short> pending = (Map<String, Short>) TransactionSynchronizationManager.getResource(this);
+        return pending != null ? pending : Map.of();
+    }
+
+    private String pendingName(short id) {
+        for (Map.Entry<String, Short> entry : pending().entrySet()) {
+            if (entry.getValue() == id) {
+                return entry.getKey();
+            }
+        }
+        return null;
+    }
+
+    private void remember(short id, String name) {
+        namesById.put(id, name);
+        idsByName.put(name, id);
+        unknown.invalidate(name);
+    }
+}
@@ -0,0 +1,27 @@
+package de.pondworth.bookrate.repository;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * Book.status (Name) <-> status_id, wie GenreConverter
+ */
+@Converter
+public class StatusConverter implements AttributeConverter<String, Short> {
+
+    private final BookDictionaries dictionaries;
+
+    public StatusConverter(BookDictionaries dictionaries) {
+        this.dictionaries = dictionaries;
+    }
+
+    @Override
+    public Short convertToDatabaseColumn(String status) {
+        return status == null ? null : dictionaries.statuses().find(status).orElse(GenreConverter.UNKNOWN);
+    }
+
+    @Override
+    public String convertToEntityAttribute(Short id) {
+        return id == null ? null : dictionaries.statuses().name(id);
+    }
+}
@@ -0,0 +1,381 @@
+package de.pondworth.bookrate.search;
+
+import de.pondworth.bookrate.datasource.ReadYourWrites;
+import de.pondworth.bookrate.model.Book;
+import de.pondworth.bookrate.repository.BookRepository;
+import de.pondworth.bookrate.service.BookChangedEvent;
+import de.pondworth.bookrate.service.BookPatch;
+import de.pondworth.bookrate.service.CatalogGeneration;
+import de.pondworth.bookrate.util.LongLongMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Spaltenweiser Filterindex des Katalogs im Speicher (optional, bookrate.columnar.enabled=true).
+ * Nur die Spalten zum Filtern und Sortieren liegen hier, als primitive Arrays (IDs long[], Rating byte[],
+ * Genre/Status als int-Codes), dazu pro Rating, Genre und Status ein BitSet der Zeilen mit diesem Wert. Ein Filter
+ * ist damit ein UND über höchstens drei BitSets und liefert IDs; die Bücher selbst lädt der BookService danach per
+ * Primärschlüssel. Speicher: bis zu 100 Byte pro Buch (Spalten, BitSets, ID -> Zeile), also höchstens rund 10 MB
+ * bei 100.000 Büchern. Wird beim Start aus der Datenbank aufgebaut und danach über BookChangedEvents aktuell
+ * gehalten; gelöschte Zeilen bleiben als Lücke stehen, bis sie ein Viertel der Zeilen ausmachen, dann wird verdichtet.
+ */
+@Component
+public class ColumnarCatalog {
+
+    private static final Logger log = LoggerFactory.getLogger(ColumnarCatalog.class);
+
+    private static final long NO_ROW = -1L;
+    // Verdichten erst ab so vielen Lücken, damit kleine Kataloge nicht bei jedem Löschen umkopiert werden
+    private static final int COMPACT_MIN_DEAD_ROWS = 1024;
+
+    private final BookRepository bookRepository;
+    private final boolean enabled;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Buch-ID -> Zeile
+    private final LongLongMap rows = new LongLongMap();
+    private final Codes genres = new Codes();
+    private final Codes statuses = new Codes();
+    // Zeilen mit Rating 1 bis 5 (Index 0 bleibt leer), alle lebenden Zeilen
+    private final BitSet[] byRating = new BitSet[6];
+    private final List<BitSet> byGenre = new ArrayList<>();
+    private final List<BitSet> byStatus = new ArrayList<>();
+    private final BitSet live = new BitSet();
+
+    private long[] ids = new long[0];
+    private byte[] ratings = new byte[0];
+    private int[] genreCodes = new int[0];
+    private int[] statusCodes = new int[0];
+    // Belegte Zeilen einschließlich Lücken
+    private int size;
+    // Zeilen liegen nach ID sortiert, solange neue Bücher mit steigender ID kommen
+    private boolean sorted = true;
+    private volatile boolean ready;
+
+    public ColumnarCatalog(BookRepository bookRepository,
+                           @Value("${bookrate.columnar.enabled:false}") boolean enabled) {
+        this.bookRepository = bookRepository;
+        this.enabled = enabled;
+        for (int rating = 1; rating < byRating.length; rating++) {
+            byRating[rating] = new BitSet();
+        }
+    }
+
+    /**
+     * Baut die Spalten aus der Datenbank auf. Bis er fertig ist, filtert der BookService weiter per SQL.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            ready = false;
+            clearUnlocked();
+            ReadYourWrites.onPrimary(() -> bookRepository.forEachBook(null, null, this::putUnlocked));
+            ready = true;
+        } catch (RuntimeException e) {
+            log.warn("Spaltenspeicher konnte nicht aufgebaut werden, Filter laufen über die Datenbank", e);
+            return;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Spaltenspeicher mit {} Büchern in {} ms aufgebaut", size, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Order(CatalogGeneration.BEFORE_GENERATION)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            switch (event.type()) {
+                case CREATED, UPDATED -> putUnlocked(event.book());
+                case PATCHED -> patchUnlocked(event.id(), event.patch());
+                case DELETED -> removeUnlocked(event.id());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * IDs der Bücher mit passendem Rating, Genre und Status (null = egal) und ID größer afterId, aufsteigend,
+     * höchstens limit Stück
+     */
+    public List<Long> filter(Integer rating, String genre, String status, long afterId, int limit) {
+        lock.readLock().lock();
+        try {
+            BitSet matches = matchesUnlocked(rating, genre, status);
+            if (matches == null) {
+                return List.of();
+            }
+            return sorted ? idsSortedUnlocked(matches, afterId, limit) : idsUnsortedUnlocked(matches, afterId, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return live.cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Schnittmenge der BitSets, null wenn ein Wert gar nicht vorkommt
+    private BitSet matchesUnlocked(Integer rating, String genre, String status) {
+        List<BitSet> filters = new ArrayList<>(3);
+        if (rating != null) {
+            if (rating < 1 || rating >= byRating.length) {
+                return null;
+            }
+            filters.add(byRating[rating]);
+        }
+        if (genre != null) {
+            int code = genres.find(genre);
+            if (code < 0) {
+                return null;
+            }
+            filters.add(byGenre.get(code));
+        }
+        if (status != null) {
+            int code = statuses.find(status);
+            if (code < 0) {
+                return null;
+            }
+            filters.add(byStatus.get(code));
+        }
+        if (filters.isEmpty()) {
+            return live;
+        }
+        // Mit dem kleinsten BitSet anfangen, die übrigen schneiden es nur noch weiter zu
+        filters.sort(Comparator.comparingInt(BitSet::cardinality));
+        BitSet result = (BitSet) filters.get(0).clone();
+        for (int i = 1; i < filters.size() && !result.isEmpty(); i++) {
+            result.and(filters.get(i));
+        }
+        return result;
+    }
+
+    private List<Long> idsSortedUnlocked(BitSet matches, long afterId, int limit) {
+        int from = 0;
+        if (afterId > 0) {
+            int index = Arrays.binarySearch(ids, 0, size, afterId);
+            from = index >= 0 ? index + 1 : -index - 1;
+        }
+        List<Long> result = new ArrayList<>(Math.min(limit, Math.max(0, matches.cardinality())));
+        for (int row = matches.nextSetBit(from); row >= 0 && result.size() < limit; row = matches.nextSetBit(row + 1)) {
+            result.add(ids[row]);
+        }
+        return result;
+    }
+
+    // Nach Einfügungen außer der Reihe (z. B. parallele Commits): Treffer erst sortieren
+    private List<Long> idsUnsortedUnlocked(BitSet matches, long afterId, int limit) {
+        long[] matchingIds = new long[matches.cardinality()];
+        int count = 0;
+        for (int row = matches.nextSetBit(0); row >= 0; row = matches.nextSetBit(row + 1)) {
+            if (ids[row] > afterId) {
+                matchingIds[count++] = ids[row];
+            }
+        }
+        Arrays.sort(matchingIds, 0, count);
+        List<Long> result = new ArrayList<>(Math.min(limit, count));
+        for (int i = 0; i < count && result.size() < limit; i++) {
+            result.add(matchingIds[i]);
+        }
+        return result;
+    }
+
+    private void putUnlocked(Book book) {
+        long existing = rows.get(book.getId(), NO_ROW);
+        int row;
+        if (existing == NO_ROW) {
+            row = appendUnlocked(book.getId());
+        } else {
+            row = (int) existing;
+            unindexUnlocked(row);
+        }
+        ratings[row] = (byte) book.getRating();
+        genreCodes[row] = genres.code(book.getGenre(), byGenre);
+        statusCodes[row] = statuses.code(book.getStatus(), byStatus);
+        indexUnlocked(row);
+    }
+
+    private void patchUnlocked(Long id, BookPatch patch) {
+        long existing = rows.get(id, NO_ROW);
+        if (existing == NO_ROW) {
+            return;
+        }
+        int row = (int) existing;
+        unindexUnlocked(row);
+        if (patch.rating() != null) {
+            ratings[row] = patch.rating().byteValue();
+        }
+        if (patch.genre() != null) {
+            genreCodes[row] = genres.code(patch.genre(), byGenre);
+        }
+        if (patch.status() != null) {
+            statusCodes[row] = statuses.code(patch.status(), byStatus);
+        }
+        indexUnlocked(row);
+    }
+
+    private void removeUnlocked(Long id) {
+        long existing = rows.remove(id, NO_ROW);
+        if (existing == NO_ROW) {
+            return;
+        }
+        unindexUnlocked((int) existing);
+        int dead = size - live.cardinality();
+        if (dead >= COMPACT_MIN_DEAD_ROWS && dead > size / 4) {
+            compactUnlocked();
+        }
+    }
+
+    /**
+     * Schreibt die lebenden Zeilen nach ID sortiert in neue, passend große Spalten und baut die BitSets neu auf
+     */
+    private void compactUnlocked() {
+        int[] order = live.stream().toArray();
+        if (!sorted) {
+            order = Arrays.stream(order).boxed()
+                    .sorted(Comparator.comparingLong(row -> ids[row]))
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+        }
+        long[] compactIds = new long[order.length];
+        byte[] compactRatings = new byte[order.length];
+        int[] compactGenres = new int[order.length];
+        int[] compactStatuses = new int[order.length];
+        for (int row = 0; row < order.length; row++) {
+            compactIds[row] = ids[order[row]];
+            compactRatings[row] = ratings[order[row]];
+            compactGenres[row] = genreCodes[order[row]];
+            compactStatuses[row] = statusCodes[order[row]];
+        }
+
+        rows.clear();
+        live.clear();
+        for (int rating = 1; rating < byRating.length; rating++) {
+            byRating[rating].clear();
+        }
+        byGenre.forEach(BitSet::clear);
+        byStatus.forEach(BitSet::clear);
+        ids = compactIds;
+        ratings = compactRatings;
+        genreCodes = compactGenres;
+        statusCodes = compactStatuses;
+        size = order.length;
+        sorted = true;
+        for (int row = 0; row < size; row++) {
+            rows.put(ids[row], row, NO_ROW);
+            indexUnlocked(row);
+        }
+    }
+
+    private int appendUnlocked(long id) {
+        if (size == ids.length) {
+            int capacity = Math.max(1024, size + (size >> 1));
+            ids = Arrays.copyOf(ids, capacity);
+            ratings = Arrays.copyOf(ratings, capacity);
+            genreCodes = Arrays.copyOf(genreCodes, capacity);
+            statusCodes = Arrays.copyOf(statusCodes, capacity);
+        }
+        if (size > 0 && id < ids[size - 1]) {
+            sorted = false;
+        }
+        int row = size++;
+        ids[row] = id;
+        rows.put(id, row, NO_ROW);
+        return row;
+    }
+
+    private void indexUnlocked(int row) {
+        live.set(row);
+        if (ratings[row] > 0 && ratings[row] < byRating.length) {
+            byRating[ratings[row]].set(row);
+        }
+        byGenre.get(genreCodes[row]).set(row);
+        byStatus.get(statusCodes[row]).set(row);
+    }
+
+    private void unindexUnlocked(int row) {
+        live.clear(row);
+        if (ratings[row] > 0 && ratings[row] < byRating.length) {
+            byRating[ratings[row]].clear(row);
+        }
+        byGenre.get(genreCodes[row]).clear(row);
+        byStatus.get(statusCodes[row]).clear(row);
+    }
+
+    private void clearUnlocked() {
+        rows.clear();
+        genres.clear();
+        statuses.clear();
+        byGenre.clear();
+        byStatus.clear();
+        live.clear();
+        for (int rating = 1; rating < byRating.length; rating++) {
+            byRating[rating].clear();
+        }
+        ids = new long[0];
+        ratings = new byte[0];
+        genreCodes = new int[0];
+        statusCodes = new int[0];
+        size = 0;
+        sorted = true;
+    }
+
+    /**
+     * Genre- bzw. Statusname -> laufender Code; neue Namen bekommen gleich ihr BitSet
+     */
+    private static final class Codes {
+
+        private final Map<String, Integer> codes = new HashMap<>();
+
+        int code(String name, List<BitSet> bitmaps) {
+            Integer code = codes.get(name);
+            if (code == null) {
+                code = codes.size();
+                codes.put(name, code);
+                bitmaps.add(new BitSet());
+            }
+            return code;
+        }
+
+        int find(String name) {
+            return codes.getOrDefault(name, -1);
+        }
+
+        void clear() {
+            codes.clear();
+        }
+    }
+}
@@ -0,0 +1,533 @@
+package de.pondworth.bookrate.search;
+
+import de.pondworth.bookrate.datasource.ReadYourWrites;
+import de.pondworth.bookrate.model.Book;
+import de.pondworth.bookrate.repository.BookRepository;
+import de.pondworth.bookrate.service.BookChangedEvent;
+import de.pondworth.bookrate.service.BookPatch;
+import de.pondworth.bookrate.service.CatalogGeneration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Fehlertolerante Suche über die Wörter in Titel und Autor ("tolkein" findet "Tolkien").
+ * Alle verschiedenen Wörter liegen in einem Trie, zu jedem gehört eine sortierte Liste der Bücher, in denen es vorkommt.
+ * Die Suche läuft den Trie ab und rechnet pro Knoten eine Zeile der Levenshtein-Tabelle: Wörter mit gemeinsamem
+ * Präfix teilen sich die Zeilen, und sobald eine Zeile ganz über der erlaubten Distanz liegt, fällt der ganze
+ * Teilbaum weg (wie ein Levenshtein-Automat, der mit dem Trie zusammen abgelaufen wird).
+ * Wird wie der TrigramIndex beim Start aufgebaut und danach über BookChangedEvents aktuell gehalten.
+ */
+@Component
+public class FuzzyIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(FuzzyIndex.class);
+
+    // Größte erlaubte Distanz pro Suchwort, abhängig von seiner Länge (kurze Wörter hätten sonst zu viele Treffer)
+    public static final int MAX_DISTANCE = 2;
+
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+
+    // Passen zu einem Suchwort mehr Wörter, werden Kandidaten über ihre eigenen Wörter geprüft statt per Binärsuche
+    private static final int MAX_BINARY_SEARCHES = 8;
+
+    // Ab so vielen Wörtern ohne Bücher wird der Trie neu aufgebaut
+    private static final int MIN_COMPACT_SIZE = 10_000;
+
+    private final BookRepository bookRepository;
+    private final boolean enabled;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Buch-ID -> Wörter aus Titel und Autor (zum Entfernen und für PATCH)
+    private final Map<Long, Document> documents = new HashMap<>();
+    // Wort -> Bücher; Wörter ohne Bücher verschwinden sofort, ihre Knoten im Trie erst beim Kompaktieren
+    // (deadWords zählt die Entfernungen seit dem letzten Aufbau)
+    private final Map<String, PostingList> words = new HashMap<>();
+    private Trie trie = new Trie();
+    private int deadWords;
+    private volatile boolean ready;
+
+    public FuzzyIndex(BookRepository bookRepository,
+                      @Value("${bookrate.search.fuzzy.enabled:true}") boolean enabled) {
+        this.bookRepository = bookRepository;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Baut den Index aus der Datenbank auf. Bis er fertig ist, antwortet die unscharfe Suche mit 503.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!enabled) {
+            log.info("Fehlertolerante Suche ist deaktiviert");
+            return;
+        }
+        long start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            ready = false;
+            documents.clear();
+            words.clear();
+            trie = new Trie();
+            deadWords = 0;
+            ReadYourWrites.onPrimary(() -> bookRepository.forEachBook(null, null, this::addUnlocked));
+            ready = true;
+        } catch (RuntimeException e) {
+            log.warn("Index für die fehlertolerante Suche konnte nicht aufgebaut werden", e);
+            return;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Fehlertoleranter Index mit {} Büchern und {} Wörtern in {} ms aufgebaut",
+                documents.size(), words.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Order(CatalogGeneration.BEFORE_GENERATION)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (event.type() == BookChangedEvent.Type.PATCHED) {
+                patchUnlocked(event.id(), event.patch());
+            } else {
+                removeUnlocked(event.id());
+                if (event.book() != null) {
+                    addUnlocked(event.book());
+                }
+            }
+            if (deadWords > MIN_COMPACT_SIZE && deadWords > words.size() / 2) {
+                compactUnlocked();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Höchstens limit Buch-IDs, in denen jedes Wort aus query (bis auf wenige Tippfehler) in Titel oder Autor vorkommt.
+     * Sortiert nach der Summe der Distanzen, bei Gleichstand nach ID.
+     */
+    public List<Long> search(String query, int limit) {
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(tokenize(query)));
+        if (terms.isEmpty() || limit < 1) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            // Pro Suchwort alle passenden Wörter, nach Distanz sortiert
+            List<List<Match>> matches = new ArrayList<>(terms.size());
+            for (String term : terms) {
+                List<Match> found = matchUnlocked(term, maxDistance(term));
+                if (found.isEmpty()) {
+                    return List.of();
+                }
+                matches.add(found);
+            }
+            if (matches.size() == 1) {
+                return nearest(matches.get(0), limit);
+            }
+            return intersect(matches, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Alle Wörter mit Levenshtein-Distanz <= maxDistance zu term, nach Distanz sortiert
+    private List<Match> matchUnlocked(String term, int maxDistance) {
+        if (maxDistance == 0) {
+            PostingList books = words.get(term);
+            return books == null ? List.of() : List.of(new Match(term, books, 0));
+        }
+        List<Match> found = trie.match(term, maxDistance);
+        found.sort(Comparator.comparingInt(Match::distance));
+        return found;
+    }
+
+    // Füllt current aus previous für ein weiteres Zeichen des Worts und gibt das Minimum der Zeile zurück
+    private static int nextRow(String term, char c, int[] previous, int[] current) {
+        current[0] = previous[0] + 1;
+        int rowMin = current[0];
+        for (int j = 1; j <= term.length(); j++) {
+            int cost = term.charAt(j - 1) == c ? 0 : 1;
+            current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+            rowMin = Math.min(rowMin, current[j]);
+        }
+        return rowMin;
+    }
+
+    // Ein Suchwort: Distanzstufen aufsteigend durchgehen und aufhören, sobald limit Bücher beisammen sind
+    private List<Long> nearest(List<Match> found, int limit) {
+        List<Long> result = new ArrayList<>(Math.min(limit, 64));
+        Set<Long> seen = new HashSet<>();
+        for (int distance = 0; distance <= MAX_DISTANCE && result.size() < limit; distance++) {
+            List<PostingList> level = new ArrayList<>();
+            for (Match match : found) {
+                if (match.distance() == distance) {
+                    level.add(match.books());
+                }
+            }
+            // k-Wege-Merge der sortierten Listen dieser Stufe, damit die IDs aufsteigend kommen
+            int[] positions = new int[level.size()];
+            while (result.size() < limit) {
+                int next = -1;
+                for (int i = 0; i < level.size(); i++) {
+                    if (positions[i] < level.get(i).size()
+                            && (next < 0 || level.get(i).get(positions[i]) < level.get(next).get(positions[next]))) {
+                        next = i;
+                    }
+                }
+                if (next < 0) {
+                    break;
+                }
+                long id = level.get(next).get(positions[next]++);
+                if (seen.add(id)) {
+                    result.add(id);
+                }
+            }
+        }
+        return result;
+    }
+
+    // Mehrere Suchwörter: Kandidaten aus dem Suchwort mit den wenigsten Büchern, die anderen am Buch prüfen
+    private List<Long> intersect(List<List<Match>> matches, int limit) {
+        int rarest = 0;
+        long fewest = Long.MAX_VALUE;
+        for (int i = 0; i < matches.size(); i++) {
+            long count = 0;
+            for (Match match : matches.get(i)) {
+                count += match.books().size();
+            }
+            if (count < fewest) {
+                fewest = count;
+                rarest = i;
+            }
+        }
+
+        // Kleinstmögliche Summe: jedes Suchwort mit seinem nächsten Wort
+        int minimum = 0;
+        List<Map<String, Integer>> byWord = new ArrayList<>(matches.size());
+        for (List<Match> found : matches) {
+            minimum += found.get(0).distance();
+            byWord.add(found.size() > MAX_BINARY_SEARCHES ? distances(found) : null);
+        }
+
+        // Nur die besten limit behalten: Max-Heap mit dem schlechtesten Treffer oben
+        Comparator<long[]> ranking = Comparator.<long[]>comparingLong(hit -> hit[1]).thenComparingLong(hit -> hit[0]);
+        PriorityQueue<long[]> best = new PriorityQueue<>(limit + 1, ranking.reversed());
+        // Kandidaten als k-Wege-Merge in aufsteigender ID, ein Buch aus mehreren Wörtern zählt mit der kleinsten Distanz
+        List<Match> candidates = matches.get(rarest);
+        // Pro Wort die aktuelle Position {Wort, Index}, geordnet nach der ID an dieser Position
+        PriorityQueue<int[]> heads = new PriorityQueue<>(candidates.size(),
+                Comparator.comparingLong(head -> candidates.get(head[0]).books().get(head[1])));
+        for (int i = 0; i < candidates.size(); i++) {
+            heads.add(new int[] {i, 0});
+        }
+        candidates:
+        while (!heads.isEmpty()) {
+            long id = candidates.get(heads.peek()[0]).books().get(heads.peek()[1]);
+            int total = MAX_DISTANCE;
+            while (!heads.isEmpty() && candidates.get(heads.peek()[0]).books().get(heads.peek()[1]) == id) {
+                int[] head = heads.poll();
+                total = Math.min(total, candidates.get(head[0]).distance());
+                if (++head[1] < candidates.get(head[0]).books().size()) {
+                    heads.add(head);
+                }
+            }
+            for (int i = 0; i < matches.size(); i++) {
+                if (i == rarest) {
+                    continue;
+                }
+                int distance = byWord.get(i) != null
+                        ? bestDistance(documents.get(id).tokens(), byWord.get(i))
+                        : bestDistance(id, matches.get(i));
+                if (distance < 0) {
+                    continue candidates;
+                }
+                total += distance;
+            }
+            best.add(new long[] {id, total});
+            if (best.size() > limit) {
+                best.poll();
+            }
+            // Alle behaltenen Treffer haben die kleinstmögliche Summe: spätere IDs wären gleich gut, aber größer
+            if (best.size() == limit && best.peek()[1] == minimum) {
+                break;
+            }
+        }
+        List<long[]> hits = new ArrayList<>(best);
+        hits.sort(ranking);
+        return hits.stream().map(hit -> hit[0]).toList();
+    }
+
+    private static Map<String, Integer> distances(List<Match> found) {
+        Map<String, Integer> distances = new HashMap<>();
+        for (Match match : found) {
+            distances.put(match.word(), match.distance());
+        }
+        return distances;
+    }
+
+    private static int bestDistance(String[] tokens, Map<String, Integer> distances) {
+        int best = -1;
+        for (String token : tokens) {
+            Integer distance = distances.get(token);
+            if (distance != null && (best < 0 || distance < best)) {
+                best = distance;
+            }
+        }
+        return best;
+    }
+
+    // found ist nach Distanz sortiert: das erste Wort, das im Buch vorkommt, hat die kleinste
+    private static int bestDistance(long id, List<Match> found) {
+        for (Match match : found) {
+            if (match.books().contains(id)) {
+                return match.distance();
+            }
+        }
+        return -1;
+    }
+
+    private void addUnlocked(Book book) {
+        if (book.getId() == null) {
+            return;
+        }
+        indexUnlocked(book.getId(), Document.of(tokenize(book.getTitle()), tokenize(book.getAuthor())));
+    }
+
+    // Teiländerung: die Wörter des nicht geänderten Felds bleiben
+    private void patchUnlocked(Long id, BookPatch patch) {
+        if (id == null || (patch.title() == null && patch.author() == null)) {
+            return;
+        }
+        Document previous = documents.get(id);
+        if (previous == null) {
+            return;
+        }
+        indexUnlocked(id, Document.of(
+                patch.title() != null ? tokenize(patch.title()) : previous.title(),
+                patch.author() != null ? tokenize(patch.author()) : previous.author()));
+    }
+
+    private void indexUnlocked(long id, Document document) {
+        removeUnlocked(id);
+        documents.put(id, document);
+        for (String token : document.tokens()) {
+            PostingList books = words.get(token);
+            if (books == null) {
+                books = new PostingList();
+                words.put(token, books);
+                trie.put(token, books);
+            }
+            books.add(id);
+        }
+    }
+
+    private void removeUnlocked(Long id) {
+        if (id == null) {
+            return;
+        }
+        Document previous = documents.remove(id);
+        if (previous == null) {
+            return;
+        }
+        for (String token : previous.tokens()) {
+            PostingList books = words.get(token);
+            books.remove(id);
+            if (books.isEmpty()) {
+                words.remove(token);
+                trie.remove(token);
+                deadWords++;
+            }
+        }
+    }
+
+    // Baut den Trie nur aus Wörtern auf, die noch in einem Buch vorkommen
+    private void compactUnlocked() {
+        trie = new Trie();
+        words.forEach(trie::put);
+        deadWords = 0;
+    }
+
+    // Ein Tippfehler bei bis zu 5 Zeichen, zwei ab 6; bei 1-2 Zeichen nur exakt
+    private static int maxDistance(String term) {
+        if (term.length() <= 2) {
+            return 0;
+        }
+        return term.length() <= 5 ? 1 : MAX_DISTANCE;
+    }
+
+    // "J.R.R. Tolkien" -> [j, r, tolkien]; Umlaute und Akzente ohne Zeichen ("müller" -> "muller")
+    private static List<String> tokenize(String value) {
+        if (value == null || value.isBlank()) {
+            return List.of();
+        }
+        String text = DIACRITICS.matcher(Normalizer.normalize(value, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        List<String> tokens = new ArrayList<>();
+        for (String token : WORD_SEPARATOR.split(text)) {
+            if (!token.isEmpty() && !tokens.contains(token)) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    // tokens: alle Wörter aus Titel und Autor ohne Doppelte
+    private record Document(List<String> title, List<String> author, String[] tokens) {
+
+        static Document of(List<String> title, List<String> author) {
+            Set<String> tokens = new LinkedHashSet<>(title);
+            tokens.addAll(author);
+            return new Document(title, author, tokens.toArray(String[]::new));
+        }
+    }
+
+    private record Match(String word, PostingList books, int distance) {
+    }
+
+    /**
+     * Trie in parallelen Arrays: Kinder eines Knotens als verkettete Liste (firstChild/nextSibling),
+     * word und books sind das Wort, das an diesem Knoten endet, und seine Bücher (sonst null). Knoten 0 ist die Wurzel.
+     */
+    private static final class Trie {
+
+        private char[] label = new char[1024];
+        private int[] depth = new int[1024];
+        private int[] firstChild = new int[1024];
+        private int[] nextSibling = new int[1024];
+        private String[] word = new String[1024];
+        private PostingList[] books = new PostingList[1024];
+        private int size;
+
+        Trie() {
+            append('\0', 0);
+        }
+
+        void put(String value, PostingList list) {
+            int node = 0;
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                int child = child(node, c);
+                if (child < 0) {
+                    child = append(c, i + 1);
+                    nextSibling[child] = firstChild[node];
+                    firstChild[node] = child;
+                }
+                node = child;
+            }
+            word[node] = value;
+            books[node] = list;
+        }
+
+        void remove(String value) {
+            int node = 0;
+            for (int i = 0; i < value.length() && node >= 0; i++) {
+                node = child(node, value.charAt(i));
+            }
+            if (node >= 0) {
+                word[node] = null;
+                books[node] = null;
+            }
+        }
+
+        List<Match> match(String term, int maxDistance) {
+            List<Match> found = new ArrayList<>();
+            // Ab Tiefe term.length() + maxDistance + 1 liegt jede Zeile über maxDistance, tiefer geht es nie
+            int[][] rows = new int[term.length() + maxDistance + 2][term.length() + 1];
+            for (int j = 0; j <= term.length(); j++) {
+                rows[0][j] = j;
+            }
+            // Tiefensuche: wenn ein Knoten drankommt, steht in rows[depth - 1] noch die Zeile seines Elternknotens
+            int[] stack = new int[64];
+            int top = 0;
+            for (int child = firstChild[0]; child >= 0; child = nextSibling[child]) {
+                stack = push(stack, top++, child);
+            }
+            while (top > 0) {
+                int node = stack[--top];
+                int d = depth[node];
+                if (nextRow(term, label[node], rows[d - 1], rows[d]) > maxDistance) {
+                    continue;
+                }
+                if (books[node] != null && rows[d][term.length()] <= maxDistance) {
+                    found.add(new Match(word[node], books[node], rows[d][term.length()]));
+                }
+                for (int child = firstChild[node]; child >= 0; child = nextSibling[child]) {
+                    stack = push(stack, top++, child);
+                }
+            }
+            return found;
+        }
+
+        private int child(int node, char c) {
+            int child = firstChild[node];
+            while (child >= 0 && label[child] != c) {
+                child = nextSibling[child];
+            }
+            return child;
+        }
+
+        private static int[] push(int[] stack, int top, int node) {
+            if (top == stack.length) {
+                stack = Arrays.copyOf(stack, top * 2);
+            }
+            stack[top] = node;
+            return stack;
+        }
+
+        private int append(char c, int nodeDepth) {
+            if (size == label.length) {
+                int capacity = size * 2;
+                label = Arrays.copyOf(label, capacity);
+                depth = Arrays.copyOf(depth, capacity);
+                firstChild = Arrays.copyOf(firstChild, capacity);
+                nextSibling = Arrays.copyOf(nextSibling, capacity);
+                word = Arrays.copyOf(word, capacity);
+                books = Arrays.copyOf(books, capacity);
+            }
+            label[size] = c;
+            depth[size] = nodeDepth;
+            firstChild[size] = -1;
+            nextSibling[size] = -1;
+            return size++;
+        }
+    }
+}
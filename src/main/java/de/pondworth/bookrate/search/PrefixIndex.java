@@ -0,0 +1,371 @@
+package de.pondworth.bookrate.search;
+
+import de.pondworth.bookrate.datasource.ReadYourWrites;
+import de.pondworth.bookrate.model.Book;
+import de.pondworth.bookrate.repository.BookRepository;
+import de.pondworth.bookrate.service.BookChangedEvent;
+import de.pondworth.bookrate.service.BookPatch;
+import de.pondworth.bookrate.service.CatalogGeneration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Präfix-Index für die Autovervollständigung über Titel und Autor.
+ * Schlüssel sind die normalisierten Felder ab jedem Wortanfang ("der hobbit", "hobbit"), damit auch ein Wort
+ * mitten im Titel gefunden wird. Der Großteil liegt als sortiertes Array vor (Präfix = zusammenhängender Bereich,
+ * per Binärsuche gefunden), Änderungen landen in einer kleinen TreeMap und werden ab einer gewissen Größe
+ * in das Array gemischt. Veraltete Array-Einträge werden beim Lesen gegen den aktuellen Stand des Buchs geprüft.
+ * Ein Präfix braucht mindestens minPrefixLength Zeichen: zu "d" passt fast jeder Schlüssel, und der Lauf über
+ * den ganzen Bereich würde unter der Lesesperre jede Änderung aufhalten.
+ */
+@Component
+public class PrefixIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(PrefixIndex.class);
+
+    // Referenz = Buch-ID * 2 + Feld
+    private static final int TITLE = 0;
+    private static final int AUTHOR = 1;
+
+    // Ab so vielen neuen plus veralteten Einträgen (mindestens) wird die TreeMap ins Array gemischt
+    private static final int MIN_MERGE_SIZE = 1024;
+
+    // Rating absteigend, dann Anzahl Bücher, dann alphabetisch
+    private static final Comparator<Suggestion> RANKING = Comparator.comparingDouble(Suggestion::rating).reversed()
+            .thenComparing(Comparator.comparingInt(Suggestion::books).reversed())
+            .thenComparing(Suggestion::text);
+
+    private final BookRepository bookRepository;
+    private final boolean enabled;
+    private final int minPrefixLength;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Buch-ID -> aktueller Stand
+    private final Map<Long, Document> documents = new HashMap<>();
+    // normalisierter Autor -> Anzahl und Rating-Summe seiner Bücher
+    private final Map<String, Author> authors = new HashMap<>();
+    private String[] keys = new String[0];
+    private long[] refs = new long[0];
+    private final TreeMap<String, Set<Long>> recent = new TreeMap<>();
+    // Einträge in der TreeMap plus veraltete Einträge in Array und TreeMap, die collect überspringen muss
+    private int pendingSize;
+    private volatile boolean ready;
+
+    public PrefixIndex(BookRepository bookRepository,
+                       @Value("${bookrate.search.suggest.enabled:true}") boolean enabled,
+                       @Value("${bookrate.search.suggest.min-prefix-length:3}") int minPrefixLength) {
+        this.bookRepository = bookRepository;
+        this.enabled = enabled;
+        this.minPrefixLength = Math.max(1, minPrefixLength);
+    }
+
+    /**
+     * Baut den Index aus der Datenbank auf. Bis er fertig ist, antwortet /suggest mit 503.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!enabled) {
+            log.info("Präfix-Index ist deaktiviert");
+            return;
+        }
+        long start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            ready = false;
+            documents.clear();
+            authors.clear();
+            ReadYourWrites.onPrimary(() -> bookRepository.forEachBook(null, null, book -> putDocumentUnlocked(
+                    book.getId(), Document.of(book.getTitle(), book.getAuthor(), book.getRating()))));
+            mergeUnlocked();
+            ready = true;
+        } catch (RuntimeException e) {
+            log.warn("Präfix-Index konnte nicht aufgebaut werden", e);
+            return;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Präfix-Index mit {} Büchern und {} Schlüsseln in {} ms aufgebaut",
+                documents.size(), keys.length, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int minPrefixLength() {
+        return minPrefixLength;
+    }
+
+    @Order(CatalogGeneration.BEFORE_GENERATION)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            switch (event.type()) {
+                case CREATED, UPDATED -> {
+                    Book book = event.book();
+                    update(book.getId(), Document.of(book.getTitle(), book.getAuthor(), book.getRating()));
+                }
+                case PATCHED -> {
+                    Document previous = documents.get(event.id());
+                    if (previous != null) {
+                        update(event.id(), previous.patch(event.patch()));
+                    }
+                }
+                case DELETED -> removeDocumentUnlocked(event.id());
+            }
+            if (pendingSize > Math.max(MIN_MERGE_SIZE, keys.length / 8)) {
+                mergeUnlocked();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Höchstens limit Titel und Autoren, die mit prefix beginnen (auch ab einem Wortanfang), die besten zuerst.
+     * Kürzere Präfixe als minPrefixLength liefern nichts.
+     */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        String needle = normalize(prefix);
+        if (needle.length() < minPrefixLength || limit < 1) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            Set<Long> titles = new HashSet<>();
+            Set<String> matchedAuthors = new HashSet<>();
+            int from = lowerBound(needle);
+            for (int i = from; i < keys.length && keys[i].startsWith(needle); i++) {
+                collect(keys[i], refs[i], titles, matchedAuthors);
+            }
+            for (Map.Entry<String, Set<Long>> entry : recent.subMap(needle, needle + Character.MAX_VALUE).entrySet()) {
+                for (long ref : entry.getValue()) {
+                    collect(entry.getKey(), ref, titles, matchedAuthors);
+                }
+            }
+
+            // Nur die besten limit behalten: Min-Heap mit dem schlechtesten Vorschlag oben
+            PriorityQueue<Suggestion> best = new PriorityQueue<>(limit + 1, RANKING.reversed());
+            for (long id : titles) {
+                Document document = documents.get(id);
+                offer(best, new Suggestion(Suggestion.Type.TITLE, document.title(), id, 1, document.rating()), limit);
+            }
+            for (String key : matchedAuthors) {
+                Author author = authors.get(key);
+                offer(best, new Suggestion(Suggestion.Type.AUTHOR, author.name, null, author.books,
+                        (double) author.ratingSum / author.books), limit);
+            }
+            List<Suggestion> result = new ArrayList<>(best);
+            result.sort(RANKING);
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Nur Einträge, die noch zum aktuellen Stand des Buchs passen
+    private void collect(String key, long ref, Set<Long> titles, Set<String> matchedAuthors) {
+        long id = ref >>> 1;
+        Document document = documents.get(id);
+        if (document == null) {
+            return;
+        }
+        if ((ref & 1) == TITLE) {
+            if (isWordSuffix(document.titleKey(), key)) {
+                titles.add(id);
+            }
+        } else {
+            if (isWordSuffix(document.authorKey(), key)) {
+                matchedAuthors.add(document.authorKey());
+            }
+        }
+    }
+
+    private static void offer(PriorityQueue<Suggestion> best, Suggestion suggestion, int limit) {
+        best.add(suggestion);
+        if (best.size() > limit) {
+            best.poll();
+        }
+    }
+
+    private void update(long id, Document document) {
+        Document previous = documents.get(id);
+        if (document.equals(previous)) {
+            return;
+        }
+        removeDocumentUnlocked(id);
+        putDocumentUnlocked(id, document);
+        for (String key : keys(document.titleKey())) {
+            addRecent(key, (id << 1) | TITLE);
+        }
+        for (String key : keys(document.authorKey())) {
+            addRecent(key, (id << 1) | AUTHOR);
+        }
+    }
+
+    private void addRecent(String key, long ref) {
+        if (recent.computeIfAbsent(key, k -> new HashSet<>()).add(ref)) {
+            pendingSize++;
+        }
+    }
+
+    private void putDocumentUnlocked(long id, Document document) {
+        documents.put(id, document);
+        if (!document.authorKey().isEmpty()) {
+            authors.computeIfAbsent(document.authorKey(), key -> new Author(document.author())).add(document.rating());
+        }
+    }
+
+    // Einträge bleiben stehen, collect erkennt sie am fehlenden oder geänderten Dokument.
+    // Sie zählen aber zum Mischen, sonst wüchse der tote Anteil bei reinen Löschungen unbegrenzt
+    private void removeDocumentUnlocked(long id) {
+        Document previous = documents.remove(id);
+        if (previous == null) {
+            return;
+        }
+        pendingSize += keys(previous.titleKey()).size() + keys(previous.authorKey()).size();
+        Author stats = authors.get(previous.authorKey());
+        if (stats != null && stats.remove(previous.rating())) {
+            authors.remove(previous.authorKey());
+        }
+    }
+
+    // Baut das sortierte Array aus allen aktuellen Dokumenten neu auf und leert die TreeMap
+    private void mergeUnlocked() {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(documents.size() * 4);
+        for (Map.Entry<Long, Document> entry : documents.entrySet()) {
+            long id = entry.getKey();
+            for (String key : keys(entry.getValue().titleKey())) {
+                entries.add(Map.entry(key, (id << 1) | TITLE));
+            }
+            for (String key : keys(entry.getValue().authorKey())) {
+                entries.add(Map.entry(key, (id << 1) | AUTHOR));
+            }
+        }
+        entries.sort(Map.Entry.comparingByKey());
+        keys = new String[entries.size()];
+        refs = new long[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            keys[i] = entries.get(i).getKey();
+            refs[i] = entries.get(i).getValue();
+        }
+        recent.clear();
+        pendingSize = 0;
+    }
+
+    // Für Tests: Anzahl der Schlüssel im sortierten Array
+    int sortedKeys() {
+        lock.readLock().lock();
+        try {
+            return keys.length;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Erster Index mit keys[i] >= needle
+    private int lowerBound(String needle) {
+        int index = Arrays.binarySearch(keys, needle);
+        return index >= 0 ? firstEqual(index) : -index - 1;
+    }
+
+    private int firstEqual(int index) {
+        while (index > 0 && keys[index - 1].equals(keys[index])) {
+            index--;
+        }
+        return index;
+    }
+
+    // "der hobbit" -> ["der hobbit", "hobbit"]
+    private static List<String> keys(String text) {
+        if (text.isEmpty()) {
+            return List.of();
+        }
+        List<String> keys = new ArrayList<>(2);
+        keys.add(text);
+        for (int i = text.indexOf(' '); i >= 0; i = text.indexOf(' ', i + 1)) {
+            if (i + 1 < text.length() && text.charAt(i + 1) != ' ') {
+                keys.add(text.substring(i + 1));
+            }
+        }
+        return keys;
+    }
+
+    private static boolean isWordSuffix(String text, String key) {
+        return text.endsWith(key) && (text.length() == key.length() || text.charAt(text.length() - key.length() - 1) == ' ');
+    }
+
+    // Kleinbuchstaben, Leerraum zusammengefasst: "  Der   Hobbit" -> "der hobbit"
+    private static String normalize(String value) {
+        return value == null ? "" : value.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    // Mit den normalisierten Feldern, damit sie beim Lesen nicht jedes Mal neu berechnet werden
+    private record Document(String title, String author, int rating, String titleKey, String authorKey) {
+
+        static Document of(String title, String author, int rating) {
+            return new Document(title, author, rating, normalize(title), normalize(author));
+        }
+
+        Document patch(BookPatch patch) {
+            return of(patch.title() != null ? patch.title() : title,
+                    patch.author() != null ? patch.author() : author,
+                    patch.rating() != null ? patch.rating() : rating);
+        }
+    }
+
+    private static final class Author {
+
+        private final String name;
+        private int books;
+        private long ratingSum;
+
+        Author(String name) {
+            this.name = name;
+        }
+
+        void add(int rating) {
+            books++;
+            ratingSum += rating;
+        }
+
+        // true, wenn danach kein Buch mehr übrig ist
+        boolean remove(int rating) {
+            books--;
+            ratingSum -= rating;
+            return books == 0;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package de.pondworth.bookrate.search;
+
+/**
+ * Ein Vorschlag für die Autovervollständigung: ein Titel (mit bookId) oder ein Autor (über alle seine Bücher).
+ * rating ist beim Titel das Rating des Buchs, beim Autor der Durchschnitt; books zählt die Bücher dahinter.
+ */
+public record Suggestion(Type type, String text, Long bookId, int books, double rating) {
+
+    public enum Type { TITLE, AUTHOR }
+}
@@ -0,0 +1,252 @@
+package de.pondworth.bookrate.search;
+
+import de.pondworth.bookrate.datasource.ReadYourWrites;
+import de.pondworth.bookrate.model.Book;
+import de.pondworth.bookrate.repository.BookRepository;
+import de.pondworth.bookrate.service.BookChangedEvent;
+import de.pondworth.bookrate.service.BookPatch;
+import de.pondworth.bookrate.service.CatalogGeneration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-Memory-Trigramm-Index über Titel und Autor.
+ * Beantwortet dieselbe Frage wie BookRepository.searchByTitleOrAuthor ("enthält den Suchbegriff"),
+ * ohne die ganze Tabelle mit LIKE '%...%' durchsuchen zu müssen.
+ * Wird beim Start aus der Datenbank aufgebaut und danach über BookChangedEvents aktuell gehalten.
+ */
+@Component
+public class TrigramIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(TrigramIndex.class);
+
+    // Trennt Titel und Autor im gespeicherten Text, damit kein Treffer über die Feldgrenze entsteht
+    private static final char FIELD_SEPARATOR = '\u0000';
+
+    private final BookRepository bookRepository;
+    private final boolean enabled;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Buch-ID -> normalisierter Text "titel\0autor" (für den exakten Abgleich und zum Entfernen)
+    private final Map<Long, String> documents = new HashMap<>();
+    // Trigramm (3 Zeichen in einem long) -> sortierte Buch-IDs
+    private final Map<Long, PostingList> postings = new HashMap<>();
+    private volatile boolean ready;
+
+    public TrigramIndex(BookRepository bookRepository,
+                        @Value("${bookrate.search.trigram-index.enabled:true}") boolean enabled) {
+        this.bookRepository = bookRepository;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Baut den Index aus der Datenbank auf. Bis er fertig ist, sucht der BookService weiter per LIKE.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!enabled) {
+            log.info("Trigramm-Index ist deaktiviert, Suche läuft über die Datenbank");
+            return;
+        }
+        long start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            ready = false;
+            documents.clear();
+            postings.clear();
+            ReadYourWrites.onPrimary(() -> bookRepository.forEachBook(null, null, this::addUnlocked));
+            ready = true;
+        } catch (RuntimeException e) {
+            log.warn("Trigramm-Index konnte nicht aufgebaut werden, Suche läuft über die Datenbank", e);
+            return;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Trigramm-Index mit {} Büchern und {} Trigrammen in {} ms aufgebaut",
+                documents.size(), postings.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Order(CatalogGeneration.BEFORE_GENERATION)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (event.type() == BookChangedEvent.Type.PATCHED) {
+                patchUnlocked(event.id(), event.patch());
+                return;
+            }
+            removeUnlocked(event.id());
+            if (event.book() != null) {
+                addUnlocked(event.book());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Liefert die IDs aller Bücher, deren Titel oder Autor den Suchbegriff enthält (aufsteigend sortiert)
+     */
+    public List<Long> search(String query) {
+        String needle = normalize(query);
+        if (needle.isEmpty() || needle.indexOf(FIELD_SEPARATOR) >= 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            // Für weniger als 3 Zeichen gibt es kein Trigramm – dann reicht ein Durchlauf im Speicher
+            if (needle.length() < 3) {
+                return scan(needle);
+            }
+
+            List<PostingList> lists = new ArrayList<>();
+            for (long trigram : trigrams(needle)) {
+                PostingList list = postings.get(trigram);
+                if (list == null) {
+                    return List.of();
+                }
+                lists.add(list);
+            }
+            lists.sort(Comparator.comparingInt(PostingList::size));
+
+            // Kürzeste Liste durchgehen und in den anderen nachschlagen
+            PostingList smallest = lists.get(0);
+            List<Long> result = new ArrayList<>();
+            candidates:
+            for (int i = 0; i < smallest.size(); i++) {
+                long id = smallest.get(i);
+                for (int j = 1; j < lists.size(); j++) {
+                    if (!lists.get(j).contains(id)) {
+                        continue candidates;
+                    }
+                }
+                // Alle Trigramme vorhanden heißt noch nicht zusammenhängend – exakt nachprüfen
+                if (documents.get(id).contains(needle)) {
+                    result.add(id);
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<Long> scan(String needle) {
+        List<Long> result = new ArrayList<>();
+        for (Map.Entry<Long, String> entry : documents.entrySet()) {
+            if (entry.getValue().contains(needle)) {
+                result.add(entry.getKey());
+            }
+        }
+        result.sort(null);
+        return result;
+    }
+
+    private void addUnlocked(Book book) {
+        if (book.getId() == null) {
+            return;
+        }
+        indexUnlocked(book.getId(), normalize(book.getTitle()) + FIELD_SEPARATOR + normalize(book.getAuthor()));
+    }
+
+    // Teiländerung: der nicht geänderte Teil (Titel oder Autor) kommt aus dem gespeicherten Text
+    private void patchUnlocked(Long id, BookPatch patch) {
+        if (id == null || (patch.title() == null && patch.author() == null)) {
+            return;
+        }
+        String previous = documents.get(id);
+        if (previous == null) {
+            return;
+        }
+        int separator = previous.indexOf(FIELD_SEPARATOR);
+        String title = patch.title() != null ? normalize(patch.title()) : previous.substring(0, separator);
+        String author = patch.author() != null ? normalize(patch.author()) : previous.substring(separator + 1);
+        indexUnlocked(id, title + FIELD_SEPARATOR + author);
+    }
+
+    private void indexUnlocked(long id, String text) {
+        String previous = documents.put(id, text);
+        if (previous != null) {
+            removePostings(id, previous);
+        }
+        for (long trigram : trigrams(text)) {
+            postings.computeIfAbsent(trigram, key -> new PostingList()).add(id);
+        }
+    }
+
+    private void removeUnlocked(Long id) {
+        if (id == null) {
+            return;
+        }
+        String text = documents.remove(id);
+        if (text != null) {
+            removePostings(id, text);
+        }
+    }
+
+    private void removePostings(long id, String text) {
+        for (long trigram : trigrams(text)) {
+            PostingList list = postings.get(trigram);
+            if (list != null) {
+                list.remove(id);
+                if (list.isEmpty()) {
+                    postings.remove(trigram);
+                }
+            }
+        }
+    }
+
+    /**
+     * Alle Trigramme eines Textes, ohne die, die über den Feldtrenner reichen
+     */
+    private static Set<Long> trigrams(String text) {
+        Set<Long> result = new HashSet<>();
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            char a = text.charAt(i);
+            char b = text.charAt(i + 1);
+            char c = text.charAt(i + 2);
+            if (a == FIELD_SEPARATOR || b == FIELD_SEPARATOR || c == FIELD_SEPARATOR) {
+                continue;
+            }
+            result.add(((long) a << 32) | ((long) b << 16) | c);
+        }
+        return result;
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,12 @@
+package de.pondworth.bookrate.service;
+
+import de.pondworth.bookrate.model.Book;
+
+import java.util.List;
+
+/**
+ * Ergebnis eines Sammelabrufs: die gefundenen Bücher in der Reihenfolge der angefragten IDs
+ * und die IDs, zu denen es kein Buch gibt.
+ */
+public record BookBatch(List<Book> books, List<Long> missing) {
+}
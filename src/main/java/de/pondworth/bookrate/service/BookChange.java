@@ -0,0 +1,10 @@
+package de.pondworth.bookrate.service;
+
+import java.util.Map;
+
+/**
+ * Ein Eintrag im Änderungs-Feed (GET /api/books/changes): type ist "created", "updated" oder "deleted",
+ * fields enthält bei created alle Felder, bei updated die geänderten (beim PUT alle), bei deleted nichts.
+ */
+public record BookChange(String type, Long id, Long version, Map<String, Object> fields) {
+}
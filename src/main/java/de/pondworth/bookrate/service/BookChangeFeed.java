@@ -0,0 +1,369 @@
+package de.pondworth.bookrate.service;
+
+import de.pondworth.bookrate.model.Book;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Änderungs-Feed als Server-Sent Events: jede committete Änderung bekommt eine fortlaufende Nummer und landet in
+ * einem Ringpuffer fester Größe. Clients, die mit Last-Event-ID wiederkommen, erhalten die verpassten Einträge aus
+ * dem Puffer; ist ihr Stand schon herausgefallen (oder von vor einem Neustart), kommt ein "reset"-Event und der
+ * Client lädt die Liste einmal neu. Versendet wird von einem eigenen Thread in Commit-Reihenfolge, langsame
+ * Clients bremsen also nie die schreibende Transaktion. Die Warteschlange des Threads ist begrenzt: läuft sie voll,
+ * fallen die folgenden Broadcasts weg und alle offenen Streams bekommen stattdessen ein "reset"-Event.
+ */
+@Component
+public class BookChangeFeed implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(BookChangeFeed.class);
+
+    // Stoppt vor dem Graceful Shutdown des Webservers, sonst würde der auf die offenen Streams warten
+    private static final int PHASE = SmartLifecycle.DEFAULT_PHASE - 1024;
+
+    // Startzeitpunkt als Präfix der Event-ID: nach einem Neustart passt keine alte ID mehr
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final Entry[] ring;
+    private final long timeoutMillis;
+    private final Duration heartbeat;
+    private final int maxSubscribers;
+    private final int queueSize;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final Counter resets;
+
+    // Geschrieben unter this; volatile, weil der Sende-Thread sie beim reset ohne Lock liest
+    private volatile long lastSequence;
+    // Ein Broadcast passte nicht mehr in die Warteschlange, alle Streams brauchen ein reset
+    private final AtomicBoolean overflowed = new AtomicBoolean();
+
+    private volatile boolean running;
+    private ThreadPoolExecutor sender;
+    private ScheduledExecutorService heartbeats;
+
+    public BookChangeFeed(MeterRegistry meterRegistry,
+                          @Value("${bookrate.changes.buffer-size:10000}") int bufferSize,
+                          @Value("${bookrate.changes.timeout:30m}") Duration timeout,
+                          @Value("${bookrate.changes.heartbeat:15s}") Duration heartbeat,
+                          @Value("${bookrate.changes.max-subscribers:10000}") int maxSubscribers,
+                          @Value("${bookrate.changes.queue-size:1000}") int queueSize) {
+        if (bufferSize < 1 || maxSubscribers < 1 || queueSize < 1) {
+            throw new IllegalArgumentException("Puffergröße, maximale Abonnenten und Warteschlange müssen positiv sein!");
+        }
+        this.ring = new Entry[bufferSize];
+        this.timeoutMillis = timeout.toMillis();
+        this.heartbeat = heartbeat;
+        this.maxSubscribers = maxSubscribers;
+        this.queueSize = queueSize;
+        this.resets = Counter.builder("bookrate.changes.resets")
+                .description("reset-Events an alle Streams, weil die Warteschlange des Feeds voll war")
+                .register(meterRegistry);
+        Gauge.builder("bookrate.changes.subscribers", subscribers, Set::size)
+                .description("Offene Verbindungen zum Änderungs-Feed")
+                .register(meterRegistry);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        // Felder jetzt lesen, das Buch-Objekt kann sich nach dem Commit noch ändern
+        BookChange change = toChange(event);
+        synchronized (this) {
+            Entry entry = new Entry(++lastSequence, change);
+            ring[(int) (entry.sequence() % ring.length)] = entry;
+            // Ohne Abonnenten nichts einreihen: wer später kommt, holt den Eintrag aus dem Ringpuffer.
+            // Nach einem Überlauf ebenso, das reset deckt ihn mit ab
+            if (subscribers.isEmpty() || overflowed.get()) {
+                return;
+            }
+            if (!send(() -> broadcast(entry))) {
+                overflowed.set(true);
+            }
+        }
+    }
+
+    /**
+     * Öffnet einen Stream ab lastEventId (ohne: ab jetzt). IllegalStateException, wenn zu viele Clients verbunden sind
+     * oder der Feed nicht läuft.
+     */
+    public SseEmitter subscribe(String lastEventId) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> {
+            subscribers.remove(subscriber);
+            emitter.complete();
+        });
+        emitter.onError(e -> subscribers.remove(subscriber));
+        synchronized (this) {
+            if (!running) {
+                throw new IllegalStateException("Änderungs-Feed ist nicht aktiv");
+            }
+            if (subscribers.size() >= maxSubscribers) {
+                throw new IllegalStateException("Zu viele offene Streams");
+            }
+            Backlog backlog = backlog(lastEventId);
+            subscriber.lastSent = backlog.lastSequence();
+            subscribers.add(subscriber);
+            // Landet in der Warteschlange vor allen späteren Änderungen; ältere, noch wartende Broadcasts
+            // überspringen den neuen Client dank lastSent, die Einträge kommen aus dem Backlog
+            if (!send(() -> catchUp(subscriber, backlog))) {
+                overflowed.set(true);
+            }
+        }
+        return emitter;
+    }
+
+    /**
+     * Einträge nach lastEventId aus dem Ringpuffer; reset, wenn die ID unbekannt oder schon überschrieben ist
+     */
+    synchronized Backlog backlog(String lastEventId) {
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return new Backlog(false, List.of(), lastSequence);
+        }
+        long after = parseSequence(lastEventId.trim());
+        long oldest = Math.max(1, lastSequence - ring.length + 1);
+        if (after < 0 || after > lastSequence || after < oldest - 1) {
+            return new Backlog(true, List.of(), lastSequence);
+        }
+        List<Entry> entries = new ArrayList<>((int) (lastSequence - after));
+        for (long sequence = after + 1; sequence <= lastSequence; sequence++) {
+            entries.add(ring[(int) (sequence % ring.length)]);
+        }
+        return new Backlog(false, entries, lastSequence);
+    }
+
+    String eventId(long sequence) {
+        return epoch + "-" + sequence;
+    }
+
+    public int subscribers() {
+        return subscribers.size();
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        // Ein Thread hält die Commit-Reihenfolge, die Warteschlange begrenzt den Speicher bei langsamen Clients
+        sender = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueSize),
+                Thread.ofPlatform().name("book-change-feed").daemon().factory());
+        heartbeats = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("book-change-feed-heartbeat").daemon().factory());
+        long period = heartbeat.toMillis();
+        if (period > 0) {
+            // Hält Proxies offen und findet abgerissene Verbindungen, auch wenn sich nichts ändert.
+            // Ist die Warteschlange voll, fällt der Heartbeat aus, dann wird ohnehin gesendet
+            heartbeats.scheduleAtFixedRate(() -> send(this::heartbeat), period, period, TimeUnit.MILLISECONDS);
+        }
+        running = true;
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        heartbeats.shutdown();
+        sender.shutdown();
+        try {
+            sender.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("Änderungs-Feed beendet, {} Streams geschlossen", subscribers.size());
+        for (Subscriber subscriber : List.copyOf(subscribers)) {
+            subscriber.emitter.complete();
+        }
+        subscribers.clear();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    /**
+     * Reiht task beim Sende-Thread ein; false, wenn die Warteschlange voll ist (oder der Feed gerade herunterfährt)
+     */
+    boolean send(Runnable task) {
+        if (!running) {
+            return true;
+        }
+        try {
+            sender.execute(() -> {
+                task.run();
+                resetIfOverflowed();
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Nach einem Überlauf: reset an alle Streams, auch an Clients, die gerade erst dazukamen. Ältere Broadcasts,
+     * die noch in der Warteschlange stehen, überspringen danach alle Clients dank lastSent.
+     * Ohne Lock: stop hält this, während es auf den Sende-Thread wartet.
+     */
+    private void resetIfOverflowed() {
+        if (!overflowed.compareAndSet(true, false)) {
+            return;
+        }
+        // Wer overflowed noch gesetzt sah und deshalb nichts eingereiht hat, hatte lastSequence schon erhöht
+        long sequence = lastSequence;
+        log.warn("Warteschlange des Änderungs-Feeds war voll, reset an {} Streams", subscribers.size());
+        resets.increment();
+        for (Subscriber subscriber : subscribers) {
+            try {
+                sendReset(subscriber, sequence);
+                subscriber.lastSent = sequence;
+            } catch (IOException | IllegalStateException e) {
+                subscribers.remove(subscriber);
+            }
+        }
+    }
+
+    /**
+     * Wartende Aufgaben des Sende-Threads
+     */
+    int queued() {
+        return sender.getQueue().size();
+    }
+
+    private void catchUp(Subscriber subscriber, Backlog backlog) {
+        try {
+            if (backlog.reset()) {
+                sendReset(subscriber, backlog.lastSequence());
+            } else if (backlog.entries().isEmpty()) {
+                // Sofort etwas schicken, damit Header und Verbindung beim Client ankommen
+                subscriber.emitter.send(SseEmitter.event().comment("verbunden"));
+            }
+            for (Entry entry : backlog.entries()) {
+                send(subscriber, entry);
+            }
+        } catch (IOException | IllegalStateException e) {
+            subscribers.remove(subscriber);
+        }
+    }
+
+    private void broadcast(Entry entry) {
+        for (Subscriber subscriber : subscribers) {
+            if (entry.sequence() <= subscriber.lastSent) {
+                continue;
+            }
+            try {
+                send(subscriber, entry);
+                subscriber.lastSent = entry.sequence();
+            } catch (IOException | IllegalStateException e) {
+                // Client weg: Spring schließt den Emitter über den Fehler-Callback des Containers
+                subscribers.remove(subscriber);
+            }
+        }
+    }
+
+    private void sendReset(Subscriber subscriber, long sequence) throws IOException {
+        subscriber.emitter.send(SseEmitter.event()
+                .id(eventId(sequence))
+                .name("reset")
+                .data(Map.of("type", "reset"), MediaType.APPLICATION_JSON));
+    }
+
+    private void send(Subscriber subscriber, Entry entry) throws IOException {
+        subscriber.emitter.send(SseEmitter.event()
+                .id(eventId(entry.sequence()))
+                .name(entry.change().type())
+                .data(entry.change(), MediaType.APPLICATION_JSON));
+    }
+
+    private void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            try {
+                subscriber.emitter.send(SseEmitter.event().comment(""));
+            } catch (IOException | IllegalStateException e) {
+                subscribers.remove(subscriber);
+            }
+        }
+    }
+
+    // "<epoch>-<nummer>", -1 bei fremder Epoche oder kaputter ID
+    private long parseSequence(String lastEventId) {
+        int dash = lastEventId.lastIndexOf('-');
+        if (dash < 0 || !epoch.equals(lastEventId.substring(0, dash))) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(lastEventId.substring(dash + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static BookChange toChange(BookChangedEvent event) {
+        return switch (event.type()) {
+            case CREATED -> new BookChange("created", event.id(), event.version(), fields(event.book()));
+            case UPDATED -> new BookChange("updated", event.id(), event.version(), fields(event.book()));
+            case PATCHED -> new BookChange("updated", event.id(), event.version(),
+                    Collections.unmodifiableMap(event.patch().changes()));
+            case DELETED -> new BookChange("deleted", event.id(), null, Map.of());
+        };
+    }
+
+    // LinkedHashMap statt Map.of: comment darf null sein
+    private static Map<String, Object> fields(Book book) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("title", book.getTitle());
+        fields.put("author", book.getAuthor());
+        fields.put("rating", book.getRating());
+        fields.put("comment", book.getComment());
+        fields.put("genre", book.getGenre());
+        fields.put("status", book.getStatus());
+        return Collections.unmodifiableMap(fields);
+    }
+
+    record Entry(long sequence, BookChange change) {
+    }
+
+    record Backlog(boolean reset, List<Entry> entries, long lastSequence) {
+    }
+
+    private static final class Subscriber {
+
+        private final SseEmitter emitter;
+        // Letzte Nummer, die der Client hat oder über den Backlog bekommt; nach der Anmeldung nur vom Sende-Thread benutzt
+        private long lastSent;
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package de.pondworth.bookrate.service;
+
+import de.pondworth.bookrate.model.Book;
+
+/**
+ * Wird vom BookService nach jeder erfolgreichen Schreiboperation veröffentlicht.
+ * Bei DELETED ist book null, Listener müssen sich den alten Zustand selbst merken.
+ * Bei PATCHED ist book ebenfalls null, patch enthält nur die geänderten Felder und version die neue Version.
+ */
+public record BookChangedEvent(Type type, Long id, Long version, Book book, BookPatch patch) {
+
+    public enum Type { CREATED, UPDATED, PATCHED, DELETED }
+
+    public static BookChangedEvent created(Book book) {
+        return new BookChangedEvent(Type.CREATED, book.getId(), null, book, null);
+    }
+
+    public static BookChangedEvent updated(Book book) {
+        return new BookChangedEvent(Type.UPDATED, book.getId(), null, book, null);
+    }
+
+    public static BookChangedEvent patched(Long id, long version, BookPatch patch) {
+        return new BookChangedEvent(Type.PATCHED, id, version, null, patch);
+    }
+
+    public static BookChangedEvent deleted(Long id) {
+        return new BookChangedEvent(Type.DELETED, id, null, null, null);
+    }
+
+    /**
+     * Version nach der Änderung, null bei DELETED. Bei CREATED/UPDATED erst aus dem Buch gelesen, wenn ein Listener
+     * fragt: Hibernate erhöht sie beim Flush, also nach dem Veröffentlichen, aber vor dem Commit.
+     */
+    @Override
+    public Long version() {
+        return book != null ? Long.valueOf(book.getVersion()) : version;
+    }
+}
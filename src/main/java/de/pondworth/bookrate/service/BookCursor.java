@@ -0,0 +1,50 @@
+package de.pondworth.bookrate.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaker Cursor für die Keyset-Pagination.
+ * Merkt sich die ID des letzten ausgelieferten Buchs und, wenn nicht nach ID sortiert wird,
+ * dessen Sortierwert. Nach außen wird er nur als Base64-String weitergegeben.
+ */
+public record BookCursor(long lastId, String sortValue) {
+
+    private static final String PREFIX = "id:";
+    private static final char SEPARATOR = '|';
+
+    public BookCursor(long lastId) {
+        this(lastId, null);
+    }
+
+    /**
+     * Kodiert den Cursor für den Query-Parameter "after"
+     */
+    public String encode() {
+        String text = sortValue == null ? PREFIX + lastId : PREFIX + lastId + SEPARATOR + sortValue;
+        byte[] raw = text.getBytes(StandardCharsets.UTF_8);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw);
+    }
+
+    /**
+     * Liest einen Cursor aus dem Query-Parameter "after"
+     */
+    public static BookCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!raw.startsWith(PREFIX)) {
+                throw new IllegalArgumentException("Unbekanntes Cursor-Format");
+            }
+            // Die ID enthält nie ein Trennzeichen, der Sortierwert (z. B. ein Titel) schon
+            int separator = raw.indexOf(SEPARATOR);
+            String id = separator < 0 ? raw.substring(PREFIX.length()) : raw.substring(PREFIX.length(), separator);
+            long lastId = Long.parseLong(id);
+            if (lastId < 0) {
+                throw new IllegalArgumentException("Negative ID im Cursor");
+            }
+            return new BookCursor(lastId, separator < 0 ? null : raw.substring(separator + 1));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Ungültiger Cursor: " + cursor);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package de.pondworth.bookrate.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parst den Parameter ?fields=id,title,author,rating in die Liste der zu lesenden Spalten
+ */
+final class BookFields {
+
+    static final List<String> ALLOWED = List.of("id", "title", "author", "rating", "comment", "genre", "status", "version");
+
+    private BookFields() {}
+
+    /**
+     * Unbekannte Felder führen zu einer IllegalArgumentException, doppelte werden ignoriert.
+     * Die ID ist immer dabei (als erstes Feld), weil der Cursor der nächsten Seite daraus entsteht.
+     */
+    static List<String> parse(String fields) {
+        List<String> columns = new ArrayList<>();
+        columns.add("id");
+        if (fields == null) {
+            return columns;
+        }
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (name.isEmpty() || columns.contains(name)) {
+                continue;
+            }
+            if (!ALLOWED.contains(name)) {
+                throw new IllegalArgumentException("Unbekanntes Feld: " + name + " (erlaubt: " + String.join(", ", ALLOWED) + ")");
+            }
+            columns.add(name);
+        }
+        return columns;
+    }
+}
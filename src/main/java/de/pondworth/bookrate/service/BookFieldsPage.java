@@ -0,0 +1,15 @@
+package de.pondworth.bookrate.service;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Eine Seite mit ausgewählten Feldern (?fields=...), jede Zeile als Map Feldname -> Wert.
+ * nextCursor ist null, wenn es keine weitere Seite gibt.
+ */
+public record BookFieldsPage(List<Map<String, Object>> books, String nextCursor) {
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
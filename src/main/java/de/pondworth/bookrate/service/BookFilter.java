@@ -0,0 +1,18 @@
+package de.pondworth.bookrate.service;
+
+/**
+ * Kriterien für den kombinierten Filter. Nicht gesetzte Kriterien (null) schränken nichts ein.
+ *
+ * @param rating    genaues Rating
+ * @param minRating untere Grenze (inklusive)
+ * @param maxRating obere Grenze (inklusive)
+ * @param query     Teilstring in Titel oder Autor
+ * @param sort      Sortierfeld (id, title, author, rating), mit "-" davor absteigend; Standard ist id
+ */
+public record BookFilter(Integer rating, Integer minRating, Integer maxRating,
+                         String genre, String status, String query, String sort) {
+
+    public static BookFilter of(Integer rating, String genre, String status) {
+        return new BookFilter(rating, null, null, genre, status, null, null);
+    }
+}
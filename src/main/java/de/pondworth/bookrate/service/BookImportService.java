@@ -0,0 +1,128 @@
+package de.pondworth.bookrate.service;
+
+import de.pondworth.bookrate.config.CacheConfig;
+import de.pondworth.bookrate.model.Book;
+import de.pondworth.bookrate.repository.BookRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+@Service
+public class BookImportService {
+
+    // Mehr Fehler werden nicht einzeln gemeldet, nur noch gezählt
+    static final int MAX_REPORTED_ERRORS = 1000;
+
+    private final BookService bookService;
+    private final BookRepository bookRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final CacheManager cacheManager;
+    private final int batchSize;
+
+    public BookImportService(BookService bookService,
+                             BookRepository bookRepository,
+                             ApplicationEventPublisher eventPublisher,
+                             CacheManager cacheManager,
+                             @Value("${bookrate.bulk.batch-size:500}") int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch-Größe muss positiv sein! Aktuell: " + batchSize);
+        }
+        this.bookService = bookService;
+        this.bookRepository = bookRepository;
+        this.eventPublisher = eventPublisher;
+        this.cacheManager = cacheManager;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Importiert Bücher zeilenweise. Gültige Bücher werden in Batches mit je einer
+     * Transaktion gespeichert, ungültige Zeilen landen mit Fehlermeldung im Ergebnis.
+     * Kann eine Zeile nicht gelesen werden, wird der Import an dieser Stelle beendet.
+     */
+    public BulkImportResult importBooks(Iterator<Book> books) {
+        List<Book> batch = new ArrayList<>(batchSize);
+        List<Integer> batchRows = new ArrayList<>(batchSize);
+        ImportState state = new ImportState();
+
+        int row = 0;
+        while (true) {
+            Book book;
+            try {
+                if (!books.hasNext()) {
+                    break;
+                }
+                book = books.next();
+            } catch (IllegalArgumentException e) {
+                // Eingabe kaputt – ab hier kann nicht weitergelesen werden
+                state.fail(row, e.getMessage());
+                break;
+            }
+
+            try {
+                bookService.validateBook(book);
+                bookService.applyDefaults(book);
+                book.setId(null); // Massenimport legt immer neue Bücher an
+                batch.add(book);
+                batchRows.add(row);
+            } catch (IllegalArgumentException e) {
+                state.fail(row, e.getMessage());
+            }
+
+            if (batch.size() == batchSize) {
+                saveBatch(batch, batchRows, state);
+            }
+            row++;
+        }
+        saveBatch(batch, batchRows, state);
+
+        return new BulkImportResult(state.imported, state.failed, state.errors);
+    }
+
+    /**
+     * Speichert einen Batch in einer Transaktion; schlägt er fehl, gelten alle Zeilen als fehlerhaft.
+     * insertAll löst die Bücher danach aus dem Persistence Context, der Speicher wächst also nicht mit der Datei.
+     */
+    private void saveBatch(List<Book> batch, List<Integer> batchRows, ImportState state) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            List<Book> saved = bookRepository.insertAll(batch);
+            state.imported += saved.size();
+            // Wie bei createBook: die neuen IDs könnten vorher schon als "nicht gefunden" im Cache liegen
+            Cache cache = cacheManager.getCache(CacheConfig.BOOKS);
+            for (Book book : saved) {
+                if (cache != null) {
+                    cache.evict(book.getId());
+                }
+                eventPublisher.publishEvent(BookChangedEvent.created(book));
+            }
+        } catch (DataAccessException e) {
+            for (Integer row : batchRows) {
+                state.fail(row, "Speichern fehlgeschlagen: " + e.getMostSpecificCause().getMessage());
+            }
+        }
+        batch.clear();
+        batchRows.clear();
+    }
+
+    private static class ImportState {
+        int imported;
+        int failed;
+        final List<BulkImportResult.RowError> errors = new ArrayList<>();
+
+        void fail(int row, String message) {
+            failed++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new BulkImportResult.RowError(row, message));
+            }
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package de.pondworth.bookrate.service;
+
+import de.pondworth.bookrate.model.Book;
+
+import java.util.List;
+
+/**
+ * Eine Seite aus der Keyset-Pagination.
+ * nextCursor ist null, wenn es keine weitere Seite gibt.
+ */
+public record BookPage(List<Book> books, String nextCursor) {
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
@@ -0,0 +1,34 @@
+package de.pondworth.bookrate.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Teiländerung eines Buchs (PATCH). Nur gesetzte Felder werden geschrieben, null heißt "unverändert".
+ */
+public record BookPatch(String title, String author, Integer rating, String comment, String genre, String status) {
+
+    public boolean isEmpty() {
+        return title == null && author == null && rating == null && comment == null && genre == null && status == null;
+    }
+
+    /**
+     * Feldname -> neuer Wert, nur für die gesetzten Felder
+     */
+    Map<String, Object> changes() {
+        Map<String, Object> changes = new LinkedHashMap<>();
+        put(changes, "title", title);
+        put(changes, "author", author);
+        put(changes, "rating", rating);
+        put(changes, "comment", comment);
+        put(changes, "genre", genre);
+        put(changes, "status", status);
+        return changes;
+    }
+
+    private static void put(Map<String, Object> changes, String field, Object value) {
+        if (value != null) {
+            changes.put(field, value);
+        }
+    }
+}
@@ -1,48 +1,110 @@
 package de.pondworth.bookrate.service;
 
+import de.pondworth.bookrate.config.CacheConfig;
 import de.pondworth.bookrate.model.Book;
 import de.pondworth.bookrate.repository.BookRepository;
+import de.pondworth.bookrate.search.ColumnarCatalog;
+import de.pondworth.bookrate.search.FuzzyIndex;
+import de.pondworth.bookrate.search.PrefixIndex;
+import de.pondworth.bookrate.search.Suggestion;
+import de.pondworth.bookrate.search.TrigramIndex;
+import de.pondworth.bookrate.stats.CatalogStats;
+import de.pondworth.bookrate.stats.RatingStatistics;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static de.pondworth.bookrate.repository.BookSpecifications.*;
 
 @Service
 public class BookService {
 
+    // Standard- und Maximalgröße einer Seite bei der Keyset-Pagination
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    // Große ID-Listen werden in Blöcken geladen (PostgreSQL erlaubt max. 32767 Bind-Parameter)
+    static final int ID_CHUNK_SIZE = 1000;
+
+    // Höchstens so viele IDs pro Sammelabruf (geladen in Blöcken zu ID_CHUNK_SIZE)
+    public static final int MAX_BATCH_SIZE = 5000;
+
+    // Standard- und Maximalzahl der Vorschläge bei der Autovervollständigung
+    public static final int DEFAULT_SUGGESTIONS = 10;
+    public static final int MAX_SUGGESTIONS = 50;
+
     private final BookRepository bookRepository;
+    private final TrigramIndex trigramIndex;
+    private final RatingStatistics ratingStatistics;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ColumnarCatalog columnarCatalog;
+    private final PrefixIndex prefixIndex;
+    private final SingleFlight singleFlight;
+    private final FuzzyIndex fuzzyIndex;
 
     // Constructor Injection (Best Practice)
-    public BookService(BookRepository bookRepository) {
+    public BookService(BookRepository bookRepository,
+                       TrigramIndex trigramIndex,
+                       RatingStatistics ratingStatistics,
+                       ApplicationEventPublisher eventPublisher,
+                       ColumnarCatalog columnarCatalog,
+                       PrefixIndex prefixIndex,
+                       SingleFlight singleFlight,
+                       FuzzyIndex fuzzyIndex) {
         this.bookRepository = bookRepository;
+        this.trigramIndex = trigramIndex;
+        this.ratingStatistics = ratingStatistics;
+        this.eventPublisher = eventPublisher;
+        this.columnarCatalog = columnarCatalog;
+        this.prefixIndex = prefixIndex;
+        this.singleFlight = singleFlight;
+        this.fuzzyIndex = fuzzyIndex;
     }
 
     // ==================== CRUD Operationen ====================
 
     /**
      * Gibt alle Bücher zurück oder filtert nach Rating und/oder Genre
+     * Mit aktivem Spaltenspeicher kommen die Treffer aus dem Speicher und nur die Bücher per Primärschlüssel aus der
+     * Datenbank; SUPPORTS, weil die Abfragen in findBooks bzw. findAllById ihre eigene read-only-Transaktion haben.
+     * Sonst teilen sich gleichzeitige Aufrufe mit denselben Parametern eine Abfrage (SingleFlight).
      */
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
     public List<Book> getAllBooks(Integer rating, String genre) {
-        // Validierung
-        if (rating != null) {
-            validateRating(rating);
-        }
-
-        // Filterlogik
-        if (rating != null && genre != null) {
-            return bookRepository.findByRatingAndGenre(rating, genre);
-        } else if (rating != null) {
-            return bookRepository.findByRating(rating);
-        } else if (genre != null) {
-            return bookRepository.findByGenre(genre);
-        } else {
-            return bookRepository.findAll();
+        if (columnarCatalog.isReady()) {
+            return filterColumns(rating, genre, null, 0L, Integer.MAX_VALUE);
         }
+        return singleFlight.execute("getAllBooks",
+                () -> queryBooks(BookFilter.of(rating, genre, null), null, null).books(), rating, genre);
     }
 
     /**
      * Gibt ein Buch anhand der ID zurück
+     * Read-Through-Cache: mit sync = true lädt bei gleichzeitigen Fehlschlägen für dieselbe ID nur ein Aufruf.
+     * Die Evicts der Schreibmethoden laufen erst nach deren Commit (siehe CacheConfig).
+     * Bewusst nicht readOnly: der Cache wird nur vom Primary gefüllt. Ein verzögertes Replikat brächte sonst nach
+     * einem Update den alten Stand für die ganze TTL zurück, auch für Clients im Read-your-writes-Fenster.
      */
+    @Transactional
+    @Cacheable(cacheNames = CacheConfig.BOOKS, key = "#id", condition = "#id != null && #id > 0", sync = true)
     public Optional<Book> getBookById(Long id) {
         if (id == null || id <= 0) {
             throw new IllegalArgumentException("ID muss eine positive Zahl sein!");
@@ -50,28 +112,60 @@ public class BookService {
         return bookRepository.findById(id);
     }
 
+    /**
+     * Mehrere Bücher auf einmal, in der Reihenfolge der IDs (doppelte IDs nur einmal).
+     * Statt eines findById pro Buch eine Abfrage WHERE id IN (...) pro ID_CHUNK_SIZE IDs;
+     * IDs ohne Buch stehen in missing.
+     */
+    @Transactional(readOnly = true)
+    public BookBatch getBooksByIds(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            throw new IllegalArgumentException("Mindestens eine ID angeben!");
+        }
+        List<Long> distinct = new ArrayList<>(new LinkedHashSet<>(ids));
+        if (distinct.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Höchstens " + MAX_BATCH_SIZE + " IDs pro Abruf!");
+        }
+        for (Long id : distinct) {
+            if (id == null || id <= 0) {
+                throw new IllegalArgumentException("ID muss eine positive Zahl sein!");
+            }
+        }
+        List<Book> books = findAllByIds(distinct);
+        if (books.size() == distinct.size()) {
+            return new BookBatch(books, List.of());
+        }
+        Set<Long> found = new HashSet<>();
+        for (Book book : books) {
+            found.add(book.getId());
+        }
+        List<Long> missing = distinct.stream().filter(id -> !found.contains(id)).toList();
+        return new BookBatch(books, missing);
+    }
+
     /**
      * Erstellt ein neues Buch
+     * Evict, falls die neue ID vorher schon als "nicht gefunden" im Cache lag
      */
+    @CacheEvict(cacheNames = CacheConfig.BOOKS, key = "#result.id")
     public Book createBook(Book book) {
         // Validierung
         validateBook(book);
 
         // Geschäftslogik: Standardwerte setzen falls nicht vorhanden
-        if (book.getGenre() == null || book.getGenre().isEmpty()) {
-            book.setGenre("Unbekannt");
-        }
-        if (book.getStatus() == null || book.getStatus().isEmpty()) {
-            book.setStatus("Unbekannt");
-        }
+        applyDefaults(book);
 
         // Speichern
-        return bookRepository.save(book);
+        Book saved = bookRepository.save(book);
+        eventPublisher.publishEvent(BookChangedEvent.created(saved));
+        return saved;
     }
 
     /**
      * Aktualisiert ein bestehendes Buch
      */
+    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.BOOKS, key = "#id")
     public Book updateBook(Long id, Book updatedBook) {
         if (id == null || id <= 0) {
             throw new IllegalArgumentException("ID muss eine positive Zahl sein!");
@@ -92,57 +186,406 @@ public class BookService {
         existingBook.setGenre(updatedBook.getGenre());
         existingBook.setStatus(updatedBook.getStatus());
 
-        return bookRepository.save(existingBook);
+        Book saved = bookRepository.save(existingBook);
+        eventPublisher.publishEvent(BookChangedEvent.updated(saved));
+        return saved;
+    }
+
+    /**
+     * Ändert nur die gesetzten Felder, sofern das Buch noch die erwartete Version hat.
+     * Liefert die neue Version oder leer, wenn es das Buch nicht gibt. Hat jemand anderes das Buch inzwischen
+     * geändert, kommt eine OptimisticLockingFailureException statt eines stillen Überschreibens.
+     */
+    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.BOOKS, key = "#id")
+    public OptionalLong patchBook(Long id, long version, BookPatch patch) {
+        if (id == null || id <= 0) {
+            throw new IllegalArgumentException("ID muss eine positive Zahl sein!");
+        }
+        validatePatch(patch);
+        BookPatch changes = applyDefaults(patch);
+
+        if (bookRepository.patch(id, version, changes.changes()) == 0) {
+            // Nur im Fehlerfall eine zweite Abfrage: fehlt das Buch oder hat es eine andere Version?
+            if (!bookRepository.existsById(id)) {
+                return OptionalLong.empty();
+            }
+            throw new OptimisticLockingFailureException("Buch mit ID " + id + " wurde inzwischen geändert (erwartet: Version " + version + ")");
+        }
+        eventPublisher.publishEvent(BookChangedEvent.patched(id, version + 1, changes));
+        return OptionalLong.of(version + 1);
     }
 
     /**
      * Löscht ein Buch
      */
+    @CacheEvict(cacheNames = CacheConfig.BOOKS, key = "#id")
     public void deleteBook(Long id) {
         if (id == null || id <= 0) {
             throw new IllegalArgumentException("ID muss eine positive Zahl sein!");
         }
 
-        if (!bookRepository.existsById(id)) {
+        // 0 gelöschte Bücher heißt "nicht gefunden"
+        if (bookRepository.deleteBook(id) == 0) {
             throw new IllegalArgumentException("Buch mit ID " + id + " nicht gefunden!");
         }
-
-        bookRepository.deleteById(id);
+        eventPublisher.publishEvent(BookChangedEvent.deleted(id));
     }
 
     // ==================== Such- und Filterfunktionen ====================
 
     /**
      * Sucht Bücher nach Titel oder Autor
+     * Solange der Trigramm-Index noch nicht aufgebaut ist, wird per LIKE in der Datenbank gesucht.
+     * Gleichzeitige gleiche Suchen teilen sich eine Abfrage (SingleFlight); SUPPORTS, damit die wartenden
+     * Aufrufer keine Verbindung aus dem Pool belegen.
      */
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
     public List<Book> searchBooks(String query) {
         if (query == null || query.trim().isEmpty()) {
             throw new IllegalArgumentException("Suchbegriff darf nicht leer sein!");
         }
-        return bookRepository.searchByTitleOrAuthor(query.trim());
+        String text = query.trim();
+        return singleFlight.execute("searchBooks", () -> {
+            if (trigramIndex.isReady()) {
+                return findAllByIds(trigramIndex.search(text));
+            }
+            return bookRepository.searchByTitleOrAuthor(text);
+        }, searchKey(text));
+    }
+
+    /**
+     * Fehlertolerante Suche: Bücher, in deren Titel oder Autor jedes Wort des Suchbegriffs bis auf wenige Tippfehler
+     * vorkommt, die mit den wenigsten Fehlern zuerst. Ohne limit höchstens DEFAULT_PAGE_SIZE Treffer.
+     * Nur aus dem FuzzyIndex: die Datenbank kann das nicht mit vertretbarem Aufwand.
+     */
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public List<Book> searchBooksFuzzy(String query, Integer limit) {
+        if (query == null || query.trim().isEmpty()) {
+            throw new IllegalArgumentException("Suchbegriff darf nicht leer sein!");
+        }
+        int size = pageLimit(limit).max() - 1;
+        if (!fuzzyIndex.isReady()) {
+            throw new IllegalStateException("Index für die fehlertolerante Suche ist noch nicht aufgebaut");
+        }
+        String text = query.trim();
+        return singleFlight.execute("searchBooksFuzzy",
+                () -> findAllByIds(fuzzyIndex.search(text, size)), searchKey(text), size);
+    }
+
+    /**
+     * Vorschläge für die Autovervollständigung: Titel und Autoren, die mit prefix beginnen (auch ab einem Wortanfang),
+     * nach Rating sortiert. Kommt nur aus dem Präfix-Index, ein LIKE 'abc%' pro Tastendruck wäre zu teuer.
+     */
+    public List<Suggestion> suggest(String prefix, Integer limit) {
+        if (prefix == null || prefix.trim().isEmpty()) {
+            throw new IllegalArgumentException("Präfix darf nicht leer sein!");
+        }
+        if (prefix.trim().length() < prefixIndex.minPrefixLength()) {
+            throw new IllegalArgumentException("Präfix muss mindestens " + prefixIndex.minPrefixLength() + " Zeichen haben!");
+        }
+        int size = limit == null ? DEFAULT_SUGGESTIONS : limit;
+        if (size < 1 || size > MAX_SUGGESTIONS) {
+            throw new IllegalArgumentException("Anzahl der Vorschläge muss zwischen 1 und " + MAX_SUGGESTIONS + " liegen!");
+        }
+        if (!prefixIndex.isReady()) {
+            throw new IllegalStateException("Präfix-Index ist noch nicht aufgebaut");
+        }
+        return prefixIndex.suggest(prefix, size);
     }
 
     /**
      * Filtert Bücher nach Genre und/oder Status
      */
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
     public List<Book> filterBooks(String genre, String status) {
-        if (genre != null && status != null) {
-            return bookRepository.findByGenreAndStatus(genre, status);
-        } else if (genre != null) {
-            return bookRepository.findByGenre(genre);
-        } else if (status != null) {
-            return bookRepository.findByStatus(status);
-        } else {
-            return bookRepository.findAll();
+        if (columnarCatalog.isReady()) {
+            return filterColumns(null, genre, status, 0L, Integer.MAX_VALUE);
+        }
+        return singleFlight.execute("filterBooks",
+                () -> queryBooks(BookFilter.of(null, genre, status), null, null).books(), genre, status);
+    }
+
+    /**
+     * Reicht alle Bücher (optional nach Genre/Status gefiltert) einzeln an den Consumer weiter,
+     * ohne sie als Liste in den Speicher zu laden
+     */
+    public void exportBooks(String genre, String status, Consumer<? super Book> action) {
+        bookRepository.forEachBook(genre, status, action);
+    }
+
+    // ==================== Statistiken ====================
+
+    /**
+     * Anzahl, Durchschnitt und Sterne-Verteilung pro Genre und Status aus den In-Memory-Zählern
+     */
+    public CatalogStats getStatistics() {
+        if (!ratingStatistics.isReady()) {
+            throw new IllegalStateException("Statistiken werden noch aufgebaut");
+        }
+        return ratingStatistics.snapshot();
+    }
+
+    // ==================== Keyset-Pagination ====================
+
+    /**
+     * Wie getAllBooks, aber seitenweise ab dem Cursor "after"
+     */
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public BookPage getAllBooks(Integer rating, String genre, String after, Integer limit) {
+        if (columnarCatalog.isReady()) {
+            return pageColumns(rating, genre, null, after, limit);
+        }
+        return singleFlight.execute("getAllBooks",
+                () -> queryBooks(BookFilter.of(rating, genre, null), after, pageSize(limit)), rating, genre, after, pageSize(limit));
+    }
+
+    /**
+     * Wie filterBooks, aber seitenweise ab dem Cursor "after"
+     */
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public BookPage filterBooks(String genre, String status, String after, Integer limit) {
+        if (columnarCatalog.isReady()) {
+            return pageColumns(null, genre, status, after, limit);
+        }
+        return singleFlight.execute("filterBooks",
+                () -> queryBooks(BookFilter.of(null, genre, status), after, pageSize(limit)), genre, status, after, pageSize(limit));
+    }
+
+    /**
+     * Wie searchBooks, aber seitenweise ab dem Cursor "after"
+     */
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public BookPage searchBooks(String query, String after, Integer limit) {
+        if (query == null || query.trim().isEmpty()) {
+            throw new IllegalArgumentException("Suchbegriff darf nicht leer sein!");
+        }
+        String text = query.trim();
+        long afterId = decodeCursor(after);
+        Limit pageLimit = pageLimit(limit);
+        return singleFlight.execute("searchBooks", () -> {
+            if (trigramIndex.isReady()) {
+                List<Long> ids = trigramIndex.search(text).stream()
+                        .filter(id -> id > afterId)
+                        .limit(pageLimit.max())
+                        .toList();
+                return toPage(findAllByIds(ids), pageLimit);
+            }
+            return toPage(bookRepository.searchByTitleOrAuthorAfter(text, afterId, pageLimit), pageLimit);
+        }, searchKey(text), afterId, pageLimit.max());
+    }
+
+    // ==================== Kombinierter Filter ====================
+
+    /**
+     * Rating (genau oder als Bereich), Genre, Status und Suchbegriff in beliebiger Kombination und Sortierung,
+     * immer als eine einzige SQL-Abfrage. Ohne after und limit kommen alle Treffer.
+     */
+    @Transactional(readOnly = true)
+    public BookPage queryBooks(BookFilter filter, String after, Integer limit) {
+        if (filter.rating() != null) {
+            validateRating(filter.rating());
+        }
+        if (filter.minRating() != null) {
+            validateRating(filter.minRating());
+        }
+        if (filter.maxRating() != null) {
+            validateRating(filter.maxRating());
+        }
+        if (filter.minRating() != null && filter.maxRating() != null && filter.minRating() > filter.maxRating()) {
+            throw new IllegalArgumentException("minRating darf nicht größer als maxRating sein!");
+        }
+        BookSort sort = BookSort.parse(filter.sort());
+        // Nur reine Attribut-Filter in den Query-Cache, freie Suchbegriffe würden ihn nur füllen
+        boolean cacheable = filter.query() == null;
+
+        Specification<Book> where = Specification.allOf(
+                hasRating(filter.rating()),
+                ratingBetween(filter.minRating(), filter.maxRating()),
+                hasGenre(filter.genre()),
+                hasStatus(filter.status()));
+        if (filter.query() != null) {
+            if (filter.query().trim().isEmpty()) {
+                throw new IllegalArgumentException("Suchbegriff darf nicht leer sein!");
+            }
+            String text = filter.query().trim();
+            if (trigramIndex.isReady()) {
+                // Wenige Treffer im Index: Primärschlüssel statt LIKE über die ganze Tabelle
+                List<Long> ids = trigramIndex.search(text);
+                if (ids.isEmpty()) {
+                    return new BookPage(List.of(), null);
+                }
+                where = where.and(ids.size() <= ID_CHUNK_SIZE ? idIn(ids) : titleOrAuthorContains(text));
+            } else {
+                where = where.and(titleOrAuthorContains(text));
+            }
+        }
+
+        if ((after == null || after.isEmpty()) && limit == null) {
+            return new BookPage(bookRepository.findBooks(where, sort.toSort(), Limit.unlimited(), cacheable), null);
+        }
+        Limit pageLimit = pageLimit(limit);
+        if (after != null && !after.isEmpty()) {
+            where = where.and(sort.after(BookCursor.decode(after)));
+        }
+        return toPage(bookRepository.findBooks(where, sort.toSort(), pageLimit, cacheable), pageLimit, sort);
+    }
+
+    // ==================== Sparse Fieldsets (?fields=...) ====================
+
+    /**
+     * Wie getAllBooks, liest aber nur die Spalten aus fields. Ohne after und limit kommen alle Treffer.
+     */
+    @Transactional(readOnly = true)
+    public BookFieldsPage getAllBookFields(Integer rating, String genre, String fields, String after, Integer limit) {
+        if (rating != null) {
+            validateRating(rating);
         }
+        return findFields(fields, Specification.allOf(hasRating(rating), hasGenre(genre)), after, limit);
+    }
+
+    /**
+     * Wie filterBooks, liest aber nur die Spalten aus fields. Ohne after und limit kommen alle Treffer.
+     */
+    @Transactional(readOnly = true)
+    public BookFieldsPage filterBookFields(String genre, String status, String fields, String after, Integer limit) {
+        return findFields(fields, Specification.allOf(hasGenre(genre), hasStatus(status)), after, limit);
+    }
+
+    /**
+     * Wie searchBooks, liest aber nur die Spalten aus fields. Ohne after und limit kommen alle Treffer.
+     */
+    @Transactional(readOnly = true)
+    public BookFieldsPage searchBookFields(String query, String fields, String after, Integer limit) {
+        if (query == null || query.trim().isEmpty()) {
+            throw new IllegalArgumentException("Suchbegriff darf nicht leer sein!");
+        }
+        if (!trigramIndex.isReady()) {
+            return findFields(fields, titleOrAuthorContains(query.trim()), after, limit);
+        }
+
+        List<String> columns = BookFields.parse(fields);
+        long afterId = decodeCursor(after);
+        Limit pageLimit = after == null && limit == null ? Limit.unlimited() : pageLimit(limit);
+        List<Long> ids = trigramIndex.search(query.trim()).stream()
+                .filter(id -> id > afterId)
+                .limit(pageLimit.isLimited() ? pageLimit.max() : Long.MAX_VALUE)
+                .toList();
+
+        // IDs sind aufsteigend sortiert, die Blöcke kommen also schon in der richtigen Reihenfolge zurück
+        List<Map<String, Object>> rows = new ArrayList<>(ids.size());
+        for (int from = 0; from < ids.size(); from += ID_CHUNK_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + ID_CHUNK_SIZE, ids.size()));
+            rows.addAll(bookRepository.findFields(columns, idIn(chunk), Limit.unlimited()));
+        }
+        return toFieldsPage(rows, pageLimit);
+    }
+
+    // Gleiche Prüfung und Reihenfolge (nach ID) wie queryBooks, Treffer aus dem Spaltenspeicher
+    private List<Book> filterColumns(Integer rating, String genre, String status, long afterId, int limit) {
+        if (rating != null) {
+            validateRating(rating);
+        }
+        return findAllByIds(columnarCatalog.filter(rating, genre, status, afterId, limit));
+    }
+
+    private BookPage pageColumns(Integer rating, String genre, String status, String after, Integer limit) {
+        Limit pageLimit = pageLimit(limit);
+        return toPage(filterColumns(rating, genre, status, decodeCursor(after), pageLimit.max()), pageLimit);
+    }
+
+    private BookFieldsPage findFields(String fields, Specification<Book> where, String after, Integer limit) {
+        List<String> columns = BookFields.parse(fields);
+        if (after == null && limit == null) {
+            return new BookFieldsPage(bookRepository.findFields(columns, where, Limit.unlimited()), null);
+        }
+        long afterId = decodeCursor(after);
+        Limit pageLimit = pageLimit(limit);
+        return toFieldsPage(bookRepository.findFields(columns, where.and(idAfter(afterId)), pageLimit), pageLimit);
+    }
+
+    private BookFieldsPage toFieldsPage(List<Map<String, Object>> rows, Limit pageLimit) {
+        int size = pageLimit.isLimited() ? pageLimit.max() - 1 : Integer.MAX_VALUE;
+        if (rows.size() <= size) {
+            return new BookFieldsPage(rows, null);
+        }
+        List<Map<String, Object>> books = rows.subList(0, size);
+        String next = new BookCursor((Long) books.get(size - 1).get("id")).encode();
+        return new BookFieldsPage(books, next);
+    }
+
+    /**
+     * Lädt Bücher zu den IDs in deren Reihenfolge, gelöschte IDs werden übersprungen
+     */
+    private List<Book> findAllByIds(List<Long> ids) {
+        Map<Long, Book> byId = new HashMap<>();
+        for (int from = 0; from < ids.size(); from += ID_CHUNK_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + ID_CHUNK_SIZE, ids.size()));
+            for (Book book : bookRepository.findAllById(chunk)) {
+                byId.put(book.getId(), book);
+            }
+        }
+        List<Book> books = new ArrayList<>(byId.size());
+        for (Long id : ids) {
+            Book book = byId.get(id);
+            if (book != null) {
+                books.add(book);
+            }
+        }
+        return books;
+    }
+
+    /**
+     * Liefert die ID hinter dem Cursor, ohne Cursor beginnt die erste Seite bei 0
+     */
+    private long decodeCursor(String after) {
+        if (after == null || after.isEmpty()) {
+            return 0L;
+        }
+        return BookCursor.decode(after).lastId();
+    }
+
+    /**
+     * Fragt eine Zeile mehr ab als angefordert, um zu erkennen, ob es eine nächste Seite gibt
+     */
+    private Limit pageLimit(Integer limit) {
+        int size = limit != null ? limit : DEFAULT_PAGE_SIZE;
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Limit muss zwischen 1 und " + MAX_PAGE_SIZE + " liegen! Aktuell: " + size);
+        }
+        return Limit.of(size + 1);
+    }
+
+    // Die Suche ist unabhängig von Groß-/Kleinschreibung: "Tolkien" und "tolkien" dürfen sich eine Abfrage teilen
+    private static String searchKey(String text) {
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    // Mit after oder limit wird immer seitenweise geliefert (ohne limit in Standardgröße)
+    private Integer pageSize(Integer limit) {
+        return limit != null ? limit : DEFAULT_PAGE_SIZE;
+    }
+
+    private BookPage toPage(List<Book> rows, Limit pageLimit) {
+        return toPage(rows, pageLimit, BookSort.BY_ID);
+    }
+
+    private BookPage toPage(List<Book> rows, Limit pageLimit, BookSort sort) {
+        int size = pageLimit.max() - 1;
+        if (rows.size() <= size) {
+            return new BookPage(rows, null);
+        }
+        List<Book> books = rows.subList(0, size);
+        String next = sort.cursor(books.get(size - 1)).encode();
+        return new BookPage(books, next);
     }
 
     // ==================== Validierung ====================
 
     /**
-     * Validiert ein Buch-Objekt
+     * Validiert ein Buch-Objekt (wird auch vom BookImportService, vom Write-Behind und im BookServiceBenchmark genutzt)
      */
-    private void validateBook(Book book) {
+    public void validateBook(Book book) {
         if (book == null) {
             throw new IllegalArgumentException("Buch darf nicht null sein!");
         }
@@ -161,6 +604,45 @@ public class BookService {
         validateRating(book.getRating());
     }
 
+    /**
+     * Setzt Standardwerte für Genre und Status, falls nicht vorhanden
+     */
+    void applyDefaults(Book book) {
+        if (book.getGenre() == null || book.getGenre().isEmpty()) {
+            book.setGenre("Unbekannt");
+        }
+        if (book.getStatus() == null || book.getStatus().isEmpty()) {
+            book.setStatus("Unbekannt");
+        }
+    }
+
+    /**
+     * Validiert die gesetzten Felder einer Teiländerung nach denselben Regeln wie validateBook
+     */
+    void validatePatch(BookPatch patch) {
+        if (patch == null || patch.isEmpty()) {
+            throw new IllegalArgumentException("Keine Änderungen angegeben!");
+        }
+        if (patch.title() != null && patch.title().trim().isEmpty()) {
+            throw new IllegalArgumentException("Titel darf nicht leer sein!");
+        }
+        if (patch.author() != null && patch.author().trim().isEmpty()) {
+            throw new IllegalArgumentException("Autor darf nicht leer sein!");
+        }
+        if (patch.rating() != null) {
+            validateRating(patch.rating());
+        }
+    }
+
+    /**
+     * Leeres Genre oder leerer Status wird wie beim Anlegen zu "Unbekannt"
+     */
+    BookPatch applyDefaults(BookPatch patch) {
+        return new BookPatch(patch.title(), patch.author(), patch.rating(), patch.comment(),
+                "".equals(patch.genre()) ? "Unbekannt" : patch.genre(),
+                "".equals(patch.status()) ? "Unbekannt" : patch.status());
+    }
+
     /**
      * Validiert ein Rating (muss zwischen 1 und 5 sein)
      */
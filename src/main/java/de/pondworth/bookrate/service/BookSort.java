@@ -0,0 +1,79 @@
+package de.pondworth.bookrate.service;
+
+import de.pondworth.bookrate.model.Book;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+import static de.pondworth.bookrate.repository.BookSpecifications.*;
+
+/**
+ * Sortierung des kombinierten Filters: ein Feld, bei gleichem Wert entscheidet die ID (in derselben Richtung).
+ * So bleibt die Reihenfolge eindeutig und die Keyset-Pagination funktioniert für jedes Feld.
+ */
+record BookSort(String field, boolean descending) {
+
+    static final List<String> ALLOWED = List.of("id", "title", "author", "rating");
+
+    static final BookSort BY_ID = new BookSort("id", false);
+
+    /**
+     * "rating" aufsteigend, "-rating" absteigend; ohne Angabe nach ID aufsteigend
+     */
+    static BookSort parse(String sort) {
+        if (sort == null || sort.isBlank()) {
+            return BY_ID;
+        }
+        String value = sort.trim();
+        boolean descending = value.startsWith("-");
+        String field = descending ? value.substring(1) : value;
+        if (!ALLOWED.contains(field)) {
+            throw new IllegalArgumentException("Unbekannte Sortierung: " + value + " (erlaubt: " + String.join(", ", ALLOWED) + ")");
+        }
+        return new BookSort(field, descending);
+    }
+
+    Sort toSort() {
+        Sort.Direction direction = descending ? Sort.Direction.DESC : Sort.Direction.ASC;
+        Sort byId = Sort.by(direction, "id");
+        return isById() ? byId : Sort.by(direction, field).and(byId);
+    }
+
+    /**
+     * Nur Zeilen hinter dem Cursor, passend zu dieser Sortierung
+     */
+    Specification<Book> after(BookCursor cursor) {
+        if (isById()) {
+            return descending ? idBefore(cursor.lastId()) : idAfter(cursor.lastId());
+        }
+        if (cursor.sortValue() == null) {
+            throw new IllegalArgumentException("Cursor passt nicht zur Sortierung nach " + field);
+        }
+        if (field.equals("rating")) {
+            return sortedAfter(field, parseRating(cursor.sortValue()), cursor.lastId(), descending);
+        }
+        return sortedAfter(field, cursor.sortValue(), cursor.lastId(), descending);
+    }
+
+    BookCursor cursor(Book book) {
+        return switch (field) {
+            case "title" -> new BookCursor(book.getId(), book.getTitle());
+            case "author" -> new BookCursor(book.getId(), book.getAuthor());
+            case "rating" -> new BookCursor(book.getId(), String.valueOf(book.getRating()));
+            default -> new BookCursor(book.getId());
+        };
+    }
+
+    private boolean isById() {
+        return field.equals("id");
+    }
+
+    private static Integer parseRating(String value) {
+        try {
+            return Integer.valueOf(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Ungültiger Cursor für die Sortierung nach rating");
+        }
+    }
+}
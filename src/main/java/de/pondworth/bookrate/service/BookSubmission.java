@@ -0,0 +1,24 @@
+package de.pondworth.bookrate.service;
+
+/**
+ * Stand einer Einreichung im Write-Behind-Modus (abrufbar über die Tracking-ID)
+ *
+ * @param bookId ID des gespeicherten Buchs, nur bei CREATED
+ * @param error  Fehlermeldung, nur bei FAILED
+ */
+public record BookSubmission(String trackingId, State state, Long bookId, String error) {
+
+    public enum State { PENDING, CREATED, FAILED }
+
+    static BookSubmission pending(String trackingId) {
+        return new BookSubmission(trackingId, State.PENDING, null, null);
+    }
+
+    static BookSubmission created(String trackingId, Long bookId) {
+        return new BookSubmission(trackingId, State.CREATED, bookId, null);
+    }
+
+    static BookSubmission failed(String trackingId, String error) {
+        return new BookSubmission(trackingId, State.FAILED, null, error);
+    }
+}
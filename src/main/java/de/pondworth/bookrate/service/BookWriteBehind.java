@@ -0,0 +1,244 @@
+package de.pondworth.bookrate.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import de.pondworth.bookrate.config.CacheConfig;
+import de.pondworth.bookrate.model.Book;
+import de.pondworth.bookrate.repository.BookRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-Behind für POST /api/books (optional, bookrate.write-behind.enabled=true).
+ * Geprüfte Bücher landen in einer begrenzten Warteschlange, ein Hintergrund-Thread speichert sie in Batches
+ * mit je einer Transaktion, sobald batch-size Bücher warten oder flush-interval nach dem ersten vergangen ist.
+ * Bei vollem Puffer wird abgelehnt statt zu blockieren, beim Herunterfahren wird der Puffer noch geleert.
+ */
+@Component
+public class BookWriteBehind implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(BookWriteBehind.class);
+
+    // Stoppt erst nach dem Webserver: keine neuen Einreichungen mehr, dann Puffer leeren
+    private static final int PHASE = SmartLifecycle.DEFAULT_PHASE - 4096;
+
+    // So oft prüft der wartende Writer, ob heruntergefahren wird
+    private static final long STOP_CHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final BookService bookService;
+    private final BookRepository bookRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final CacheManager cacheManager;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final Duration drainTimeout;
+    private final BlockingQueue<Pending> queue;
+    // Tracking-ID -> Stand, nach einer Weile vergessen
+    private final Cache<String, BookSubmission> submissions;
+
+    private volatile boolean running;
+    private Thread writer;
+
+    public BookWriteBehind(BookService bookService,
+                           BookRepository bookRepository,
+                           ApplicationEventPublisher eventPublisher,
+                           CacheManager cacheManager,
+                           MeterRegistry meterRegistry,
+                           @Value("${bookrate.write-behind.enabled:false}") boolean enabled,
+                           @Value("${bookrate.write-behind.capacity:10000}") int capacity,
+                           @Value("${bookrate.write-behind.batch-size:500}") int batchSize,
+                           @Value("${bookrate.write-behind.flush-interval:100ms}") Duration flushInterval,
+                           @Value("${bookrate.write-behind.drain-timeout:30s}") Duration drainTimeout) {
+        if (capacity < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("Kapazität und Batch-Größe müssen positiv sein!");
+        }
+        this.bookService = bookService;
+        this.bookRepository = bookRepository;
+        this.eventPublisher = eventPublisher;
+        this.cacheManager = cacheManager;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.drainTimeout = drainTimeout;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.submissions = Caffeine.newBuilder()
+                .maximumSize(10L * capacity)
+                .expireAfterWrite(Duration.ofMinutes(10))
+                .build();
+        Gauge.builder("bookrate.write-behind.queue", queue, BlockingQueue::size)
+                .description("Bücher, die auf das Speichern warten")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Prüft das Buch sofort (IllegalArgumentException wie bei createBook) und reiht es ein.
+     * Ist der Puffer voll oder wird gerade heruntergefahren, kommt eine IllegalStateException.
+     */
+    public BookSubmission submit(Book book) {
+        bookService.validateBook(book);
+        bookService.applyDefaults(book);
+        book.setId(null);
+        if (!running) {
+            throw new IllegalStateException("Write-Behind nimmt keine Bücher an");
+        }
+        String trackingId = UUID.randomUUID().toString();
+        BookSubmission pending = BookSubmission.pending(trackingId);
+        submissions.put(trackingId, pending);
+        if (!queue.offer(new Pending(trackingId, book))) {
+            submissions.invalidate(trackingId);
+            throw new IllegalStateException("Write-Behind-Puffer ist voll");
+        }
+        return pending;
+    }
+
+    public Optional<BookSubmission> status(String trackingId) {
+        return Optional.ofNullable(submissions.getIfPresent(trackingId));
+    }
+
+    public int queued() {
+        return queue.size();
+    }
+
+    @Override
+    public void start() {
+        if (!enabled || running) {
+            return;
+        }
+        running = true;
+        writer = Thread.ofPlatform().name("book-write-behind").daemon().start(this::run);
+        log.info("Write-Behind aktiv: Puffer {}, Batch {}, Intervall {} ms",
+                queue.remainingCapacity(), batchSize, TimeUnit.NANOSECONDS.toMillis(flushIntervalNanos));
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        log.info("Write-Behind wird beendet, {} Bücher im Puffer", queue.size());
+        try {
+            writer.join(drainTimeout.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive() || !queue.isEmpty()) {
+            log.warn("Write-Behind nicht vollständig geleert, {} Bücher verworfen", queue.size());
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(Math.min(flushIntervalNanos, STOP_CHECK_NANOS), TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                fill(batch, System.nanoTime() + flushIntervalNanos);
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                // Der Writer darf nie sterben, sonst läuft der Puffer voll
+                log.error("Write-Behind-Batch fehlgeschlagen", e);
+                fail(batch, e.getMessage());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    // Bis zur Batch-Größe auffüllen, höchstens bis zur Deadline warten (beim Herunterfahren gar nicht)
+    private void fill(List<Pending> batch, long deadline) throws InterruptedException {
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0 || !running) {
+                return;
+            }
+            Pending next = queue.poll(Math.min(remaining, STOP_CHECK_NANOS), TimeUnit.NANOSECONDS);
+            if (next != null) {
+                batch.add(next);
+            }
+        }
+    }
+
+    /**
+     * Speichert den Batch in einer Transaktion. Schlägt sie fehl, wird einzeln gespeichert,
+     * damit ein fehlerhaftes Buch nicht den ganzen Batch mitnimmt.
+     */
+    private void flush(List<Pending> batch) {
+        List<Book> books = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            books.add(pending.book());
+        }
+        try {
+            List<Book> saved = bookRepository.saveAll(books);
+            for (int i = 0; i < saved.size(); i++) {
+                created(batch.get(i).trackingId(), saved.get(i));
+            }
+        } catch (DataAccessException e) {
+            log.warn("Write-Behind-Batch mit {} Büchern fehlgeschlagen, speichere einzeln: {}",
+                    batch.size(), e.getMostSpecificCause().getMessage());
+            for (Pending pending : batch) {
+                try {
+                    pending.book().setId(null);
+                    created(pending.trackingId(), bookRepository.save(pending.book()));
+                } catch (DataAccessException single) {
+                    submissions.put(pending.trackingId(), BookSubmission.failed(pending.trackingId(),
+                            "Speichern fehlgeschlagen: " + single.getMostSpecificCause().getMessage()));
+                }
+            }
+        }
+    }
+
+    private void created(String trackingId, Book book) {
+        // Wie bei createBook: die neue ID könnte vorher schon als "nicht gefunden" im Cache liegen
+        Optional.ofNullable(cacheManager.getCache(CacheConfig.BOOKS)).ifPresent(cache -> cache.evict(book.getId()));
+        submissions.put(trackingId, BookSubmission.created(trackingId, book.getId()));
+        eventPublisher.publishEvent(BookChangedEvent.created(book));
+    }
+
+    private void fail(List<Pending> batch, String message) {
+        for (Pending pending : batch) {
+            submissions.put(pending.trackingId(), BookSubmission.failed(pending.trackingId(), message));
+        }
+    }
+
+    private record Pending(String trackingId, Book book) {}
+}
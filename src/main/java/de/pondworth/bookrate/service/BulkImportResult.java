@@ -0,0 +1,12 @@
+package de.pondworth.bookrate.service;
+
+import java.util.List;
+
+/**
+ * Ergebnis eines Massenimports: Anzahl gespeicherter und fehlgeschlagener Zeilen
+ * sowie die Fehler pro Zeile (Zeilen zählen ab 0)
+ */
+public record BulkImportResult(int imported, int failed, List<RowError> errors) {
+
+    public record RowError(int row, String message) {}
+}
@@ -0,0 +1,64 @@
+package de.pondworth.bookrate.service;
+
+import de.pondworth.bookrate.datasource.ReadYourWrites;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Katalogweiter Änderungszähler für die ETags der Listen-Endpunkte.
+ * Wird nach jedem Commit einer Änderung hochgezählt, statt die Antwort zu hashen.
+ * Das Hochzählen muss der letzte Schritt nach dem Commit sein: wer den neuen ETag sieht, muss auch die neuen
+ * Indizes sehen, sonst landet ein alter Stand unter dem neuen ETag und wird danach mit 304 bestätigt.
+ * Listener, die lesbaren Stand nachführen, tragen deshalb @Order(BEFORE_GENERATION).
+ * Mit Lesereplikat gilt der Zähler nur für Antworten vom Primary: das Replikat kann nach dem Commit noch den alten
+ * Stand liefern, der dann unter dem neuen ETag bis zum nächsten Schreibvorgang mit 304 bestätigt würde.
+ */
+@Component
+public class CatalogGeneration {
+
+    /**
+     * Order der Listener auf BookChangedEvent, deren Stand Listen-Antworten liefern (Indizes, Spaltenspeicher,
+     * Statistiken, JSON-Cache): sie laufen vor onBookChanged
+     */
+    public static final int BEFORE_GENERATION = Ordered.LOWEST_PRECEDENCE - 1000;
+
+    // Startzeitpunkt als Präfix: nach einem Neustart beginnt der Zähler wieder bei 0,
+    // alte ETags dürfen dann trotzdem nicht mehr passen
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong generation = new AtomicLong();
+    private final boolean replica;
+
+    public CatalogGeneration(@Value("${bookrate.datasource.replica.jdbc-url:}") String replicaUrl) {
+        this.replica = !replicaUrl.isBlank();
+    }
+
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        generation.incrementAndGet();
+    }
+
+    public long current() {
+        return generation.get();
+    }
+
+    /**
+     * Schwacher ETag für den aktuellen Stand des Katalogs: JSON, CBOR, Smile und gzip sind gleichwertige,
+     * aber nicht byte-gleiche Darstellungen (und Tomcat komprimiert keine Antworten mit starkem ETag).
+     * Muss VOR der Abfrage gelesen werden: ein danach committeter Schreibvorgang
+     * führt dann höchstens zu einem unnötigen 200, nie zu einem falschen 304.
+     * null (kein ETag, kein 304), wenn die Abfrage vom Replikat käme, also mit Replikat außerhalb des
+     * Read-your-writes-Fensters.
+     */
+    public String etag() {
+        if (replica && !ReadYourWrites.isPinned()) {
+            return null;
+        }
+        return "W/\"" + epoch + "-" + generation.get() + "\"";
+    }
+}
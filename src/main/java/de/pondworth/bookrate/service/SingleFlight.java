@@ -0,0 +1,100 @@
+package de.pondworth.bookrate.service;
+
+import de.pondworth.bookrate.datasource.ReadYourWrites;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Bündelt gleichzeitige, identische Lesezugriffe: der erste Aufrufer führt die Abfrage aus, wer mit denselben
+ * Parametern dazukommt, solange sie noch läuft, wartet auf dasselbe Ergebnis statt eine eigene Abfrage zu starten.
+ * Fertige Ergebnisse werden nicht aufgehoben, das ist kein Cache.
+ * Der Änderungszähler des Katalogs gehört zum Schlüssel: wer nach einem committeten Schreibvorgang kommt,
+ * hängt sich nie an eine Abfrage, die vorher gestartet wurde.
+ * Ebenso die Read-your-writes-Bindung: an den Primary gebundene Aufrufer hängen sich nicht an eine Abfrage,
+ * die vom Replikat liest, und umgekehrt.
+ */
+@Component
+public class SingleFlight {
+
+    private final CatalogGeneration catalogGeneration;
+    private final boolean enabled;
+    private final Map<Key, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+
+    public SingleFlight(MeterRegistry meterRegistry,
+                        CatalogGeneration catalogGeneration,
+                        @Value("${bookrate.singleflight.enabled:true}") boolean enabled) {
+        this.meterRegistry = meterRegistry;
+        this.catalogGeneration = catalogGeneration;
+        this.enabled = enabled;
+        Gauge.builder("bookrate.singleflight.in-flight", inFlight, Map::size)
+                .description("Laufende Abfragen, auf die sich weitere Aufrufer hängen können")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Führt loader aus oder wartet auf eine laufende Ausführung mit gleicher operation und gleichen parameters.
+     * Exceptions des loaders bekommen alle wartenden Aufrufer.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String operation, Supplier<T> loader, Object... parameters) {
+        if (!enabled) {
+            return loader.get();
+        }
+        Key key = new Key(operation, catalogGeneration.current(), ReadYourWrites.isPinned(), Arrays.asList(parameters));
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(key, flight);
+        if (running != null) {
+            count(operation, "coalesced");
+            return (T) await(running);
+        }
+
+        count(operation, "executed");
+        try {
+            T result = loader.get();
+            flight.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    private static Object await(CompletableFuture<Object> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    private void count(String operation, String result) {
+        Counter.builder("bookrate.singleflight.calls")
+                .description("Lesezugriffe, die selbst ausgeführt (executed) oder an eine laufende Abfrage gehängt wurden (coalesced)")
+                .tag("operation", operation)
+                .tag("result", result)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private record Key(String operation, long generation, boolean pinned, List<Object> parameters) {}
+}
@@ -0,0 +1,9 @@
+package de.pondworth.bookrate.stats;
+
+import java.util.Map;
+
+/**
+ * Antwort von GET /api/books/stats: Gesamtwerte sowie Kennzahlen pro Genre und pro Status
+ */
+public record CatalogStats(RatingStats total, Map<String, RatingStats> byGenre, Map<String, RatingStats> byStatus) {
+}
@@ -0,0 +1,203 @@
+package de.pondworth.bookrate.stats;
+
+import de.pondworth.bookrate.datasource.ReadYourWrites;
+import de.pondworth.bookrate.model.Book;
+import de.pondworth.bookrate.repository.BookRepository;
+import de.pondworth.bookrate.service.BookChangedEvent;
+import de.pondworth.bookrate.service.BookPatch;
+import de.pondworth.bookrate.service.CatalogGeneration;
+import de.pondworth.bookrate.util.LongLongMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Zähler für Anzahl, Durchschnitt und Sterne-Verteilung pro Genre und Status.
+ * Werden beim Start einmal aus der Datenbank aufgebaut und danach bei jeder
+ * Änderung nur um die Differenz zwischen altem und neuem Stand angepasst.
+ */
+@Component
+public class RatingStatistics {
+
+    private static final Logger log = LoggerFactory.getLogger(RatingStatistics.class);
+
+    private static final long NONE = -1L;
+
+    private final BookRepository bookRepository;
+
+    // Genre- und Statusnamen bekommen eine laufende Nummer, damit pro Buch ein long reicht
+    private final Dictionary genres = new Dictionary();
+    private final Dictionary statuses = new Dictionary();
+    private final Counter total = new Counter();
+    // Buch-ID -> gepackter Stand (Rating, Genre-Nummer, Status-Nummer), um Änderungen und Löschungen abzuziehen
+    private final LongLongMap books = new LongLongMap();
+    private volatile boolean ready;
+
+    public RatingStatistics(BookRepository bookRepository) {
+        this.bookRepository = bookRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.nanoTime();
+        synchronized (this) {
+            ready = false;
+            genres.clear();
+            statuses.clear();
+            total.clear();
+            books.clear();
+            try {
+                ReadYourWrites.onPrimary(() -> bookRepository.forEachBook(null, null, this::put));
+            } catch (RuntimeException e) {
+                log.warn("Statistiken konnten nicht aufgebaut werden", e);
+                return;
+            }
+            ready = true;
+        }
+        log.info("Statistiken für {} Bücher in {} ms aufgebaut", books.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Order(CatalogGeneration.BEFORE_GENERATION)
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onBookChanged(BookChangedEvent event) {
+        if (event.type() == BookChangedEvent.Type.PATCHED) {
+            patch(event.id(), event.patch());
+        } else if (event.book() != null) {
+            put(event.book());
+        } else if (event.id() != null) {
+            subtract(books.remove(event.id(), NONE));
+        }
+    }
+
+    public synchronized CatalogStats snapshot() {
+        return new CatalogStats(total.toStats(), genres.toStats(), statuses.toStats());
+    }
+
+    private void put(Book book) {
+        if (book.getId() == null) {
+            return;
+        }
+        long state = pack(book.getRating(), genres.indexOf(book.getGenre()), statuses.indexOf(book.getStatus()));
+        subtract(books.put(book.getId(), state, NONE));
+        add(state, 1);
+    }
+
+    // Teiländerung: nicht geänderte Werte kommen aus dem gemerkten Stand
+    private void patch(Long id, BookPatch patch) {
+        if (id == null) {
+            return;
+        }
+        long previous = books.get(id, NONE);
+        if (previous == NONE || (patch.rating() == null && patch.genre() == null && patch.status() == null)) {
+            return;
+        }
+        int rating = patch.rating() != null ? patch.rating() : (int) (previous & 0xFF);
+        int genre = patch.genre() != null ? genres.indexOf(patch.genre()) : (int) ((previous >>> 8) & 0xFFFFFF);
+        int status = patch.status() != null ? statuses.indexOf(patch.status()) : (int) (previous >>> 32);
+        long state = pack(rating, genre, status);
+        books.put(id, state, NONE);
+        subtract(previous);
+        add(state, 1);
+    }
+
+    private void subtract(long state) {
+        if (state != NONE) {
+            add(state, -1);
+        }
+    }
+
+    private void add(long state, int delta) {
+        int rating = (int) (state & 0xFF);
+        total.add(rating, delta);
+        genres.counter((int) ((state >>> 8) & 0xFFFFFF)).add(rating, delta);
+        statuses.counter((int) (state >>> 32)).add(rating, delta);
+    }
+
+    private static long pack(int rating, int genre, int status) {
+        return ((long) status << 32) | ((long) genre << 8) | (rating & 0xFF);
+    }
+
+    /**
+     * Primitive Zähler für eine Gruppe
+     */
+    private static final class Counter {
+        private long count;
+        private long ratingSum;
+        private final long[] histogram = new long[5];
+
+        void add(int rating, int delta) {
+            count += delta;
+            ratingSum += (long) rating * delta;
+            if (rating >= 1 && rating <= 5) {
+                histogram[rating - 1] += delta;
+            }
+        }
+
+        void clear() {
+            count = 0;
+            ratingSum = 0;
+            Arrays.fill(histogram, 0);
+        }
+
+        RatingStats toStats() {
+            double average = count == 0 ? 0.0 : (double) ratingSum / count;
+            return new RatingStats(count, average, histogram.clone());
+        }
+    }
+
+    /**
+     * Ordnet Genre- bzw. Statusnamen eine Nummer und einen Zähler zu
+     */
+    private static final class Dictionary {
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private final List<String> names = new ArrayList<>();
+        private final List<Counter> counters = new ArrayList<>();
+
+        int indexOf(String name) {
+            String key = name == null ? "Unbekannt" : name;
+            Integer index = indexes.get(key);
+            if (index == null) {
+                index = names.size();
+                indexes.put(key, index);
+                names.add(key);
+                counters.add(new Counter());
+            }
+            return index;
+        }
+
+        Counter counter(int index) {
+            return counters.get(index);
+        }
+
+        void clear() {
+            indexes.clear();
+            names.clear();
+            counters.clear();
+        }
+
+        Map<String, RatingStats> toStats() {
+            Map<String, RatingStats> result = new TreeMap<>();
+            for (int i = 0; i < names.size(); i++) {
+                if (counters.get(i).count > 0) {
+                    result.put(names.get(i), counters.get(i).toStats());
+                }
+            }
+            return result;
+        }
+    }
+}
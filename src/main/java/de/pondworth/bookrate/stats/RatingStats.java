@@ -0,0 +1,8 @@
+package de.pondworth.bookrate.stats;
+
+/**
+ * Kennzahlen für eine Gruppe von Büchern.
+ * histogram[0] zählt die Bücher mit 1 Stern, histogram[4] die mit 5 Sternen.
+ */
+public record RatingStats(long count, double averageRating, long[] histogram) {
+}
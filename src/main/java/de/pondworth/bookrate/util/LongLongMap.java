@@ -0,0 +1,151 @@
+package de.pondworth.bookrate.util;
+
+import java.util.Arrays;
+
+/**
+ * Hash-Map von long auf long ohne Boxing (offene Adressierung, lineares Sondieren).
+ * Gedacht für Zustände pro Buch-ID, bei denen eine HashMap<Long, ...> pro Eintrag
+ * ein Vielfaches an Speicher bräuchte. Nicht thread-safe.
+ */
+public final class LongLongMap {
+
+    // Long.MIN_VALUE kommt als Buch-ID nicht vor und markiert freie Plätze
+    private static final long FREE = Long.MIN_VALUE;
+
+    private long[] keys;
+    private long[] values;
+    private int mask;
+    private int size;
+
+    public LongLongMap() {
+        this(16);
+    }
+
+    public LongLongMap(int expectedSize) {
+        allocate(tableSizeFor(Math.max(expectedSize, 8) * 2));
+    }
+
+    public long get(long key, long defaultValue) {
+        int slot = find(key);
+        return slot >= 0 ? values[slot] : defaultValue;
+    }
+
+    public boolean containsKey(long key) {
+        return find(key) >= 0;
+    }
+
+    /**
+     * Setzt den Wert und liefert den vorherigen (oder defaultValue, falls es keinen gab)
+     */
+    public long put(long key, long value, long defaultValue) {
+        checkKey(key);
+        int slot = index(key);
+        while (keys[slot] != FREE) {
+            if (keys[slot] == key) {
+                long previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > keys.length / 2) {
+            resize();
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Entfernt den Schlüssel und liefert den bisherigen Wert (oder defaultValue)
+     */
+    public long remove(long key, long defaultValue) {
+        int slot = find(key);
+        if (slot < 0) {
+            return defaultValue;
+        }
+        long previous = values[slot];
+        shiftBack(slot);
+        return previous;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, FREE);
+        size = 0;
+    }
+
+    private int find(long key) {
+        if (key == FREE) {
+            return -1;
+        }
+        int slot = index(key);
+        while (keys[slot] != FREE) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Löschen ohne Grabsteine: nachfolgende Einträge rücken in die Lücke,
+     * sofern ihr Wunschplatz nicht hinter der Lücke liegt
+     */
+    private void shiftBack(int gap) {
+        int slot = (gap + 1) & mask;
+        while (keys[slot] != FREE) {
+            int ideal = index(keys[slot]);
+            if (((slot - ideal) & mask) >= ((slot - gap) & mask)) {
+                keys[gap] = keys[slot];
+                values[gap] = values[slot];
+                gap = slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[gap] = FREE;
+        size--;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                int slot = index(oldKeys[i]);
+                while (keys[slot] != FREE) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        Arrays.fill(keys, FREE);
+        mask = capacity - 1;
+    }
+
+    private int index(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private static void checkKey(long key) {
+        if (key == FREE) {
+            throw new IllegalArgumentException("Long.MIN_VALUE ist als Schlüssel nicht erlaubt");
+        }
+    }
+
+    private static int tableSizeFor(int capacity) {
+        return Integer.highestOneBit(capacity - 1) << 1;
+    }
+}
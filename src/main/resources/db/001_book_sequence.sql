@@ -0,0 +1,8 @@
+-- Umstellung der Buch-IDs von IDENTITY auf die Sequenz book_seq (Pooled-Optimizer, 50er Schritte).
+-- Einmalig auf bestehenden Datenbanken ausführen, BEVOR die neue Version startet.
+-- Hibernate verteilt nach einem nextval() die IDs (wert - 49) bis wert,
+-- deshalb muss die Sequenz mindestens 50 über der größten vorhandenen ID stehen.
+
+CREATE SEQUENCE IF NOT EXISTS book_seq START WITH 1 INCREMENT BY 50;
+
+SELECT setval('book_seq', COALESCE((SELECT MAX(id) FROM book), 0) + 50);
@@ -0,0 +1,5 @@
+-- Versionsspalte für optimistisches Locking und die ETags von GET /api/books/{id}.
+-- Einmalig auf bestehenden Datenbanken ausführen, BEVOR die neue Version startet.
+-- Vorhandene Zeilen starten mit Version 0.
+
+ALTER TABLE book ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,44 @@
+-- Genre und Status als SMALLINT-Verweis auf Wörterbuch-Tabellen statt als Text in jeder Zeile,
+-- dazu Indizes für die Filter. Einmalig auf bestehenden Datenbanken ausführen, BEVOR die neue Version startet.
+-- Leere oder fehlende Werte werden wie in BookService.applyDefaults zu "Unbekannt".
+
+BEGIN;
+
+CREATE TABLE IF NOT EXISTS genre (
+    id   SMALLINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name VARCHAR(255) NOT NULL UNIQUE
+);
+
+CREATE TABLE IF NOT EXISTS book_status (
+    id   SMALLINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name VARCHAR(255) NOT NULL UNIQUE
+);
+
+INSERT INTO genre (name)
+SELECT DISTINCT COALESCE(NULLIF(genre, ''), 'Unbekannt') FROM book
+ON CONFLICT (name) DO NOTHING;
+
+INSERT INTO book_status (name)
+SELECT DISTINCT COALESCE(NULLIF(status, ''), 'Unbekannt') FROM book
+ON CONFLICT (name) DO NOTHING;
+
+ALTER TABLE book ADD COLUMN IF NOT EXISTS genre_id SMALLINT REFERENCES genre (id);
+ALTER TABLE book ADD COLUMN IF NOT EXISTS status_id SMALLINT REFERENCES book_status (id);
+
+UPDATE book b SET genre_id = g.id
+FROM genre g WHERE g.name = COALESCE(NULLIF(b.genre, ''), 'Unbekannt');
+
+UPDATE book b SET status_id = s.id
+FROM book_status s WHERE s.name = COALESCE(NULLIF(b.status, ''), 'Unbekannt');
+
+ALTER TABLE book DROP COLUMN genre;
+ALTER TABLE book DROP COLUMN status;
+
+CREATE INDEX IF NOT EXISTS idx_book_genre_status ON book (genre_id, status_id, id);
+CREATE INDEX IF NOT EXISTS idx_book_rating_genre ON book (rating, genre_id, id);
+CREATE INDEX IF NOT EXISTS idx_book_status ON book (status_id, id);
+
+COMMIT;
+
+-- Die alten Textspalten belegen weiter Platz, bis die Tabelle neu geschrieben wird:
+-- VACUUM FULL book;
@@ -0,0 +1,169 @@
+package de.pondworth.bookrate;
+
+import de.pondworth.bookrate.config.CacheConfig;
+import de.pondworth.bookrate.model.Book;
+import de.pondworth.bookrate.repository.BookRepository;
+import de.pondworth.bookrate.search.ColumnarCatalog;
+import de.pondworth.bookrate.search.FuzzyIndex;
+import de.pondworth.bookrate.search.PrefixIndex;
+import de.pondworth.bookrate.search.TrigramIndex;
+import de.pondworth.bookrate.service.BookService;
+import de.pondworth.bookrate.service.CatalogGeneration;
+import de.pondworth.bookrate.service.SingleFlight;
+import de.pondworth.bookrate.stats.RatingStatistics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@SpringJUnitConfig
+public class BookCacheTest {
+
+    @Configuration
+    @Import(CacheConfig.class)
+    @EnableTransactionManagement
+    static class Config {
+
+        @Bean
+        BookRepository bookRepository() {
+            return Mockito.mock(BookRepository.class);
+        }
+
+        @Bean
+        BookService bookService(BookRepository bookRepository) {
+            return new BookService(bookRepository, Mockito.mock(TrigramIndex.class),
+                    Mockito.mock(RatingStatistics.class), Mockito.mock(ApplicationEventPublisher.class),
+                    Mockito.mock(ColumnarCatalog.class), Mockito.mock(PrefixIndex.class),
+                    new SingleFlight(new SimpleMeterRegistry(), new CatalogGeneration(""), true), Mockito.mock(FuzzyIndex.class));
+        }
+
+        @Bean
+        CacheManager cacheManager() {
+            return new CaffeineCacheManager(CacheConfig.BOOKS);
+        }
+
+        @Bean
+        CommitHookTransactionManager transactionManager() {
+            return new CommitHookTransactionManager();
+        }
+    }
+
+    // Transaktionen ohne Datenbank, mit einem Haken kurz vor dem Commit
+    static class CommitHookTransactionManager extends AbstractPlatformTransactionManager {
+
+        volatile Runnable beforeCommit = () -> {};
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+            Runnable hook = beforeCommit;
+            beforeCommit = () -> {};
+            hook.run();
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private CommitHookTransactionManager transactionManager;
+
+    private Book book;
+
+    @BeforeEach
+    void setUp() {
+        reset(bookRepository);
+        cacheManager.getCache(CacheConfig.BOOKS).clear();
+        book = new Book("Testbuch", "Testautor", 5, "Sehr gut!", "Roman", "Gelesen");
+        book.setId(1L);
+        when(bookRepository.findById(1L)).thenReturn(Optional.of(book));
+    }
+
+    @Test
+    void shouldLoadBookOnlyOnce() {
+        assertEquals("Testbuch", bookService.getBookById(1L).orElseThrow().getTitle());
+        assertEquals("Testbuch", bookService.getBookById(1L).orElseThrow().getTitle());
+
+        verify(bookRepository, times(1)).findById(1L);
+    }
+
+    @Test
+    void shouldReloadAfterUpdate() {
+        when(bookRepository.save(any(Book.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        bookService.getBookById(1L);
+
+        bookService.updateBook(1L, new Book("Neu", "Testautor", 4, "", "Roman", "Gelesen"));
+        bookService.getBookById(1L);
+
+        // 1x getBookById, 1x updateBook, 1x getBookById nach dem Evict
+        verify(bookRepository, times(3)).findById(1L);
+    }
+
+    @Test
+    void shouldNotKeepBookLoadedBeforeCommitOfUpdate() {
+        AtomicReference<String> committedTitle = new AtomicReference<>("Testbuch");
+        when(bookRepository.findById(1L)).thenAnswer(invocation -> {
+            Book committed = new Book(committedTitle.get(), "Testautor", 5, "", "Roman", "Gelesen");
+            committed.setId(1L);
+            return Optional.of(committed);
+        });
+        when(bookRepository.save(any(Book.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        transactionManager.beforeCommit = () -> {
+            // Ein anderer Client liest, während das Update noch nicht committet ist: alter Stand im Cache
+            CompletableFuture.runAsync(() -> bookService.getBookById(1L)).join();
+            committedTitle.set("Neu");
+        };
+
+        bookService.updateBook(1L, new Book("Neu", "Testautor", 4, "", "Roman", "Gelesen"));
+
+        assertEquals("Neu", bookService.getBookById(1L).orElseThrow().getTitle());
+    }
+
+    @Test
+    void shouldEvictOnDelete() {
+        when(bookRepository.deleteBook(1L)).thenReturn(1);
+        bookService.getBookById(1L);
+
+        bookService.deleteBook(1L);
+
+        assertNull(cacheManager.getCache(CacheConfig.BOOKS).get(1L));
+    }
+}
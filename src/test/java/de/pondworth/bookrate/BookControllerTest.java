@@ -1,25 +1,62 @@
 package de.pondworth.bookrate;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import de.pondworth.bookrate.config.MessageFormatConfig;
 import de.pondworth.bookrate.controller.BookController;
 import de.pondworth.bookrate.model.Book;
+import de.pondworth.bookrate.search.Suggestion;
+import de.pondworth.bookrate.service.BookBatch;
+import de.pondworth.bookrate.service.BookChange;
+import de.pondworth.bookrate.service.BookChangeFeed;
+import de.pondworth.bookrate.service.BookChangedEvent;
+import de.pondworth.bookrate.service.BookCursor;
+import de.pondworth.bookrate.service.BookFieldsPage;
+import de.pondworth.bookrate.service.BookFilter;
+import de.pondworth.bookrate.service.BookImportService;
+import de.pondworth.bookrate.service.BookPage;
+import de.pondworth.bookrate.service.BookPatch;
 import de.pondworth.bookrate.service.BookService;
+import de.pondworth.bookrate.service.BookSubmission;
+import de.pondworth.bookrate.service.BookWriteBehind;
+import de.pondworth.bookrate.service.BulkImportResult;
+import de.pondworth.bookrate.service.CatalogGeneration;
+import de.pondworth.bookrate.stats.CatalogStats;
+import de.pondworth.bookrate.stats.RatingStats;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.function.Consumer;
 
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasItem;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(BookController.class)
+@Import(CatalogGeneration.class)
 public class BookControllerTest {
 
     @Autowired
@@ -28,6 +65,18 @@ public class BookControllerTest {
     @MockBean
     private BookService bookService;  // Jetzt mocken wir den Service statt Repository!
 
+    @MockBean
+    private BookImportService bookImportService;
+
+    @MockBean
+    private BookWriteBehind writeBehind;
+
+    @MockBean
+    private BookChangeFeed changeFeed;
+
+    @Autowired
+    private CatalogGeneration catalogGeneration;
+
     @Test
     void shouldReturnListOfBooks() throws Exception {
         // Mock-Daten vorbereiten
@@ -173,4 +222,464 @@ public class BookControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$[0].title").value("Harry Potter"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldReturnPageWithNextLink() throws Exception {
+        Book book = new Book("Testbuch", "Autor", 5, "Kommentar", "Roman", "Gelesen");
+        book.setId(7L);
+        String next = new BookCursor(7L).encode();
+        Mockito.when(bookService.filterBooks("Roman", null, null, 1))
+                .thenReturn(new BookPage(List.of(book), next));
+
+        mockMvc.perform(get("/api/books/filter").param("genre", "Roman").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(7))
+                .andExpect(header().string("Link", containsString("after=" + next)))
+                .andExpect(header().string("Link", containsString("rel=\"next\"")));
+    }
+
+    @Test
+    void shouldExportBooksAsNdjson() throws Exception {
+        Mockito.doAnswer(invocation -> {
+            Consumer<Book> action = invocation.getArgument(2);
+            action.accept(new Book("Buch 1", "Autor A", 4, "Gut", "Roman", "Gelesen"));
+            action.accept(new Book("Buch 2", "Autor B", 3, "Okay", "Roman", "Gelesen"));
+            return null;
+        }).when(bookService).exportBooks(eq("Roman"), isNull(), any());
+
+        MvcResult result = mockMvc.perform(get("/api/books/export").param("genre", "Roman"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(containsString("\"title\":\"Buch 1\"")))
+                .andExpect(content().string(containsString("}\n{")));
+    }
+
+    @Test
+    void shouldImportNdjsonStream() throws Exception {
+        List<String> titles = new ArrayList<>();
+        Mockito.when(bookImportService.importBooks(any())).thenAnswer(invocation -> {
+            Iterator<Book> books = invocation.getArgument(0);
+            books.forEachRemaining(book -> titles.add(book.getTitle()));
+            return new BulkImportResult(2, 0, List.of());
+        });
+
+        String ndjson = """
+                {"title": "Buch 1", "author": "Autor A", "rating": 4}
+                {"title": "Buch 2", "author": "Autor B", "rating": 5}
+                """;
+
+        mockMvc.perform(post("/api/books/bulk")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(ndjson))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(2))
+                .andExpect(jsonPath("$.failed").value(0));
+
+        assertEquals(List.of("Buch 1", "Buch 2"), titles);
+    }
+
+    @Test
+    void shouldReturnStatistics() throws Exception {
+        RatingStats roman = new RatingStats(2, 4.5, new long[]{0, 0, 0, 1, 1});
+        Mockito.when(bookService.getStatistics())
+                .thenReturn(new CatalogStats(roman, Map.of("Roman", roman), Map.of("Gelesen", roman)));
+
+        mockMvc.perform(get("/api/books/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.byGenre.Roman.count").value(2))
+                .andExpect(jsonPath("$.byGenre.Roman.averageRating").value(4.5))
+                .andExpect(jsonPath("$.byStatus.Gelesen.histogram[4]").value(1));
+    }
+
+    @Test
+    void shouldReturn503WhileStatisticsAreRebuilding() throws Exception {
+        Mockito.when(bookService.getStatistics()).thenThrow(new IllegalStateException("Statistiken werden noch aufgebaut"));
+
+        mockMvc.perform(get("/api/books/stats"))
+                .andExpect(status().isServiceUnavailable());
+    }
+
+    // ==================== ETag Tests ====================
+
+    @Test
+    void shouldReturn304ForUnchangedBook() throws Exception {
+        Book book = new Book("Testbuch", "Autor", 5, "Kommentar", "Roman", "Gelesen");
+        book.setId(1L);
+        book.setVersion(3);
+        Mockito.when(bookService.getBookById(1L)).thenReturn(Optional.of(book));
+
+        mockMvc.perform(get("/api/books/1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "W/\"1-3\""));
+
+        mockMvc.perform(get("/api/books/1").header(HttpHeaders.IF_NONE_MATCH, "W/\"1-3\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        book.setVersion(4);
+        mockMvc.perform(get("/api/books/1").header(HttpHeaders.IF_NONE_MATCH, "W/\"1-3\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "W/\"1-4\""));
+    }
+
+    @Test
+    void shouldAnswerListWith304WithoutQueryUntilCatalogChanges() throws Exception {
+        Mockito.when(bookService.filterBooks("Roman", null)).thenReturn(List.of());
+
+        String etag = mockMvc.perform(get("/api/books/filter").param("genre", "Roman"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertTrue(etag.startsWith("W/\""), etag);
+
+        mockMvc.perform(get("/api/books/filter").param("genre", "Roman").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+        Mockito.verify(bookService, Mockito.times(1)).filterBooks("Roman", null);
+
+        catalogGeneration.onBookChanged(BookChangedEvent.deleted(1L));
+
+        mockMvc.perform(get("/api/books/filter").param("genre", "Roman").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+        Mockito.verify(bookService, Mockito.times(2)).filterBooks("Roman", null);
+    }
+
+    // ==================== Fields Tests ====================
+
+    @Test
+    void shouldReturnOnlyRequestedFields() throws Exception {
+        Mockito.when(bookService.filterBookFields("Roman", null, "title,rating", null, null))
+                .thenReturn(new BookFieldsPage(List.of(Map.of("id", 1L, "title", "Testbuch", "rating", 5)), null));
+
+        mockMvc.perform(get("/api/books/filter").param("genre", "Roman").param("fields", "title,rating"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].title").value("Testbuch"))
+                .andExpect(jsonPath("$[0].rating").value(5))
+                .andExpect(jsonPath("$[0].comment").doesNotExist());
+        Mockito.verify(bookService, Mockito.never()).filterBooks(any(), any());
+    }
+
+    @Test
+    void shouldReturn400ForUnknownField() throws Exception {
+        Mockito.when(bookService.getAllBookFields(null, null, "passwort", null, null))
+                .thenThrow(new IllegalArgumentException("Unbekanntes Feld: passwort"));
+
+        mockMvc.perform(get("/api/books").param("fields", "passwort"))
+                .andExpect(status().isBadRequest());
+    }
+
+    // ==================== Query Tests ====================
+
+    @Test
+    void shouldCombineAllCriteriaInOneQuery() throws Exception {
+        Book book = new Book("Testbuch", "Autor", 4, "Kommentar", "Roman", "Gelesen");
+        book.setId(3L);
+        BookFilter filter = new BookFilter(null, 3, 5, "Roman", "Gelesen", "test", "-rating");
+        String next = new BookCursor(3L, "4").encode();
+        Mockito.when(bookService.queryBooks(filter, null, 1)).thenReturn(new BookPage(List.of(book), next));
+
+        mockMvc.perform(get("/api/books/query")
+                        .param("minRating", "3").param("maxRating", "5")
+                        .param("genre", "Roman").param("status", "Gelesen")
+                        .param("query", "test").param("sort", "-rating").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(3))
+                .andExpect(header().string("Link", containsString("after=" + next)));
+    }
+
+    @Test
+    void shouldReturn400ForUnknownSort() throws Exception {
+        Mockito.when(bookService.queryBooks(any(), isNull(), isNull()))
+                .thenThrow(new IllegalArgumentException("Unbekannte Sortierung: comment"));
+
+        mockMvc.perform(get("/api/books/query").param("sort", "comment"))
+                .andExpect(status().isBadRequest());
+    }
+
+    // ==================== Patch Tests ====================
+
+    @Test
+    void shouldPatchWithIfMatchAndReturnNewEtag() throws Exception {
+        BookPatch patch = new BookPatch(null, null, 3, null, null, "Gelesen");
+        Mockito.when(bookService.patchBook(1L, 3L, patch)).thenReturn(OptionalLong.of(4L));
+
+        mockMvc.perform(patch("/api/books/1")
+                        .header(HttpHeaders.IF_MATCH, "W/\"1-3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"rating\":3,\"status\":\"Gelesen\"}"))
+                .andExpect(status().isNoContent())
+                .andExpect(header().string(HttpHeaders.ETAG, "W/\"1-4\""));
+    }
+
+    @Test
+    void shouldCompareIfMatchWeakly() throws Exception {
+        BookPatch patch = new BookPatch("Neu", null, null, null, null, null);
+        Mockito.when(bookService.patchBook(1L, 3L, patch)).thenReturn(OptionalLong.of(4L));
+
+        // Ohne W/ (ältere Clients) ist es derselbe Stand
+        mockMvc.perform(patch("/api/books/1")
+                        .header(HttpHeaders.IF_MATCH, "\"1-3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Neu\"}"))
+                .andExpect(status().isNoContent())
+                .andExpect(header().string(HttpHeaders.ETAG, "W/\"1-4\""));
+
+        mockMvc.perform(patch("/api/books/1")
+                        .header(HttpHeaders.IF_MATCH, "W/\"2-3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Neu\"}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldReturn412WhenBookChangedMeanwhile() throws Exception {
+        Mockito.when(bookService.patchBook(eq(1L), eq(2L), any()))
+                .thenThrow(new OptimisticLockingFailureException("Buch mit ID 1 wurde inzwischen geändert"));
+
+        mockMvc.perform(patch("/api/books/1")
+                        .header(HttpHeaders.IF_MATCH, "\"1-2\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Neu\"}"))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    void shouldRequireMatchingIfMatchForPatch() throws Exception {
+        mockMvc.perform(patch("/api/books/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Neu\"}"))
+                .andExpect(status().isPreconditionRequired());
+
+        mockMvc.perform(patch("/api/books/1")
+                        .header(HttpHeaders.IF_MATCH, "\"2-3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Neu\"}"))
+                .andExpect(status().isBadRequest());
+        Mockito.verify(bookService, Mockito.never()).patchBook(any(), Mockito.anyLong(), any());
+    }
+
+    // ==================== Write-Behind Tests ====================
+
+    @Test
+    void shouldAcceptSubmissionInWriteBehindMode() throws Exception {
+        Mockito.when(writeBehind.isEnabled()).thenReturn(true);
+        Mockito.when(writeBehind.submit(any(Book.class))).thenReturn(new BookSubmission("abc", BookSubmission.State.PENDING, null, null));
+
+        mockMvc.perform(post("/api/books")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Neu\",\"author\":\"Autor\",\"rating\":4}"))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string(HttpHeaders.LOCATION, containsString("/api/books/submissions/abc")))
+                .andExpect(jsonPath("$.state").value("PENDING"));
+        Mockito.verify(bookService, Mockito.never()).createBook(any());
+    }
+
+    @Test
+    void shouldReturn503WithRetryAfterWhenQueueIsFull() throws Exception {
+        Mockito.when(writeBehind.isEnabled()).thenReturn(true);
+        Mockito.when(writeBehind.submit(any(Book.class))).thenThrow(new IllegalStateException("Write-Behind-Puffer ist voll"));
+
+        mockMvc.perform(post("/api/books")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Neu\",\"author\":\"Autor\",\"rating\":4}"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"));
+    }
+
+    @Test
+    void shouldReturnSubmissionStatus() throws Exception {
+        Mockito.when(writeBehind.status("abc")).thenReturn(Optional.of(new BookSubmission("abc", BookSubmission.State.CREATED, 42L, null)));
+
+        mockMvc.perform(get("/api/books/submissions/abc"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.bookId").value(42));
+        mockMvc.perform(get("/api/books/submissions/xyz"))
+                .andExpect(status().isNotFound());
+    }
+
+    // ==================== Change Feed Tests ====================
+
+    @Test
+    void shouldStreamChangesAsServerSentEvents() throws Exception {
+        SseEmitter emitter = new SseEmitter();
+        Mockito.when(changeFeed.subscribe("abc-3")).thenReturn(emitter);
+
+        MvcResult result = mockMvc.perform(get("/api/books/changes").header("Last-Event-ID", "abc-3"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        emitter.send(SseEmitter.event().id("abc-4").name("deleted")
+                .data(new BookChange("deleted", 7L, null, Map.of()), MediaType.APPLICATION_JSON));
+        emitter.complete();
+
+        assertTrue(result.getResponse().getContentType().startsWith(MediaType.TEXT_EVENT_STREAM_VALUE));
+        assertEquals("no-store", result.getResponse().getHeader(HttpHeaders.CACHE_CONTROL));
+        String body = result.getResponse().getContentAsString();
+        assertTrue(body.contains("id:abc-4\nevent:deleted\ndata:{\"type\":\"deleted\",\"id\":7"), body);
+    }
+
+    @Test
+    void shouldReturn503WhenTooManyStreamsAreOpen() throws Exception {
+        Mockito.when(changeFeed.subscribe(null)).thenThrow(new IllegalStateException("Zu viele offene Streams"));
+
+        mockMvc.perform(get("/api/books/changes"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().exists(HttpHeaders.RETRY_AFTER));
+    }
+
+    // ==================== Fehlertolerante Suche Tests ====================
+
+    @Test
+    void shouldSearchFuzzyWithLimit() throws Exception {
+        Book book = new Book("Der Hobbit", "J.R.R. Tolkien", 5, "", "Roman", "Gelesen");
+        Mockito.when(bookService.searchBooksFuzzy("tolkein", 5)).thenReturn(List.of(book));
+
+        mockMvc.perform(get("/api/books/search").param("query", "tolkein").param("fuzzy", "true").param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.LINK))
+                .andExpect(jsonPath("$[0].author").value("J.R.R. Tolkien"));
+        Mockito.verify(bookService, Mockito.never()).searchBooks(Mockito.anyString());
+    }
+
+    @Test
+    void shouldRejectCursorForFuzzySearchAnd503WhileIndexIsBuilding() throws Exception {
+        Mockito.when(bookService.searchBooksFuzzy("tolkein", null)).thenThrow(new IllegalStateException("noch nicht aufgebaut"));
+
+        mockMvc.perform(get("/api/books/search").param("query", "tolkein").param("fuzzy", "true").param("after", "abc"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/books/search").param("query", "tolkein").param("fuzzy", "true"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().exists(HttpHeaders.RETRY_AFTER));
+    }
+
+    // ==================== Autovervollständigung Tests ====================
+
+    @Test
+    void shouldReturnSuggestions() throws Exception {
+        Mockito.when(bookService.suggest("tol", null)).thenReturn(List.of(
+                new Suggestion(Suggestion.Type.AUTHOR, "J.R.R. Tolkien", null, 2, 4.5),
+                new Suggestion(Suggestion.Type.TITLE, "Tolle Tage", 7L, 1, 3)));
+
+        mockMvc.perform(get("/api/books/suggest").param("prefix", "tol"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andExpect(jsonPath("$[0].type").value("AUTHOR"))
+                .andExpect(jsonPath("$[0].books").value(2))
+                .andExpect(jsonPath("$[1].bookId").value(7));
+    }
+
+    @Test
+    void shouldReturn400ForInvalidSuggestLimitAnd503WhileIndexIsBuilding() throws Exception {
+        Mockito.when(bookService.suggest("tol", 500)).thenThrow(new IllegalArgumentException("zu viele"));
+        Mockito.when(bookService.suggest("tol", null)).thenThrow(new IllegalStateException("noch nicht aufgebaut"));
+
+        mockMvc.perform(get("/api/books/suggest").param("prefix", "tol").param("limit", "500"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/books/suggest").param("prefix", "tol"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().exists(HttpHeaders.RETRY_AFTER));
+    }
+
+    // ==================== Content Negotiation Tests ====================
+
+    @Test
+    void shouldReturnListAsCborWhenRequested() throws Exception {
+        Book book = new Book("Testbuch", "Testautor", 5, "Sehr gut!", "Roman", "Will noch lesen");
+        Mockito.when(bookService.getAllBooks(null, null)).thenReturn(List.of(book));
+
+        MvcResult result = mockMvc.perform(get("/api/books").accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andExpect(header().stringValues(HttpHeaders.VARY, hasItem(HttpHeaders.ACCEPT)))
+                .andReturn();
+
+        List<Book> books = new CBORMapper().readValue(result.getResponse().getContentAsByteArray(), new TypeReference<>() {});
+        assertEquals("Testbuch", books.get(0).getTitle());
+        assertEquals("Roman", books.get(0).getGenre());
+    }
+
+    @Test
+    void shouldReturnListAsSmileWhenRequested() throws Exception {
+        Book first = new Book("Erstes", "Testautor", 5, null, "Roman", "Gelesen");
+        Book second = new Book("Zweites", "Testautor", 4, null, "Roman", "Gelesen");
+        Mockito.when(bookService.getAllBooks(null, null)).thenReturn(List.of(first, second));
+
+        MvcResult result = mockMvc.perform(get("/api/books").accept(MediaType.parseMediaType(MessageFormatConfig.APPLICATION_SMILE_VALUE)))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MessageFormatConfig.APPLICATION_SMILE_VALUE))
+                .andReturn();
+
+        List<Book> books = new SmileMapper().readValue(result.getResponse().getContentAsByteArray(), new TypeReference<>() {});
+        assertEquals(List.of("Erstes", "Zweites"), books.stream().map(Book::getTitle).toList());
+        assertEquals("Gelesen", books.get(1).getStatus());
+    }
+
+    @Test
+    void shouldKeepJsonAsDefaultFormat() throws Exception {
+        Mockito.when(bookService.getAllBooks(null, null)).thenReturn(List.of());
+
+        mockMvc.perform(get("/api/books").accept(MediaType.ALL))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    void shouldWriteBookListsFromCachedJsonPerVersion() throws Exception {
+        Book book = new Book("Testbuch", "Testautor", 5, "Sehr gut!", "Roman", "Gelesen");
+        book.setId(7L);
+        Mockito.when(bookService.filterBooks("Roman", null)).thenReturn(List.of(book));
+
+        mockMvc.perform(get("/api/books/filter").param("genre", "Roman"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$[0].title").value("Testbuch"));
+
+        // Gleiche Version: die Bytes kommen aus dem Cache, auch wenn sich das Objekt geändert hat
+        book.setTitle("Neuer Titel");
+        mockMvc.perform(get("/api/books/filter").param("genre", "Roman"))
+                .andExpect(jsonPath("$[0].title").value("Testbuch"));
+
+        book.setVersion(1);
+        mockMvc.perform(get("/api/books/filter").param("genre", "Roman"))
+                .andExpect(jsonPath("$[0].title").value("Neuer Titel"))
+                .andExpect(jsonPath("$[0].version").value(1));
+    }
+
+    @Test
+    void shouldReturnBatchInRequestOrderWithMissingIds() throws Exception {
+        Book first = new Book("Der Hobbit", "J.R.R. Tolkien", 5, "", "Fantasy", "Gelesen");
+        first.setId(3L);
+        Book second = new Book("Harry Potter", "J.K. Rowling", 4, "", "Fantasy", "Gelesen");
+        second.setId(1L);
+        Mockito.when(bookService.getBooksByIds(List.of(3L, 1L, 9L))).thenReturn(new BookBatch(List.of(first, second), List.of(9L)));
+
+        mockMvc.perform(get("/api/books/batch").param("ids", "3,1,9"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andExpect(jsonPath("$.books[0].id").value(3))
+                .andExpect(jsonPath("$.books[1].title").value("Harry Potter"))
+                .andExpect(jsonPath("$.missing[0]").value(9));
+
+        mockMvc.perform(post("/api/books/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[3, 1, 9]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.books.length()").value(2))
+                .andExpect(jsonPath("$.missing[0]").value(9));
+    }
+
+    @Test
+    void shouldRejectInvalidBatch() throws Exception {
+        Mockito.when(bookService.getBooksByIds(List.of(0L))).thenThrow(new IllegalArgumentException("ID muss eine positive Zahl sein!"));
+
+        mockMvc.perform(get("/api/books/batch").param("ids", "0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/books/batch").param("ids", "1,abc"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/api/books/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[0]"))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,67 @@
+package de.pondworth.bookrate;
+
+import de.pondworth.bookrate.model.Book;
+import de.pondworth.bookrate.repository.BookRepository;
+import de.pondworth.bookrate.service.BookImportService;
+import de.pondworth.bookrate.service.BulkImportResult;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Session;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Massenimport gegen eine echte Datenbank (H2 im Speicher): gespeicherte Bücher dürfen nicht
+ * im Persistence Context der Anfrage liegen bleiben
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:import;DB_CLOSE_DELAY=-1;MODE=PostgreSQL",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "bookrate.bulk.batch-size=2"
+})
+class BookImportPersistenceTest {
+
+    @Autowired
+    private BookImportService importService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void shouldNotKeepImportedBooksInPersistenceContext() {
+        List<Book> books = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            books.add(new Book("Buch " + i, "Autor", 4, "", "Roman", "Gelesen"));
+        }
+
+        // Wie Open-Session-in-View: ein EntityManager für die ganze Anfrage
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        TransactionSynchronizationManager.bindResource(entityManagerFactory, new EntityManagerHolder(entityManager));
+        try {
+            BulkImportResult result = importService.importBooks(books.iterator());
+
+            assertEquals(5, result.imported());
+            assertEquals(0, entityManager.unwrap(Session.class).getStatistics().getEntityCount());
+            assertFalse(entityManager.contains(books.get(0)));
+        } finally {
+            TransactionSynchronizationManager.unbindResource(entityManagerFactory);
+            entityManager.close();
+        }
+        assertEquals(5, bookRepository.count());
+    }
+}
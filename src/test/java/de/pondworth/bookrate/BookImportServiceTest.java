@@ -0,0 +1,173 @@
+package de.pondworth.bookrate;
+
+import de.pondworth.bookrate.config.CacheConfig;
+import de.pondworth.bookrate.model.Book;
+import de.pondworth.bookrate.repository.BookRepository;
+import de.pondworth.bookrate.search.ColumnarCatalog;
+import de.pondworth.bookrate.search.FuzzyIndex;
+import de.pondworth.bookrate.search.PrefixIndex;
+import de.pondworth.bookrate.search.TrigramIndex;
+import de.pondworth.bookrate.service.BookChangedEvent;
+import de.pondworth.bookrate.service.BookImportService;
+import de.pondworth.bookrate.service.BookService;
+import de.pondworth.bookrate.service.BulkImportResult;
+import de.pondworth.bookrate.service.CatalogGeneration;
+import de.pondworth.bookrate.service.SingleFlight;
+import de.pondworth.bookrate.stats.RatingStatistics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class BookImportServiceTest {
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @Mock
+    private TrigramIndex trigramIndex;
+
+    @Mock
+    private RatingStatistics ratingStatistics;
+
+    @Mock
+    private ColumnarCatalog columnarCatalog;
+
+    @Mock
+    private PrefixIndex prefixIndex;
+
+    @Mock
+    private FuzzyIndex fuzzyIndex;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private CacheManager cacheManager;
+
+    private BookImportService importService;
+
+    @BeforeEach
+    void setUp() {
+        // Batch-Größe 2, damit schon wenige Zeilen mehrere Batches ergeben
+        BookService bookService = new BookService(bookRepository, trigramIndex, ratingStatistics, eventPublisher, columnarCatalog, prefixIndex,
+                new SingleFlight(new SimpleMeterRegistry(), new CatalogGeneration(""), true), fuzzyIndex);
+        cacheManager = new CaffeineCacheManager(CacheConfig.BOOKS);
+        importService = new BookImportService(bookService, bookRepository, eventPublisher, cacheManager, 2);
+    }
+
+    private void saveAllReturnsInput() {
+        when(bookRepository.insertAll(anyList())).thenAnswer(invocation -> {
+            List<Book> saved = new ArrayList<>(invocation.getArgument(0));
+            long id = 1;
+            for (Book book : saved) {
+                book.setId(id++);
+            }
+            return saved;
+        });
+    }
+
+    @Test
+    void shouldSaveValidBooksInBatches() {
+        saveAllReturnsInput();
+        List<Book> books = List.of(
+                new Book("Buch 1", "Autor", 5, "", "Roman", "Gelesen"),
+                new Book("Buch 2", "Autor", 4, "", "Roman", "Gelesen"),
+                new Book("Buch 3", "Autor", 3, "", null, null)
+        );
+
+        BulkImportResult result = importService.importBooks(books.iterator());
+
+        assertEquals(3, result.imported());
+        assertEquals(0, result.failed());
+        assertEquals("Unbekannt", books.get(2).getGenre());
+        verify(bookRepository, times(2)).insertAll(anyList());
+        verify(eventPublisher, times(3)).publishEvent(any(BookChangedEvent.class));
+    }
+
+    @Test
+    void shouldEvictCachedNotFoundForImportedIds() {
+        saveAllReturnsInput();
+        cacheManager.getCache(CacheConfig.BOOKS).put(1L, Optional.empty());
+
+        importService.importBooks(List.of(new Book("Buch 1", "Autor", 5, "", "Roman", "Gelesen")).iterator());
+
+        assertNull(cacheManager.getCache(CacheConfig.BOOKS).get(1L));
+    }
+
+    @Test
+    void shouldReportInvalidRowsAndKeepValidOnes() {
+        saveAllReturnsInput();
+        List<Book> books = List.of(
+                new Book("Buch 1", "Autor", 5, "", "Roman", "Gelesen"),
+                new Book("", "Autor", 4, "", "Roman", "Gelesen"),
+                new Book("Buch 3", "Autor", 9, "", "Roman", "Gelesen")
+        );
+
+        BulkImportResult result = importService.importBooks(books.iterator());
+
+        assertEquals(1, result.imported());
+        assertEquals(2, result.failed());
+        assertEquals(1, result.errors().get(0).row());
+        assertTrue(result.errors().get(0).message().contains("Titel darf nicht leer sein"));
+        assertEquals(2, result.errors().get(1).row());
+    }
+
+    @Test
+    void shouldMarkWholeBatchAsFailedWhenSavingFails() {
+        when(bookRepository.insertAll(anyList())).thenThrow(new DataIntegrityViolationException("kaputt"));
+        List<Book> books = List.of(
+                new Book("Buch 1", "Autor", 5, "", "Roman", "Gelesen"),
+                new Book("Buch 2", "Autor", 4, "", "Roman", "Gelesen")
+        );
+
+        BulkImportResult result = importService.importBooks(books.iterator());
+
+        assertEquals(0, result.imported());
+        assertEquals(2, result.failed());
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void shouldStopAtUnreadableRow() {
+        saveAllReturnsInput();
+        Iterator<Book> broken = new Iterator<>() {
+            private int calls;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public Book next() {
+                if (calls++ == 0) {
+                    return new Book("Buch 1", "Autor", 5, "", "Roman", "Gelesen");
+                }
+                throw new IllegalArgumentException("Ungültiges JSON");
+            }
+        };
+
+        BulkImportResult result = importService.importBooks(broken);
+
+        assertEquals(1, result.imported());
+        assertEquals(1, result.failed());
+        assertEquals(1, result.errors().get(0).row());
+    }
+}
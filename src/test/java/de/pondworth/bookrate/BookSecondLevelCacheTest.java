@@ -0,0 +1,74 @@
+package de.pondworth.bookrate;
+
+import de.pondworth.bookrate.model.Book;
+import de.pondworth.bookrate.repository.BookRepository;
+import de.pondworth.bookrate.service.BookPatch;
+import de.pondworth.bookrate.service.BookService;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.util.List;
+import java.util.OptionalLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PATCH und DELETE gegen eine echte Datenbank (H2 im Speicher): im Second-Level-Cache fällt nur das betroffene Buch
+ * heraus, nicht die ganze Region book
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:second-level;DB_CLOSE_DELAY=-1;MODE=PostgreSQL",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "bookrate.search.trigram-index.enabled=false"
+})
+class BookSecondLevelCacheTest {
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void shouldEvictOnlyPatchedAndDeletedBook() {
+        Book patched = bookService.createBook(new Book("Der Hobbit", "J.R.R. Tolkien", 4, "", "Roman", "Gelesen"));
+        Book deleted = bookService.createBook(new Book("Momo", "Michael Ende", 5, "", "Roman", "Gelesen"));
+        Book other = bookService.createBook(new Book("Krabat", "Otfried Preußler", 5, "", "Roman", "Gelesen"));
+        Cache cache = entityManagerFactory.getCache();
+        cache.evictAll();
+        for (Book book : bookRepository.findAllById(List.of(patched.getId(), deleted.getId(), other.getId()))) {
+            assertTrue(cache.contains(Book.class, book.getId()));
+        }
+
+        OptionalLong version = bookService.patchBook(patched.getId(), patched.getVersion(),
+                new BookPatch(null, null, 2, null, null, null));
+        bookService.deleteBook(deleted.getId());
+
+        assertTrue(cache.contains(Book.class, other.getId()));
+        Book reloaded = bookRepository.findById(patched.getId()).orElseThrow();
+        assertEquals(2, reloaded.getRating());
+        assertEquals(version.getAsLong(), reloaded.getVersion());
+        assertTrue(bookRepository.findById(deleted.getId()).isEmpty());
+    }
+
+    @Test
+    void shouldRejectPatchWithOutdatedVersion() {
+        Book book = bookService.createBook(new Book("Die unendliche Geschichte", "Michael Ende", 5, "", "Roman", "Gelesen"));
+        bookService.patchBook(book.getId(), book.getVersion(), new BookPatch(null, null, 4, null, null, null));
+
+        assertThrows(OptimisticLockingFailureException.class,
+                () -> bookService.patchBook(book.getId(), book.getVersion(), new BookPatch(null, null, 3, null, null, null)));
+        assertEquals(4, bookRepository.findById(book.getId()).orElseThrow().getRating());
+    }
+}
@@ -2,19 +2,46 @@ package de.pondworth.bookrate;
 
 import de.pondworth.bookrate.model.Book;
 import de.pondworth.bookrate.repository.BookRepository;
+import de.pondworth.bookrate.search.ColumnarCatalog;
+import de.pondworth.bookrate.search.FuzzyIndex;
+import de.pondworth.bookrate.search.PrefixIndex;
+import de.pondworth.bookrate.search.Suggestion;
+import de.pondworth.bookrate.search.TrigramIndex;
+import de.pondworth.bookrate.service.BookBatch;
+import de.pondworth.bookrate.service.BookChangedEvent;
+import de.pondworth.bookrate.service.BookCursor;
+import de.pondworth.bookrate.service.BookFieldsPage;
+import de.pondworth.bookrate.service.BookFilter;
+import de.pondworth.bookrate.service.BookPage;
+import de.pondworth.bookrate.service.BookPatch;
 import de.pondworth.bookrate.service.BookService;
+import de.pondworth.bookrate.service.CatalogGeneration;
+import de.pondworth.bookrate.service.SingleFlight;
+import de.pondworth.bookrate.stats.RatingStatistics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.stream.LongStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -23,6 +50,28 @@ public class BookServiceTest {
     @Mock
     private BookRepository bookRepository;
 
+    @Mock
+    private TrigramIndex trigramIndex;
+
+    @Mock
+    private RatingStatistics ratingStatistics;
+
+    @Mock
+    private ColumnarCatalog columnarCatalog;
+
+    @Mock
+    private PrefixIndex prefixIndex;
+
+    @Mock
+    private FuzzyIndex fuzzyIndex;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    // Echte Bündelung: einzelne Aufrufe laufen einfach durch
+    @Spy
+    private SingleFlight singleFlight = new SingleFlight(new SimpleMeterRegistry(), new CatalogGeneration(""), true);
+
     @InjectMocks
     private BookService bookService;
 
@@ -132,32 +181,32 @@ public class BookServiceTest {
     @Test
     void shouldGetAllBooks() {
         List<Book> books = List.of(validBook);
-        when(bookRepository.findAll()).thenReturn(books);
+        when(bookRepository.findBooks(any(), eq(Sort.by("id")), eq(Limit.unlimited()), eq(true))).thenReturn(books);
 
         List<Book> result = bookService.getAllBooks(null, null);
 
         assertEquals(1, result.size());
-        verify(bookRepository, times(1)).findAll();
+        verify(bookRepository, times(1)).findBooks(any(), any(), any(), anyBoolean());
     }
 
     @Test
     void shouldFilterBooksByRating() {
-        when(bookRepository.findByRating(5)).thenReturn(List.of(validBook));
+        when(bookRepository.findBooks(any(), any(), eq(Limit.unlimited()), eq(true))).thenReturn(List.of(validBook));
 
         List<Book> result = bookService.getAllBooks(5, null);
 
         assertEquals(1, result.size());
-        verify(bookRepository, times(1)).findByRating(5);
+        verify(bookRepository, times(1)).findBooks(any(), any(), any(), anyBoolean());
     }
 
     @Test
     void shouldFilterBooksByGenre() {
-        when(bookRepository.findByGenre("Roman")).thenReturn(List.of(validBook));
+        when(bookRepository.findBooks(any(), any(), eq(Limit.unlimited()), eq(true))).thenReturn(List.of(validBook));
 
         List<Book> result = bookService.getAllBooks(null, "Roman");
 
         assertEquals(1, result.size());
-        verify(bookRepository, times(1)).findByGenre("Roman");
+        verify(bookRepository, times(1)).findBooks(any(), any(), any(), anyBoolean());
     }
 
     @Test
@@ -214,17 +263,18 @@ public class BookServiceTest {
 
     @Test
     void shouldDeleteBook() {
-        when(bookRepository.existsById(1L)).thenReturn(true);
-        doNothing().when(bookRepository).deleteById(1L);
+        when(bookRepository.deleteBook(1L)).thenReturn(1);
 
         assertDoesNotThrow(() -> bookService.deleteBook(1L));
 
-        verify(bookRepository, times(1)).deleteById(1L);
+        verify(bookRepository, times(1)).deleteBook(1L);
+        verify(bookRepository, never()).existsById(any());
+        verify(eventPublisher).publishEvent(BookChangedEvent.deleted(1L));
     }
 
     @Test
     void shouldThrowExceptionWhenDeletingNonExistentBook() {
-        when(bookRepository.existsById(999L)).thenReturn(false);
+        when(bookRepository.deleteBook(999L)).thenReturn(0);
 
         IllegalArgumentException exception = assertThrows(
                 IllegalArgumentException.class,
@@ -232,7 +282,49 @@ public class BookServiceTest {
         );
 
         assertTrue(exception.getMessage().contains("nicht gefunden"));
-        verify(bookRepository, never()).deleteById(any());
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    // ==================== PATCH Tests ====================
+
+    @Test
+    void shouldPatchOnlyChangedFieldsInOneStatement() {
+        BookPatch patch = new BookPatch(null, null, 3, null, "", null);
+        when(bookRepository.patch(1L, 4L, Map.of("rating", 3, "genre", "Unbekannt"))).thenReturn(1);
+
+        OptionalLong version = bookService.patchBook(1L, 4L, patch);
+
+        assertEquals(OptionalLong.of(5L), version);
+        verify(bookRepository, never()).findById(any());
+        verify(bookRepository, never()).existsById(any());
+        verify(eventPublisher).publishEvent(BookChangedEvent.patched(1L, 5L, new BookPatch(null, null, 3, null, "Unbekannt", null)));
+    }
+
+    @Test
+    void shouldReportConflictWhenVersionChanged() {
+        when(bookRepository.patch(eq(1L), eq(4L), any())).thenReturn(0);
+        when(bookRepository.existsById(1L)).thenReturn(true);
+
+        assertThrows(OptimisticLockingFailureException.class,
+                () -> bookService.patchBook(1L, 4L, new BookPatch("Neu", null, null, null, null, null)));
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void shouldReturnEmptyWhenPatchedBookDoesNotExist() {
+        when(bookRepository.patch(eq(999L), eq(0L), any())).thenReturn(0);
+        when(bookRepository.existsById(999L)).thenReturn(false);
+
+        assertTrue(bookService.patchBook(999L, 0L, new BookPatch("Neu", null, null, null, null, null)).isEmpty());
+    }
+
+    @Test
+    void shouldRejectEmptyOrInvalidPatch() {
+        assertThrows(IllegalArgumentException.class,
+                () -> bookService.patchBook(1L, 0L, new BookPatch(null, null, null, null, null, null)));
+        assertThrows(IllegalArgumentException.class,
+                () -> bookService.patchBook(1L, 0L, new BookPatch(" ", null, 9, null, null, null)));
+        verify(bookRepository, never()).patch(anyLong(), anyLong(), any());
     }
 
     // ==================== SEARCH Tests ====================
@@ -247,6 +339,21 @@ public class BookServiceTest {
         verify(bookRepository, times(1)).searchByTitleOrAuthor("Harry");
     }
 
+    @Test
+    void shouldSearchViaTrigramIndexWhenReady() {
+        Book second = new Book("Harry Potter 2", "J.K. Rowling", 5, "", "Fantasy", "Gelesen");
+        second.setId(2L);
+        validBook.setId(1L);
+        when(trigramIndex.isReady()).thenReturn(true);
+        when(trigramIndex.search("Harry")).thenReturn(List.of(1L, 2L));
+        when(bookRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(second, validBook));
+
+        List<Book> result = bookService.searchBooks("Harry");
+
+        assertEquals(List.of(validBook, second), result);
+        verify(bookRepository, never()).searchByTitleOrAuthor(any());
+    }
+
     @Test
     void shouldRejectEmptySearchQuery() {
         IllegalArgumentException exception = assertThrows(
@@ -270,11 +377,284 @@ public class BookServiceTest {
 
     @Test
     void shouldFilterBooksByGenreAndStatus() {
-        when(bookRepository.findByGenreAndStatus("Roman", "Gelesen")).thenReturn(List.of(validBook));
+        when(bookRepository.findBooks(any(), any(), eq(Limit.unlimited()), eq(true))).thenReturn(List.of(validBook));
 
         List<Book> result = bookService.filterBooks("Roman", "Gelesen");
 
         assertEquals(1, result.size());
-        verify(bookRepository, times(1)).findByGenreAndStatus("Roman", "Gelesen");
+        verify(bookRepository, times(1)).findBooks(any(), any(), any(), anyBoolean());
+    }
+
+    @Test
+    void shouldFilterFromColumnarCatalogAndLoadBooksById() {
+        validBook.setId(1L);
+        when(columnarCatalog.isReady()).thenReturn(true);
+        when(columnarCatalog.filter(null, "Roman", "Gelesen", 0L, Integer.MAX_VALUE)).thenReturn(List.of(1L));
+        when(bookRepository.findAllById(List.of(1L))).thenReturn(List.of(validBook));
+
+        List<Book> result = bookService.filterBooks("Roman", "Gelesen");
+
+        assertEquals(List.of(validBook), result);
+        verify(bookRepository, never()).findBooks(any(), any(), any(), anyBoolean());
+    }
+
+    @Test
+    void shouldPageColumnarCatalogAndValidateRating() {
+        Book first = new Book("Buch 3", "Autor", 5, "", "Roman", "Gelesen");
+        first.setId(3L);
+        Book second = new Book("Buch 4", "Autor", 5, "", "Roman", "Gelesen");
+        second.setId(4L);
+        when(columnarCatalog.isReady()).thenReturn(true);
+        when(columnarCatalog.filter(5, null, null, 2L, 2)).thenReturn(List.of(3L, 4L));
+        when(bookRepository.findAllById(List.of(3L, 4L))).thenReturn(List.of(second, first));
+
+        BookPage page = bookService.getAllBooks(5, null, new BookCursor(2L).encode(), 1);
+
+        assertEquals(List.of(first), page.books());
+        assertEquals(3L, BookCursor.decode(page.nextCursor()).lastId());
+        assertThrows(IllegalArgumentException.class, () -> bookService.getAllBooks(6, null));
+        verify(bookRepository, never()).findBooks(any(), any(), any(), anyBoolean());
+    }
+
+    @Test
+    void shouldReturnFuzzyMatchesInIndexOrder() {
+        Book first = new Book("Der Hobbit", "J.R.R. Tolkien", 5, "", "Roman", "Gelesen");
+        first.setId(4L);
+        Book second = new Book("Der Herr der Ringe", "J.R.R. Tolkien", 5, "", "Roman", "Gelesen");
+        second.setId(2L);
+        when(fuzzyIndex.isReady()).thenReturn(true);
+        when(fuzzyIndex.search("Tolkein", BookService.DEFAULT_PAGE_SIZE)).thenReturn(List.of(4L, 2L));
+        when(bookRepository.findAllById(List.of(4L, 2L))).thenReturn(List.of(second, first));
+
+        assertEquals(List.of(first, second), bookService.searchBooksFuzzy(" Tolkein ", null));
+        assertThrows(IllegalArgumentException.class, () -> bookService.searchBooksFuzzy("", null));
+        assertThrows(IllegalArgumentException.class, () -> bookService.searchBooksFuzzy("Tolkein", BookService.MAX_PAGE_SIZE + 1));
+    }
+
+    @Test
+    void shouldRefuseFuzzySearchWhileIndexIsBuilding() {
+        when(fuzzyIndex.isReady()).thenReturn(false);
+
+        assertThrows(IllegalStateException.class, () -> bookService.searchBooksFuzzy("Tolkein", 10));
+    }
+
+    @Test
+    void shouldLoadBatchInRequestOrderAndReportMissingIds() {
+        Book first = new Book("Der Hobbit", "J.R.R. Tolkien", 5, "", "Fantasy", "Gelesen");
+        first.setId(3L);
+        Book second = new Book("Harry Potter", "J.K. Rowling", 4, "", "Fantasy", "Gelesen");
+        second.setId(1L);
+        // Doppelte IDs werden nur einmal abgefragt und geliefert
+        when(bookRepository.findAllById(List.of(3L, 1L, 9L))).thenReturn(List.of(second, first));
+
+        BookBatch batch = bookService.getBooksByIds(List.of(3L, 1L, 3L, 9L));
+
+        assertEquals(List.of(first, second), batch.books());
+        assertEquals(List.of(9L), batch.missing());
+        verify(bookRepository, never()).findById(any());
+    }
+
+    @Test
+    void shouldLoadLargeBatchesInChunks() {
+        List<Long> ids = LongStream.rangeClosed(1, 2500).boxed().toList();
+        when(bookRepository.findAllById(any())).thenReturn(List.of());
+
+        BookBatch batch = bookService.getBooksByIds(ids);
+
+        verify(bookRepository).findAllById(ids.subList(0, 1000));
+        verify(bookRepository).findAllById(ids.subList(1000, 2000));
+        verify(bookRepository).findAllById(ids.subList(2000, 2500));
+        assertEquals(ids, batch.missing());
+    }
+
+    @Test
+    void shouldRejectInvalidBatch() {
+        assertThrows(IllegalArgumentException.class, () -> bookService.getBooksByIds(List.of()));
+        assertThrows(IllegalArgumentException.class, () -> bookService.getBooksByIds(Arrays.asList(1L, null)));
+        assertThrows(IllegalArgumentException.class, () -> bookService.getBooksByIds(List.of(1L, 0L)));
+        List<Long> tooMany = LongStream.rangeClosed(1, BookService.MAX_BATCH_SIZE + 1).boxed().toList();
+        assertThrows(IllegalArgumentException.class, () -> bookService.getBooksByIds(tooMany));
+        verifyNoInteractions(bookRepository);
+    }
+
+    @Test
+    void shouldSuggestFromPrefixIndexAndValidateArguments() {
+        Suggestion suggestion = new Suggestion(Suggestion.Type.TITLE, "Testbuch", 1L, 1, 5);
+        when(prefixIndex.isReady()).thenReturn(true);
+        when(prefixIndex.suggest("test", BookService.DEFAULT_SUGGESTIONS)).thenReturn(List.of(suggestion));
+
+        assertEquals(List.of(suggestion), bookService.suggest("test", null));
+        assertThrows(IllegalArgumentException.class, () -> bookService.suggest(" ", null));
+        when(prefixIndex.minPrefixLength()).thenReturn(3);
+        assertThrows(IllegalArgumentException.class, () -> bookService.suggest(" te ", null));
+        assertThrows(IllegalArgumentException.class, () -> bookService.suggest("test", BookService.MAX_SUGGESTIONS + 1));
+        verifyNoInteractions(bookRepository);
+    }
+
+    @Test
+    void shouldRefuseSuggestionsWhileIndexIsBuilding() {
+        when(prefixIndex.isReady()).thenReturn(false);
+
+        assertThrows(IllegalStateException.class, () -> bookService.suggest("test", 5));
+    }
+
+    // ==================== PAGINATION Tests ====================
+
+    @Test
+    void shouldReturnFirstPageWithNextCursor() {
+        Book first = new Book("Buch 1", "Autor", 5, "", "Roman", "Gelesen");
+        first.setId(1L);
+        Book second = new Book("Buch 2", "Autor", 4, "", "Roman", "Gelesen");
+        second.setId(2L);
+        Book third = new Book("Buch 3", "Autor", 3, "", "Roman", "Gelesen");
+        third.setId(3L);
+        when(bookRepository.findBooks(any(), eq(Sort.by("id")), eq(Limit.of(3)), eq(true)))
+                .thenReturn(List.of(first, second, third));
+
+        BookPage page = bookService.getAllBooks(null, "Roman", null, 2);
+
+        assertEquals(2, page.books().size());
+        assertTrue(page.hasNext());
+        assertEquals(2L, BookCursor.decode(page.nextCursor()).lastId());
+    }
+
+    @Test
+    void shouldContinueAfterCursorAndStopOnLastPage() {
+        validBook.setId(3L);
+        when(bookRepository.findBooks(any(), any(), eq(Limit.of(3)), eq(true))).thenReturn(List.of(validBook));
+
+        BookPage page = bookService.filterBooks(null, null, new BookCursor(2L).encode(), 2);
+
+        assertEquals(1, page.books().size());
+        assertFalse(page.hasNext());
+    }
+
+    @Test
+    void shouldRejectInvalidCursor() {
+        IllegalArgumentException exception = assertThrows(
+                IllegalArgumentException.class,
+                () -> bookService.getAllBooks(null, null, "kein-cursor", 10)
+        );
+
+        assertTrue(exception.getMessage().contains("Ungültiger Cursor"));
+    }
+
+    @Test
+    void shouldRejectTooLargeLimit() {
+        IllegalArgumentException exception = assertThrows(
+                IllegalArgumentException.class,
+                () -> bookService.searchBooks("Harry", null, BookService.MAX_PAGE_SIZE + 1)
+        );
+
+        assertTrue(exception.getMessage().contains("Limit muss zwischen"));
+        verify(bookRepository, never()).searchByTitleOrAuthorAfter(any(), any(), any());
+    }
+
+    // ==================== QUERY Tests ====================
+
+    @Test
+    void shouldQueryWithSortAndCursorOnSortValue() {
+        Book first = new Book("Buch 1", "Autor", 5, "", "Roman", "Gelesen");
+        first.setId(7L);
+        Book second = new Book("Buch 2", "Autor", 4, "", "Roman", "Gelesen");
+        second.setId(3L);
+        when(bookRepository.findBooks(any(), eq(Sort.by(Sort.Direction.DESC, "rating").and(Sort.by(Sort.Direction.DESC, "id"))), eq(Limit.of(2)), eq(true)))
+                .thenReturn(List.of(first, second));
+
+        BookFilter filter = new BookFilter(null, 3, 5, "Roman", "Gelesen", null, "-rating");
+        BookPage page = bookService.queryBooks(filter, null, 1);
+
+        assertEquals(List.of(first), page.books());
+        assertEquals(new BookCursor(7L, "5"), BookCursor.decode(page.nextCursor()));
+    }
+
+    @Test
+    void shouldSkipDatabaseWhenTextQueryHasNoIndexHits() {
+        when(trigramIndex.isReady()).thenReturn(true);
+        when(trigramIndex.search("quux")).thenReturn(List.of());
+
+        BookPage page = bookService.queryBooks(new BookFilter(5, null, null, null, null, "quux", null), null, null);
+
+        assertTrue(page.books().isEmpty());
+        verify(bookRepository, never()).findBooks(any(), any(), any(), anyBoolean());
+    }
+
+    @Test
+    void shouldNotCacheQueriesWithSearchText() {
+        when(trigramIndex.isReady()).thenReturn(false);
+        when(bookRepository.findBooks(any(), any(), eq(Limit.unlimited()), eq(false))).thenReturn(List.of(validBook));
+
+        BookPage page = bookService.queryBooks(new BookFilter(5, null, null, null, null, "test", null), null, null);
+
+        assertEquals(List.of(validBook), page.books());
+        verify(bookRepository, never()).findBooks(any(), any(), any(), eq(true));
+    }
+
+    @Test
+    void shouldRejectInvalidRatingRangeAndSort() {
+        assertThrows(IllegalArgumentException.class,
+                () -> bookService.queryBooks(new BookFilter(null, 4, 2, null, null, null, null), null, null));
+        assertThrows(IllegalArgumentException.class,
+                () -> bookService.queryBooks(new BookFilter(null, null, null, null, null, null, "comment"), null, null));
+        verify(bookRepository, never()).findBooks(any(), any(), any(), anyBoolean());
+    }
+
+    // ==================== FIELDS Tests ====================
+
+    @Test
+    void shouldSelectOnlyRequestedFieldsWithIdFirst() {
+        when(bookRepository.findFields(eq(List.of("id", "title", "rating")), any(), eq(Limit.unlimited())))
+                .thenReturn(List.of(Map.of("id", 1L, "title", "Testbuch", "rating", 5)));
+
+        BookFieldsPage page = bookService.getAllBookFields(null, "Roman", "title, rating,title", null, null);
+
+        assertEquals(1, page.books().size());
+        assertFalse(page.hasNext());
+    }
+
+    @Test
+    void shouldPageFieldsByLastId() {
+        when(bookRepository.findFields(eq(List.of("id", "title")), any(), eq(Limit.of(3)))).thenReturn(List.of(
+                Map.of("id", 4L, "title", "A"), Map.of("id", 7L, "title", "B"), Map.of("id", 9L, "title", "C")));
+
+        BookFieldsPage page = bookService.filterBookFields("Roman", null, "title", null, 2);
+
+        assertEquals(2, page.books().size());
+        assertEquals(7L, BookCursor.decode(page.nextCursor()).lastId());
+    }
+
+    @Test
+    void shouldRejectUnknownField() {
+        IllegalArgumentException exception = assertThrows(
+                IllegalArgumentException.class,
+                () -> bookService.getAllBookFields(null, null, "title,passwort", null, null)
+        );
+
+        assertTrue(exception.getMessage().contains("Unbekanntes Feld: passwort"));
+        verify(bookRepository, never()).findFields(any(), any(), any());
+    }
+
+    @Test
+    void shouldLoadSearchFieldsForIndexHitsAfterCursor() {
+        when(trigramIndex.isReady()).thenReturn(true);
+        when(trigramIndex.search("Harry")).thenReturn(List.of(1L, 2L, 5L, 8L));
+        when(bookRepository.findFields(eq(List.of("id", "title")), any(), eq(Limit.unlimited())))
+                .thenReturn(List.of(Map.of("id", 5L, "title", "A"), Map.of("id", 8L, "title", "B")));
+
+        BookFieldsPage page = bookService.searchBookFields("Harry", "title", new BookCursor(2L).encode(), 1);
+
+        assertEquals(List.of(Map.of("id", 5L, "title", "A")), page.books());
+        assertEquals(5L, BookCursor.decode(page.nextCursor()).lastId());
+        verify(bookRepository, never()).searchByTitleOrAuthorAfter(any(), any(), any());
+    }
+
+    // ==================== STATISTIK Tests ====================
+
+    @Test
+    void shouldRejectStatisticsWhileRebuilding() {
+        when(ratingStatistics.isReady()).thenReturn(false);
+
+        assertThrows(IllegalStateException.class, () -> bookService.getStatistics());
+        verify(ratingStatistics, never()).snapshot();
     }
-}
\ No newline at end of file
+}
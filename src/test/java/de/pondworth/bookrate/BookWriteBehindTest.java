@@ -0,0 +1,150 @@
+package de.pondworth.bookrate;
+
+import de.pondworth.bookrate.config.CacheConfig;
+import de.pondworth.bookrate.model.Book;
+import de.pondworth.bookrate.repository.BookRepository;
+import de.pondworth.bookrate.search.ColumnarCatalog;
+import de.pondworth.bookrate.search.FuzzyIndex;
+import de.pondworth.bookrate.search.PrefixIndex;
+import de.pondworth.bookrate.search.TrigramIndex;
+import de.pondworth.bookrate.service.BookChangedEvent;
+import de.pondworth.bookrate.service.BookService;
+import de.pondworth.bookrate.service.BookSubmission;
+import de.pondworth.bookrate.service.BookWriteBehind;
+import de.pondworth.bookrate.service.CatalogGeneration;
+import de.pondworth.bookrate.service.SingleFlight;
+import de.pondworth.bookrate.stats.RatingStatistics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class BookWriteBehindTest {
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @Mock
+    private TrigramIndex trigramIndex;
+
+    @Mock
+    private RatingStatistics ratingStatistics;
+
+    @Mock
+    private ColumnarCatalog columnarCatalog;
+
+    @Mock
+    private PrefixIndex prefixIndex;
+
+    @Mock
+    private FuzzyIndex fuzzyIndex;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private final CacheManager cacheManager = new CaffeineCacheManager(CacheConfig.BOOKS);
+    private final AtomicLong ids = new AtomicLong();
+    private BookWriteBehind writeBehind;
+
+    @AfterEach
+    void tearDown() {
+        writeBehind.stop();
+    }
+
+    // Puffer 3, Batch 2; das lange Intervall sorgt dafür, dass nur Größe oder Shutdown einen Batch auslösen
+    private void start(Duration flushInterval) {
+        BookService bookService = new BookService(bookRepository, trigramIndex, ratingStatistics, eventPublisher, columnarCatalog, prefixIndex,
+                new SingleFlight(new SimpleMeterRegistry(), new CatalogGeneration(""), true), fuzzyIndex);
+        writeBehind = new BookWriteBehind(bookService, bookRepository, eventPublisher, cacheManager, new SimpleMeterRegistry(),
+                true, 3, 2, flushInterval, Duration.ofSeconds(5));
+        writeBehind.start();
+    }
+
+    private void saveAllAssignsIds() {
+        when(bookRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Book> books = new ArrayList<>(invocation.getArgument(0));
+            books.forEach(book -> book.setId(ids.incrementAndGet()));
+            return books;
+        });
+    }
+
+    @Test
+    void shouldSaveInBatchesAndDrainOnStop() {
+        saveAllAssignsIds();
+        start(Duration.ofMinutes(1));
+
+        List<BookSubmission> submitted = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            submitted.add(writeBehind.submit(new Book("Buch " + i, "Autor", 4, "", null, null)));
+        }
+        writeBehind.stop();
+
+        verify(bookRepository, times(2)).saveAll(anyList());
+        verify(eventPublisher, times(3)).publishEvent(any(BookChangedEvent.class));
+        for (BookSubmission submission : submitted) {
+            assertEquals(BookSubmission.State.CREATED, writeBehind.status(submission.trackingId()).orElseThrow().state());
+        }
+        assertThrows(IllegalStateException.class, () -> writeBehind.submit(new Book("Spät", "Autor", 4, "", null, null)));
+    }
+
+    @Test
+    void shouldEvictCachedNotFoundForSavedIds() {
+        saveAllAssignsIds();
+        cacheManager.getCache(CacheConfig.BOOKS).put(1L, Optional.empty());
+        start(Duration.ofMinutes(1));
+
+        writeBehind.submit(new Book("Buch", "Autor", 4, "", null, null));
+        writeBehind.stop();
+
+        assertNull(cacheManager.getCache(CacheConfig.BOOKS).get(1L));
+    }
+
+    @Test
+    void shouldRejectInvalidBooksImmediately() {
+        start(Duration.ofMillis(10));
+
+        assertThrows(IllegalArgumentException.class, () -> writeBehind.submit(new Book("Buch", "Autor", 9, "", null, null)));
+        assertEquals(0, writeBehind.queued());
+    }
+
+    @Test
+    void shouldSaveSinglyWhenBatchFails() {
+        when(bookRepository.saveAll(anyList())).thenThrow(new DataIntegrityViolationException("Batch"));
+        when(bookRepository.save(any(Book.class))).thenAnswer(invocation -> {
+            Book book = invocation.getArgument(0);
+            if (book.getTitle().equals("Kaputt")) {
+                throw new DataIntegrityViolationException("Titel zu lang");
+            }
+            book.setId(ids.incrementAndGet());
+            return book;
+        });
+        start(Duration.ofMinutes(1));
+
+        BookSubmission good = writeBehind.submit(new Book("Gut", "Autor", 4, "", null, null));
+        BookSubmission bad = writeBehind.submit(new Book("Kaputt", "Autor", 4, "", null, null));
+        writeBehind.stop();
+
+        assertEquals(BookSubmission.State.CREATED, writeBehind.status(good.trackingId()).orElseThrow().state());
+        BookSubmission failed = writeBehind.status(bad.trackingId()).orElseThrow();
+        assertEquals(BookSubmission.State.FAILED, failed.state());
+        assertTrue(failed.error().contains("Titel zu lang"));
+    }
+}
@@ -0,0 +1,48 @@
+package de.pondworth.bookrate;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Meter des books-Caches und des JSON-Caches: Prometheus verlangt pro Metrikname dieselben Tag-Schlüssel
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:cache-metrics;DB_CLOSE_DELAY=-1;MODE=PostgreSQL",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "bookrate.search.trigram-index.enabled=false"
+})
+class CacheMetricsTest {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void shouldUseSameTagKeysAsBooksCache() {
+        Set<String> books = tagKeys("books");
+        Set<String> bookJson = tagKeys("book-json");
+
+        assertTrue(books.contains("cache.manager"), books::toString);
+        assertEquals(books, bookJson);
+    }
+
+    private Set<String> tagKeys(String cache) {
+        Meter meter = meterRegistry.find("cache.gets").tag("cache", cache).meters().stream().findFirst().orElseThrow();
+        return meter.getId().getTags().stream()
+                .map(Tag::getKey)
+                .filter(key -> !key.equals("result"))
+                .collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,48 @@
+package de.pondworth.bookrate;
+
+import de.pondworth.bookrate.config.CachedBookJsonHttpMessageConverter;
+import de.pondworth.bookrate.search.ColumnarCatalog;
+import de.pondworth.bookrate.search.FuzzyIndex;
+import de.pondworth.bookrate.search.PrefixIndex;
+import de.pondworth.bookrate.search.TrigramIndex;
+import de.pondworth.bookrate.service.BookChangedEvent;
+import de.pondworth.bookrate.service.CatalogGeneration;
+import de.pondworth.bookrate.stats.RatingStatistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.annotation.AnnotationAwareOrderComparator;
+import org.springframework.transaction.event.TransactionalApplicationListenerMethodAdapter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Der Katalogzähler zählt erst hoch, wenn Indizes, Spaltenspeicher, Statistiken und JSON-Cache die Änderung
+ * übernommen haben. Die Order wird wie in Spring aus den Listener-Methoden gelesen.
+ */
+public class CatalogGenerationOrderTest {
+
+    @Test
+    void shouldBumpGenerationAfterAllReadableState() throws Exception {
+        List<TransactionalApplicationListenerMethodAdapter> listeners = new ArrayList<>();
+        // Absichtlich zuerst: die Reihenfolge darf nicht von der Registrierung abhängen
+        listeners.add(listener(CatalogGeneration.class));
+        for (Class<?> type : List.of(TrigramIndex.class, FuzzyIndex.class, PrefixIndex.class, ColumnarCatalog.class,
+                RatingStatistics.class, CachedBookJsonHttpMessageConverter.class)) {
+            listeners.add(listener(type));
+        }
+
+        AnnotationAwareOrderComparator.sort(listeners);
+
+        assertTrue(listeners.get(listeners.size() - 1).getListenerId().startsWith(CatalogGeneration.class.getName() + "."));
+        for (TransactionalApplicationListenerMethodAdapter listener : listeners.subList(0, listeners.size() - 1)) {
+            assertEquals(CatalogGeneration.BEFORE_GENERATION, listener.getOrder(), listener.getListenerId());
+        }
+    }
+
+    private static TransactionalApplicationListenerMethodAdapter listener(Class<?> type) throws NoSuchMethodException {
+        return new TransactionalApplicationListenerMethodAdapter(type.getSimpleName(), type,
+                type.getMethod("onBookChanged", BookChangedEvent.class));
+    }
+}
@@ -0,0 +1,112 @@
+package de.pondworth.bookrate;
+
+import de.pondworth.bookrate.model.Book;
+import de.pondworth.bookrate.repository.BookRepository;
+import de.pondworth.bookrate.search.ColumnarCatalog;
+import de.pondworth.bookrate.service.BookChangedEvent;
+import de.pondworth.bookrate.service.BookPatch;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+
+@ExtendWith(MockitoExtension.class)
+public class ColumnarCatalogTest {
+
+    @Mock
+    private BookRepository bookRepository;
+
+    private ColumnarCatalog catalog;
+
+    @BeforeEach
+    void setUp() {
+        doAnswer(invocation -> {
+            Consumer<Book> action = invocation.getArgument(2);
+            action.accept(book(1L, "Harry Potter", 5, "Fantasy", "Gelesen"));
+            action.accept(book(2L, "Der Hobbit", 5, "Fantasy", "Will noch lesen"));
+            action.accept(book(3L, "Clean Code", 4, "Fachbuch", "Gelesen"));
+            action.accept(book(4L, "Der Prozess", 3, "Roman", "Gelesen"));
+            return null;
+        }).when(bookRepository).forEachBook(isNull(), isNull(), any());
+
+        catalog = new ColumnarCatalog(bookRepository, true);
+        catalog.rebuild();
+    }
+
+    @Test
+    void shouldIntersectRatingGenreAndStatus() {
+        assertTrue(catalog.isReady());
+        assertEquals(List.of(1L, 2L, 3L, 4L), catalog.filter(null, null, null, 0L, Integer.MAX_VALUE));
+        assertEquals(List.of(1L, 2L), catalog.filter(5, null, null, 0L, Integer.MAX_VALUE));
+        assertEquals(List.of(1L), catalog.filter(5, "Fantasy", "Gelesen", 0L, Integer.MAX_VALUE));
+        assertEquals(List.of(1L, 3L, 4L), catalog.filter(null, null, "Gelesen", 0L, Integer.MAX_VALUE));
+        assertEquals(List.of(), catalog.filter(null, "Krimi", null, 0L, Integer.MAX_VALUE));
+        assertEquals(List.of(), catalog.filter(1, null, null, 0L, Integer.MAX_VALUE));
+    }
+
+    @Test
+    void shouldPageAfterIdWithLimit() {
+        assertEquals(List.of(3L, 4L), catalog.filter(null, null, "Gelesen", 1L, 10));
+        assertEquals(List.of(3L), catalog.filter(null, null, "Gelesen", 1L, 1));
+        assertEquals(List.of(), catalog.filter(null, null, null, 4L, 10));
+    }
+
+    @Test
+    void shouldFollowCreatePatchAndDelete() {
+        catalog.onBookChanged(BookChangedEvent.created(book(5L, "Das Parfum", 5, "Roman", "Gelesen")));
+        catalog.onBookChanged(BookChangedEvent.patched(4L, 8L, new BookPatch(null, null, 5, null, null, "Abgebrochen")));
+        catalog.onBookChanged(BookChangedEvent.deleted(1L));
+
+        assertEquals(List.of(2L, 4L, 5L), catalog.filter(5, null, null, 0L, Integer.MAX_VALUE));
+        assertEquals(List.of(4L), catalog.filter(null, null, "Abgebrochen", 0L, Integer.MAX_VALUE));
+        assertEquals(List.of(5L), catalog.filter(null, "Roman", "Gelesen", 0L, Integer.MAX_VALUE));
+        assertEquals(4, catalog.size());
+    }
+
+    @Test
+    void shouldKeepIdOrderAfterOutOfOrderInsert() {
+        catalog.onBookChanged(BookChangedEvent.created(book(10L, "Zehn", 5, "Fantasy", "Gelesen")));
+        catalog.onBookChanged(BookChangedEvent.created(book(7L, "Sieben", 5, "Fantasy", "Gelesen")));
+
+        assertEquals(List.of(1L, 2L, 7L, 10L), catalog.filter(5, "Fantasy", null, 0L, Integer.MAX_VALUE));
+        assertEquals(List.of(7L), catalog.filter(5, "Fantasy", null, 2L, 1));
+    }
+
+    @Test
+    void shouldCompactDeletedRowsAndKeepFilters() {
+        // Außer der Reihe eingefügt, damit das Verdichten auch sortieren muss
+        catalog.onBookChanged(BookChangedEvent.created(book(5000L, "Letztes", 5, "Roman", "Gelesen")));
+        for (long id = 10; id < 3010; id++) {
+            catalog.onBookChanged(BookChangedEvent.created(book(id, "Buch " + id, 3, "Krimi", "Gelesen")));
+        }
+        for (long id = 10; id < 2910; id++) {
+            catalog.onBookChanged(BookChangedEvent.deleted(id));
+        }
+
+        assertEquals(105, catalog.size());
+        assertEquals(List.of(2910L, 2911L), catalog.filter(3, "Krimi", null, 0L, 2));
+        assertEquals(List.of(3009L), catalog.filter(null, "Krimi", null, 3008L, 10));
+        assertEquals(List.of(4L, 5000L), catalog.filter(null, "Roman", null, 0L, Integer.MAX_VALUE));
+
+        // Nach dem Verdichten folgt der Speicher weiteren Änderungen
+        catalog.onBookChanged(BookChangedEvent.created(book(6000L, "Neu", 5, "Krimi", "Gelesen")));
+        catalog.onBookChanged(BookChangedEvent.patched(2910L, 2L, new BookPatch(null, null, 5, null, null, null)));
+        assertEquals(List.of(1L, 2L, 2910L, 5000L, 6000L), catalog.filter(5, null, null, 0L, Integer.MAX_VALUE));
+    }
+
+    private static Book book(Long id, String title, int rating, String genre, String status) {
+        Book book = new Book(title, "Autor " + id, rating, null, genre, status);
+        book.setId(id);
+        book.setVersion(7L);
+        return book;
+    }
+}
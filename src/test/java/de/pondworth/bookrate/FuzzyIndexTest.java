@@ -0,0 +1,126 @@
+package de.pondworth.bookrate;
+
+import de.pondworth.bookrate.model.Book;
+import de.pondworth.bookrate.repository.BookRepository;
+import de.pondworth.bookrate.search.FuzzyIndex;
+import de.pondworth.bookrate.service.BookChangedEvent;
+import de.pondworth.bookrate.service.BookPatch;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+
+@ExtendWith(MockitoExtension.class)
+public class FuzzyIndexTest {
+
+    @Mock
+    private BookRepository bookRepository;
+
+    private FuzzyIndex index;
+
+    @BeforeEach
+    void setUp() {
+        doAnswer(invocation -> {
+            Consumer<Book> action = invocation.getArgument(2);
+            action.accept(book(1L, "Harry Potter", "J.K. Rowling"));
+            action.accept(book(2L, "Der Hobbit", "J.R.R. Tolkien"));
+            action.accept(book(3L, "Die Räuber", "Friedrich Schiller"));
+            action.accept(book(4L, "Der Herr der Ringe", "J.R.R. Tolkien"));
+            action.accept(book(5L, "Der Schimmelreiter", "Theodor Storm"));
+            return null;
+        }).when(bookRepository).forEachBook(isNull(), isNull(), any());
+
+        index = new FuzzyIndex(bookRepository, true);
+        index.rebuild();
+    }
+
+    @Test
+    void shouldFindMisspelledAuthorsAndTitles() {
+        assertTrue(index.isReady());
+        // Vertauschte Buchstaben = 2 Fehler, ab 6 Zeichen erlaubt
+        assertEquals(List.of(2L, 4L), index.search("Tolkein", 10));
+        assertEquals(List.of(1L), index.search("rowlnig", 10));
+        // Umlaute und Akzente zählen nicht als Fehler
+        assertEquals(List.of(3L), index.search("rauber", 10));
+        assertEquals(List.of(), index.search("xyzzy", 10));
+    }
+
+    @Test
+    void shouldRankByDistanceAndLimitShortWords() {
+        // Exakt: "schimmelreiter" ist viel zu weit weg
+        assertEquals(List.of(3L), index.search("schiller", 10));
+        // 5 Zeichen: nur ein Fehler, "strom" -> "storm" sind zwei
+        assertEquals(List.of(), index.search("strom", 10));
+        assertEquals(List.of(5L), index.search("storn", 10));
+        // 2 Zeichen: nur exakt
+        assertEquals(List.of(), index.search("jx", 10));
+    }
+
+    @Test
+    void shouldRequireEveryTermAndSumDistances() {
+        assertEquals(List.of(4L), index.search("herr tolkein", 10));
+        assertEquals(List.of(2L, 4L), index.search("der tolkien", 10));
+        // "hobit" (1 Fehler) + "tolkien" (exakt): nur Buch 2 hat beide
+        assertEquals(List.of(2L), index.search("hobit tolkien", 10));
+        assertEquals(List.of(2L), index.search("der tolkien", 1));
+    }
+
+    @Test
+    void shouldFollowCreatePatchAndDelete() {
+        index.onBookChanged(BookChangedEvent.created(book(6L, "Das Silmarillion", "J.R.R. Tolkien")));
+        assertEquals(List.of(6L), index.search("silmarilion", 10));
+
+        index.onBookChanged(BookChangedEvent.patched(6L, 1L, new BookPatch(null, "Christopher Tolkien", null, null, null, null)));
+        assertEquals(List.of(6L), index.search("cristopher", 10));
+        assertEquals(List.of(6L), index.search("silmarillion", 10));
+
+        index.onBookChanged(BookChangedEvent.updated(book(1L, "Harry Potter", "Joanne Rowling")));
+        assertEquals(List.of(1L), index.search("joane", 10));
+
+        index.onBookChanged(BookChangedEvent.deleted(6L));
+        assertEquals(List.of(), index.search("silmarillion", 10));
+        assertEquals(5, index.size());
+    }
+
+    @Test
+    void shouldCheckTermsWithManySimilarWordsAgainstTheBook() {
+        // "mantel" passt zu zehn Wörtern (mantela .. mantelj), "hobit" zu genau einem
+        for (char c = 'a'; c <= 'j'; c++) {
+            index.onBookChanged(BookChangedEvent.created(book(10L + c - 'a', "Mantel" + c, "Niemand")));
+        }
+        index.onBookChanged(BookChangedEvent.created(book(30L, "Der Hobbit im Mantelf", "J.R.R. Tolkien")));
+        assertEquals(List.of(30L), index.search("mantel hobit", 10));
+        assertEquals(List.of(30L), index.search("hobit mantel", 10));
+        assertEquals(List.of(), index.search("mantel storm", 10));
+    }
+
+    @Test
+    void shouldCompactRemovedWords() {
+        // Genug Wörter anlegen und wieder löschen, dass der Trie neu aufgebaut wird
+        for (long id = 100; id < 20_100; id++) {
+            index.onBookChanged(BookChangedEvent.created(book(id, "Band" + id, "Autor")));
+        }
+        for (long id = 100; id < 20_100; id++) {
+            index.onBookChanged(BookChangedEvent.deleted(id));
+        }
+        assertEquals(List.of(), index.search("band150", 10));
+        assertEquals(List.of(2L, 4L), index.search("tolkien", 10));
+        index.onBookChanged(BookChangedEvent.created(book(7L, "Band150", "Autor")));
+        assertEquals(List.of(7L), index.search("band105", 10));
+    }
+
+    private static Book book(Long id, String title, String author) {
+        Book book = new Book(title, author, 5, "", "Roman", "Gelesen");
+        book.setId(id);
+        return book;
+    }
+}
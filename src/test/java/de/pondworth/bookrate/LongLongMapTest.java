@@ -0,0 +1,46 @@
+package de.pondworth.bookrate;
+
+import de.pondworth.bookrate.util.LongLongMap;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LongLongMapTest {
+
+    @Test
+    void shouldBehaveLikeHashMap() {
+        LongLongMap map = new LongLongMap();
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(7);
+
+        // Kleiner Schlüsselraum, damit viele Kollisionen, Überschreibungen und Löschungen vorkommen
+        for (int i = 0; i < 200_000; i++) {
+            long key = random.nextInt(5_000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.getOrDefault(key, -1L), map.remove(key, -1L));
+                expected.remove(key);
+            } else {
+                long value = random.nextLong();
+                assertEquals(expected.getOrDefault(key, -1L), map.put(key, value, -1L));
+                expected.put(key, value);
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        for (long key = 0; key < 5_000; key++) {
+            assertEquals(expected.getOrDefault(key, -1L), map.get(key, -1L));
+        }
+    }
+
+    @Test
+    void shouldRejectReservedKey() {
+        LongLongMap map = new LongLongMap();
+
+        assertThrows(IllegalArgumentException.class, () -> map.put(Long.MIN_VALUE, 1L, -1L));
+        assertFalse(map.containsKey(Long.MIN_VALUE));
+    }
+}
@@ -0,0 +1,130 @@
+package de.pondworth.bookrate;
+
+import de.pondworth.bookrate.repository.NameDictionary;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NameDictionaryTest {
+
+    private JdbcDataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:dictionary;DB_CLOSE_DELAY=-1");
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS genre");
+            statement.execute("CREATE TABLE genre (id SMALLINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, name VARCHAR(255) NOT NULL UNIQUE)");
+        }
+    }
+
+    @Test
+    void shouldAssignStableIdsPerName() {
+        NameDictionary genres = new NameDictionary(dataSource, "genre");
+
+        short roman = genres.register("Roman");
+        short fantasy = genres.register("Fantasy");
+
+        assertNotEquals(roman, fantasy);
+        assertEquals(roman, genres.register("Roman"));
+        assertEquals("Fantasy", genres.name(fantasy));
+        assertEquals(2, genres.size());
+    }
+
+    @Test
+    void shouldNotCreateEntriesWhenOnlyLookingUp() {
+        NameDictionary genres = new NameDictionary(dataSource, "genre");
+
+        assertEquals(Optional.empty(), genres.find("Krimi"));
+        assertEquals(0, genres.size());
+    }
+
+    @Test
+    void shouldSeeEntriesCreatedByAnotherInstance() {
+        NameDictionary first = new NameDictionary(dataSource, "genre");
+        NameDictionary second = new NameDictionary(dataSource, "genre");
+        assertEquals(0, second.size());
+
+        short krimi = first.register("Krimi");
+
+        assertEquals(Optional.of(krimi), second.find("Krimi"));
+        assertEquals("Krimi", second.name(krimi));
+        assertEquals(krimi, second.register("Krimi"));
+    }
+
+    @Test
+    void shouldRememberUnknownNames() throws SQLException {
+        NameDictionary genres = new NameDictionary(dataSource, "genre");
+        assertEquals(Optional.empty(), genres.find("Krimi"));
+
+        // Von einer anderen Instanz angelegt: der Filter fragt bis zum Ablauf der TTL nicht erneut nach
+        short krimi = insertDirectly("Krimi");
+        assertEquals(Optional.empty(), genres.find("Krimi"));
+
+        assertEquals(krimi, genres.register("Krimi"));
+        assertEquals(Optional.of(krimi), genres.find("Krimi"));
+    }
+
+    @Test
+    void shouldRegisterInCurrentTransactionAndForgetOnRollback() {
+        NameDictionary genres = new NameDictionary(dataSource, "genre");
+        TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+        transaction.executeWithoutResult(status -> {
+            short krimi = genres.register("Krimi");
+            assertEquals(krimi, genres.register("Krimi"));
+            assertEquals(Optional.of(krimi), genres.find("Krimi"));
+            assertEquals("Krimi", genres.name(krimi));
+            // Noch nicht committet: über die Verbindung der Transaktion angelegt, nicht über eine zweite
+            assertEquals(0, countRows());
+            status.setRollbackOnly();
+        });
+
+        assertEquals(0, countRows());
+        assertEquals(0, genres.size());
+    }
+
+    @Test
+    void shouldCacheNewNamesAfterCommit() {
+        NameDictionary genres = new NameDictionary(dataSource, "genre");
+        TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+        short krimi = transaction.execute(status -> genres.register("Krimi"));
+
+        assertEquals(1, countRows());
+        assertEquals(Optional.of(krimi), genres.find("Krimi"));
+        assertEquals("Krimi", new NameDictionary(dataSource, "genre").name(krimi));
+    }
+
+    private short insertDirectly(String name) throws SQLException {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.executeUpdate("INSERT INTO genre (name) VALUES ('" + name + "')", new String[]{"id"});
+            try (ResultSet keys = statement.getGeneratedKeys()) {
+                keys.next();
+                return keys.getShort(1);
+            }
+        }
+    }
+
+    // Über eine eigene Verbindung: sieht nur Committetes
+    private int countRows() {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT COUNT(*) FROM genre")) {
+            rows.next();
+            return rows.getInt(1);
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
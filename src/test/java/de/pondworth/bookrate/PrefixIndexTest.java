@@ -0,0 +1,119 @@
+package de.pondworth.bookrate;
+
+import de.pondworth.bookrate.model.Book;
+import de.pondworth.bookrate.repository.BookRepository;
+import de.pondworth.bookrate.search.PrefixIndex;
+import de.pondworth.bookrate.search.Suggestion;
+import de.pondworth.bookrate.service.BookChangedEvent;
+import de.pondworth.bookrate.service.BookPatch;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+
+@ExtendWith(MockitoExtension.class)
+public class PrefixIndexTest {
+
+    @Mock
+    private BookRepository bookRepository;
+
+    private PrefixIndex index;
+
+    @BeforeEach
+    void setUp() {
+        doAnswer(invocation -> {
+            Consumer<Book> action = invocation.getArgument(2);
+            action.accept(book(1L, "Harry Potter", "J.K. Rowling", 4));
+            action.accept(book(2L, "Der Hobbit", "J.R.R. Tolkien", 5));
+            action.accept(book(3L, "Der Herr der Ringe", "J.R.R. Tolkien", 3));
+            action.accept(book(4L, "Clean Code", "Robert C. Martin", 4));
+            return null;
+        }).when(bookRepository).forEachBook(isNull(), isNull(), any());
+
+        index = new PrefixIndex(bookRepository, true, 3);
+        index.rebuild();
+    }
+
+    @Test
+    void shouldSuggestTitlesByPrefixAndWordStart() {
+        assertTrue(index.isReady());
+        assertEquals(List.of("Der Hobbit", "Der Herr der Ringe"), texts(index.suggest("DER H", 10)));
+        assertEquals(List.of("Harry Potter"), texts(index.suggest("pot", 10)));
+        // Nur Wortanfänge, keine Teilstrings mitten im Wort
+        assertEquals(List.of(), index.suggest("obbit", 10));
+    }
+
+    @Test
+    void shouldAggregateAuthorsAndRankByRating() {
+        List<Suggestion> suggestions = index.suggest("tolk", 10);
+
+        assertEquals(1, suggestions.size());
+        Suggestion author = suggestions.get(0);
+        assertEquals(Suggestion.Type.AUTHOR, author.type());
+        assertEquals("J.R.R. Tolkien", author.text());
+        assertNull(author.bookId());
+        assertEquals(2, author.books());
+        assertEquals(4.0, author.rating());
+
+        // "Der Hobbit" (5) vor "Der Herr der Ringe" (3), nur die besten limit
+        assertEquals(List.of("Der Hobbit"), texts(index.suggest("der", 1)));
+    }
+
+    @Test
+    void shouldIgnoreTooShortPrefixes() {
+        assertEquals(3, index.minPrefixLength());
+        assertEquals(List.of(), index.suggest("h", 10));
+        assertEquals(List.of(), index.suggest(" de ", 10));
+        assertEquals(List.of("Der Hobbit", "Der Herr der Ringe"), texts(index.suggest("der", 10)));
+    }
+
+    @Test
+    void shouldFollowCreatePatchAndDelete() {
+        index.onBookChanged(BookChangedEvent.created(book(5L, "Der Hund von Baskerville", "Arthur Conan Doyle", 5)));
+        assertEquals(List.of("Der Hobbit", "Der Hund von Baskerville", "Der Herr der Ringe"), texts(index.suggest("der h", 10)));
+
+        index.onBookChanged(BookChangedEvent.patched(2L, 1L, new BookPatch("Das Silmarillion", null, null, null, null, null)));
+        assertEquals(List.of("Das Silmarillion"), texts(index.suggest("silm", 10)));
+        assertEquals(List.of(), index.suggest("hobbit", 10));
+        assertEquals(List.of("J.R.R. Tolkien"), texts(index.suggest("tolkien", 10)));
+
+        index.onBookChanged(BookChangedEvent.deleted(2L));
+        index.onBookChanged(BookChangedEvent.deleted(3L));
+        assertEquals(List.of(), index.suggest("silm", 10));
+        assertEquals(List.of(), index.suggest("tolkien", 10));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    void shouldStayConsistentAcrossMerges() {
+        // Mehr Änderungen als in die TreeMap passen: der Index mischt zwischendurch ins Array
+        for (long id = 10; id < 3000; id++) {
+            index.onBookChanged(BookChangedEvent.created(book(id, "Band " + id, "Serienautor", 3)));
+        }
+        index.onBookChanged(BookChangedEvent.updated(book(10L, "Finale", "Serienautor", 5)));
+
+        assertEquals(List.of("Band 2999"), texts(index.suggest("band 2999", 10)));
+        assertEquals(List.of("Finale"), texts(index.suggest("fin", 10)));
+        assertTrue(index.suggest("band 10", 50).stream().noneMatch(suggestion -> "Band 10".equals(suggestion.text())));
+        assertEquals(2990, index.suggest("serien", 1).get(0).books());
+    }
+
+    private static List<String> texts(List<Suggestion> suggestions) {
+        return suggestions.stream().map(Suggestion::text).toList();
+    }
+
+    private static Book book(Long id, String title, String author, int rating) {
+        Book book = new Book(title, author, rating, "", "Roman", "Gelesen");
+        book.setId(id);
+        return book;
+    }
+}
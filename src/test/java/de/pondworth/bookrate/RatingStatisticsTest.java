@@ -0,0 +1,97 @@
+package de.pondworth.bookrate;
+
+import de.pondworth.bookrate.model.Book;
+import de.pondworth.bookrate.repository.BookRepository;
+import de.pondworth.bookrate.service.BookChangedEvent;
+import de.pondworth.bookrate.service.BookPatch;
+import de.pondworth.bookrate.stats.CatalogStats;
+import de.pondworth.bookrate.stats.RatingStatistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+
+@ExtendWith(MockitoExtension.class)
+public class RatingStatisticsTest {
+
+    @Mock
+    private BookRepository bookRepository;
+
+    private RatingStatistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        doAnswer(invocation -> {
+            Consumer<Book> action = invocation.getArgument(2);
+            action.accept(book(1L, 5, "Roman", "Gelesen"));
+            action.accept(book(2L, 4, "Roman", "Will ich lesen"));
+            action.accept(book(3L, 2, "Krimi", "Gelesen"));
+            return null;
+        }).when(bookRepository).forEachBook(isNull(), isNull(), any());
+
+        statistics = new RatingStatistics(bookRepository);
+        statistics.rebuild();
+    }
+
+    @Test
+    void shouldAggregateOnRebuild() {
+        CatalogStats stats = statistics.snapshot();
+
+        assertTrue(statistics.isReady());
+        assertEquals(3, stats.total().count());
+        assertEquals(2, stats.byGenre().get("Roman").count());
+        assertEquals(4.5, stats.byGenre().get("Roman").averageRating());
+        assertArrayEquals(new long[]{0, 1, 0, 0, 1}, stats.byStatus().get("Gelesen").histogram());
+    }
+
+    @Test
+    void shouldApplyDeltaOnUpdate() {
+        // Buch 2 wechselt Genre und Rating: Roman verliert eine 4, Krimi bekommt eine 1
+        statistics.onBookChanged(BookChangedEvent.updated(book(2L, 1, "Krimi", "Gelesen")));
+
+        CatalogStats stats = statistics.snapshot();
+        assertEquals(1, stats.byGenre().get("Roman").count());
+        assertEquals(5.0, stats.byGenre().get("Roman").averageRating());
+        assertEquals(1.5, stats.byGenre().get("Krimi").averageRating());
+        assertFalse(stats.byStatus().containsKey("Will ich lesen"));
+        assertEquals(3, stats.total().count());
+    }
+
+    @Test
+    void shouldSubtractOnDeleteAndIgnoreRepeatedEvents() {
+        statistics.onBookChanged(BookChangedEvent.created(book(4L, 3, "Fantasy", "Gelesen")));
+        statistics.onBookChanged(BookChangedEvent.created(book(4L, 3, "Fantasy", "Gelesen")));
+        statistics.onBookChanged(BookChangedEvent.deleted(1L));
+        statistics.onBookChanged(BookChangedEvent.deleted(1L));
+
+        CatalogStats stats = statistics.snapshot();
+        assertEquals(3, stats.total().count());
+        assertEquals(1, stats.byGenre().get("Fantasy").count());
+        assertEquals(4.0, stats.byGenre().get("Roman").averageRating());
+    }
+
+    @Test
+    void shouldMergePatchIntoRememberedState() {
+        // Nur das Rating von Buch 3 ändert sich, Genre Krimi und Status Gelesen bleiben
+        statistics.onBookChanged(BookChangedEvent.patched(3L, 1L, new BookPatch("Neu", null, 4, null, null, null)));
+
+        CatalogStats stats = statistics.snapshot();
+        assertEquals(4.0, stats.byGenre().get("Krimi").averageRating());
+        assertArrayEquals(new long[]{0, 0, 0, 1, 1}, stats.byStatus().get("Gelesen").histogram());
+        assertEquals(3, stats.total().count());
+    }
+
+    private static Book book(Long id, int rating, String genre, String status) {
+        Book book = new Book("Titel " + id, "Autor", rating, "", genre, status);
+        book.setId(id);
+        return book;
+    }
+}
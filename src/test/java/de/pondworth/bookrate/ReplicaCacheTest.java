@@ -0,0 +1,118 @@
+package de.pondworth.bookrate;
+
+import de.pondworth.bookrate.datasource.ReadYourWrites;
+import de.pondworth.bookrate.datasource.ReadYourWritesFilter;
+import de.pondworth.bookrate.model.Book;
+import de.pondworth.bookrate.service.BookService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import jakarta.servlet.http.Cookie;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Primary und Replikat als zwei H2-Datenbanken. Das Replikat ist eine Kopie vom Stand vor einem Update
+ * und bleibt dort stehen: ein Replikat, das (sehr lange) hinterherhinkt.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:replica-primary;DB_CLOSE_DELAY=-1;MODE=PostgreSQL",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "bookrate.datasource.replica.jdbc-url=jdbc:h2:mem:replica-lagging;DB_CLOSE_DELAY=-1;MODE=PostgreSQL",
+        "bookrate.search.trigram-index.enabled=false"
+})
+@AutoConfigureMockMvc
+class ReplicaCacheTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    @Qualifier("primaryDataSource")
+    private DataSource primary;
+
+    @Autowired
+    @Qualifier("replicaDataSource")
+    private DataSource replica;
+
+    private Book book;
+
+    @BeforeEach
+    void setUp() {
+        book = bookService.createBook(new Book("Der Hobbit", "J.R.R. Tolkien", 5, "", "Roman", "Gelesen"));
+
+        // Replikat = Stand von jetzt, danach kommt dort nichts mehr an
+        JdbcTemplate replicaJdbc = new JdbcTemplate(replica);
+        replicaJdbc.execute("DROP ALL OBJECTS");
+        for (String statement : new JdbcTemplate(primary).queryForList("SCRIPT NOPASSWORDS NOSETTINGS", String.class)) {
+            replicaJdbc.execute(statement);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReadYourWrites.release();
+    }
+
+    @Test
+    void shouldNotCacheBookFromLaggingReplica() {
+        bookService.updateBook(book.getId(), new Book("Der kleine Hobbit", "J.R.R. Tolkien", 5, "", "Roman", "Gelesen"));
+
+        // Ein anderer Client liest zuerst, danach der Schreiber selbst (an den Primary gebunden)
+        bookService.getBookById(book.getId());
+        ReadYourWrites.pin();
+
+        assertEquals("Der kleine Hobbit", bookService.getBookById(book.getId()).orElseThrow().getTitle());
+    }
+
+    @Test
+    void shouldNotCacheFilterResultFromLaggingReplica() {
+        bookService.updateBook(book.getId(), new Book("Der Hobbit", "J.R.R. Tolkien", 5, "", "Fantasy", "Gelesen"));
+
+        // Vom Replikat noch als Roman gefunden, das darf aber nicht im Query-Cache landen
+        assertEquals(1, bookService.filterBooks("Roman", null).size());
+        ReadYourWrites.pin();
+
+        assertEquals(List.of(), bookService.filterBooks("Roman", null));
+    }
+
+    @Test
+    void shouldNotConfirmReplicaListWithCatalogEtag() throws Exception {
+        bookService.updateBook(book.getId(), new Book("Der Hobbit", "J.R.R. Tolkien", 5, "", "Märchen", "Gelesen"));
+
+        // Der Schreiber selbst (Cookie) liest vom Primary und bekommt den ETag nach dem Update
+        String etag = mockMvc.perform(get("/api/books").param("genre", "Märchen")
+                        .cookie(new Cookie(ReadYourWritesFilter.COOKIE, Long.toString(System.currentTimeMillis() + 60_000))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag);
+
+        // Alle anderen lesen vom Replikat, noch ohne das Update: weder ETag noch 304
+        mockMvc.perform(get("/api/books").param("genre", "Märchen").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.ETAG))
+                .andExpect(jsonPath("$", hasSize(0)));
+    }
+}
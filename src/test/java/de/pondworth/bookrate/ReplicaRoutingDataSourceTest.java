@@ -0,0 +1,149 @@
+package de.pondworth.bookrate;
+
+import de.pondworth.bookrate.datasource.ReadYourWrites;
+import de.pondworth.bookrate.datasource.ReadYourWritesFilter;
+import de.pondworth.bookrate.datasource.ReplicaRoutingDataSource;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServlet;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Routing zwischen Primary und Replikat mit zwei H2-Datenbanken, die dieselbe Tabelle mit unterschiedlichem Inhalt haben
+ */
+class ReplicaRoutingDataSourceTest {
+
+    private JdbcTemplate primaryJdbc;
+    private JdbcTemplate replicaJdbc;
+    private JdbcTemplate jdbc;
+    private TransactionTemplate readOnly;
+    private TransactionTemplate readWrite;
+
+    @BeforeEach
+    void setUp() {
+        DataSource primary = h2("primary");
+        DataSource replica = h2("replica");
+        primaryJdbc = new JdbcTemplate(primary);
+        replicaJdbc = new JdbcTemplate(replica);
+        primaryJdbc.execute("CREATE TABLE node (name VARCHAR(20))");
+        primaryJdbc.update("INSERT INTO node VALUES ('primary')");
+        replicaJdbc.execute("CREATE TABLE node (name VARCHAR(20))");
+        replicaJdbc.update("INSERT INTO node VALUES ('replica')");
+
+        DataSource routing = new LazyConnectionDataSourceProxy(new ReplicaRoutingDataSource(primary, replica));
+        jdbc = new JdbcTemplate(routing);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(routing);
+        readWrite = new TransactionTemplate(transactionManager);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        primaryJdbc.execute("DROP TABLE node");
+        replicaJdbc.execute("DROP TABLE node");
+        ReadYourWrites.release();
+    }
+
+    @Test
+    void readOnlyTransactionReadsReplica() {
+        assertEquals("replica", readOnly.execute(status -> node()));
+    }
+
+    @Test
+    void writeTransactionUsesPrimary() {
+        readWrite.executeWithoutResult(status -> jdbc.update("INSERT INTO node VALUES ('neu')"));
+
+        assertEquals(2, primaryJdbc.queryForObject("SELECT COUNT(*) FROM node", Integer.class));
+        assertEquals(1, replicaJdbc.queryForObject("SELECT COUNT(*) FROM node", Integer.class));
+        assertEquals("primary", readWrite.execute(status -> node()));
+    }
+
+    @Test
+    void withoutTransactionUsesPrimary() {
+        assertEquals("primary", node());
+    }
+
+    @Test
+    void pinnedReadOnlyTransactionReadsPrimary() {
+        ReadYourWrites.pin();
+
+        assertEquals("primary", readOnly.execute(status -> node()));
+    }
+
+    @Test
+    void filterSetsCookieAndPinsWriteRequest() throws Exception {
+        ReadYourWritesFilter filter = new ReadYourWritesFilter(Duration.ofSeconds(5), clockAt(1_000));
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/books");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        AtomicReference<String> read = new AtomicReference<>();
+
+        filter.doFilter(request, response, new MockFilterChain(new HttpServlet() {}, (req, res, chain) ->
+                read.set(readOnly.execute(status -> node()))));
+
+        assertEquals("primary", read.get());
+        Cookie cookie = response.getCookie(ReadYourWritesFilter.COOKIE);
+        assertNotNull(cookie);
+        assertEquals("6000", cookie.getValue());
+        assertEquals(5, cookie.getMaxAge());
+        assertFalse(ReadYourWrites.isPinned());
+    }
+
+    @Test
+    void filterPinsReadWithinWindow() throws Exception {
+        assertEquals("primary", readThroughFilter(clockAt(5_999), "6000"));
+    }
+
+    @Test
+    void filterReadsReplicaAfterWindow() throws Exception {
+        assertEquals("replica", readThroughFilter(clockAt(6_000), "6000"));
+        assertEquals("replica", readThroughFilter(clockAt(0), null));
+        assertEquals("replica", readThroughFilter(clockAt(0), "kaputt"));
+    }
+
+    private String readThroughFilter(Clock clock, String cookie) throws Exception {
+        ReadYourWritesFilter filter = new ReadYourWritesFilter(Duration.ofSeconds(5), clock);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/books");
+        if (cookie != null) {
+            request.setCookies(new Cookie(ReadYourWritesFilter.COOKIE, cookie));
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        AtomicReference<String> read = new AtomicReference<>();
+
+        filter.doFilter(request, response, new MockFilterChain(new HttpServlet() {}, (req, res, chain) ->
+                read.set(readOnly.execute(status -> node()))));
+
+        assertNull(response.getCookie(ReadYourWritesFilter.COOKIE));
+        return read.get();
+    }
+
+    private String node() {
+        return jdbc.queryForObject("SELECT name FROM node FETCH FIRST 1 ROWS ONLY", String.class);
+    }
+
+    private static Clock clockAt(long millis) {
+        return Clock.fixed(Instant.ofEpochMilli(millis), ZoneOffset.UTC);
+    }
+
+    private static DataSource h2(String name) {
+        return new DriverManagerDataSource("jdbc:h2:mem:routing-" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+    }
+}
@@ -0,0 +1,81 @@
+package de.pondworth.bookrate;
+
+import de.pondworth.bookrate.metrics.RepositoryMetricsInterceptor;
+import de.pondworth.bookrate.model.Book;
+import de.pondworth.bookrate.repository.BookRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(OutputCaptureExtension.class)
+public class RepositoryMetricsInterceptorTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private BookRepository target;
+
+    @BeforeEach
+    void setUp() {
+        target = Mockito.mock(BookRepository.class);
+        Book book = new Book("Testbuch", "Autor", 5, "", "Roman", "Gelesen");
+        when(target.searchByTitleOrAuthor("Harry")).thenReturn(List.of(book, book, book));
+        when(target.findById(1L)).thenReturn(Optional.of(book));
+    }
+
+    @Test
+    void shouldRecordResultSizePerMethod() {
+        BookRepository repository = proxy(Duration.ZERO);
+
+        repository.searchByTitleOrAuthor("Harry");
+        repository.searchByTitleOrAuthor("Harry");
+        repository.findById(1L);
+
+        DistributionSummary filter = registry.get(RepositoryMetricsInterceptor.RESULTS)
+                .tags("repository", "BookRepository", "method", "searchByTitleOrAuthor").summary();
+        assertEquals(2, filter.count());
+        assertEquals(6, filter.totalAmount());
+        assertEquals(1, registry.get(RepositoryMetricsInterceptor.RESULTS).tag("method", "findById").summary().totalAmount());
+    }
+
+    @Test
+    void shouldLogSlowQueriesWithParameters(CapturedOutput output) {
+        BookRepository repository = proxy(Duration.ofNanos(1));
+
+        repository.searchByTitleOrAuthor("Harry");
+
+        assertTrue(output.getOut().contains("Langsame Abfrage BookRepository.searchByTitleOrAuthor"));
+        assertTrue(output.getOut().contains("[Harry]"));
+    }
+
+    @Test
+    void shouldNotReportStreamingCallbackAsSlowQuery(CapturedOutput output) {
+        BookRepository repository = proxy(Duration.ofNanos(1));
+
+        repository.forEachBook(null, null, book -> {});
+
+        Mockito.verify(target).forEachBook(isNull(), isNull(), any());
+        assertFalse(output.getOut().contains("Langsame Abfrage"));
+        assertTrue(registry.find(RepositoryMetricsInterceptor.RESULTS).tag("method", "forEachBook").meters().isEmpty());
+    }
+
+    private BookRepository proxy(Duration slowQueryThreshold) {
+        ProxyFactory factory = new ProxyFactory(target);
+        factory.addInterface(BookRepository.class);
+        factory.addAdvice(new RepositoryMetricsInterceptor("BookRepository", () -> registry, slowQueryThreshold));
+        return (BookRepository) factory.getProxy();
+    }
+}
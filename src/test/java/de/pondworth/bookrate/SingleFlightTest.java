@@ -0,0 +1,154 @@
+package de.pondworth.bookrate;
+
+import de.pondworth.bookrate.datasource.ReadYourWrites;
+import de.pondworth.bookrate.service.BookChangedEvent;
+import de.pondworth.bookrate.service.CatalogGeneration;
+import de.pondworth.bookrate.service.SingleFlight;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SingleFlightTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final CatalogGeneration generation = new CatalogGeneration("");
+    private final SingleFlight singleFlight = new SingleFlight(registry, generation, true);
+
+    @Test
+    void shouldShareOneExecutionBetweenConcurrentCallers() throws Exception {
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<List<String>>> results = new ArrayList<>();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 20; i++) {
+                results.add(executor.submit(() -> singleFlight.execute("filterBooks", () -> {
+                    executions.incrementAndGet();
+                    await(release);
+                    return List.of("Testbuch");
+                }, "Roman", null)));
+            }
+            // Erst loslassen, wenn alle 20 da sind: einer führt aus, 19 warten
+            while (calls("executed") + calls("coalesced") < 20) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+            List<String> first = results.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<List<String>> result : results) {
+                assertSame(first, result.get(5, TimeUnit.SECONDS));
+            }
+        }
+        assertEquals(1, executions.get());
+        assertEquals(1, calls("executed"));
+        assertEquals(19, calls("coalesced"));
+    }
+
+    @Test
+    void shouldNotJoinFlightStartedBeforeWrite() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<String> before = executor.submit(() -> singleFlight.execute("searchBooks", () -> {
+                started.countDown();
+                await(release);
+                return "alt";
+            }, "tolkien"));
+            started.await();
+
+            // Ein Schreibvorgang committet, während die erste Abfrage noch läuft
+            generation.onBookChanged(BookChangedEvent.deleted(1L));
+            String after = singleFlight.execute("searchBooks", () -> "neu", "tolkien");
+
+            release.countDown();
+            assertEquals("alt", before.get(5, TimeUnit.SECONDS));
+            assertEquals("neu", after);
+        }
+        assertEquals(0, calls("coalesced"));
+    }
+
+    @Test
+    void shouldNotJoinReplicaFlightWhenPinned() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<String> replica = executor.submit(() -> singleFlight.execute("filterBooks", () -> {
+                started.countDown();
+                await(release);
+                return "Replikat";
+            }, "Roman", null));
+            started.await();
+
+            // Der Schreiber selbst liest im Read-your-writes-Fenster vom Primary
+            String primary = executor.submit(() -> {
+                ReadYourWrites.pin();
+                try {
+                    return singleFlight.execute("filterBooks", () -> "Primary", "Roman", null);
+                } finally {
+                    ReadYourWrites.release();
+                }
+            }).get(5, TimeUnit.SECONDS);
+
+            release.countDown();
+            assertEquals("Replikat", replica.get(5, TimeUnit.SECONDS));
+            assertEquals("Primary", primary);
+        }
+        assertEquals(0, calls("coalesced"));
+    }
+
+    @Test
+    void shouldSeparateParametersAndNotKeepResults() {
+        assertEquals("Roman", singleFlight.execute("filterBooks", () -> "Roman", "Roman", null));
+        assertEquals("Krimi", singleFlight.execute("filterBooks", () -> "Krimi", "Krimi", null));
+        // Kein Cache: nach dem Ende der ersten Ausführung läuft die nächste wieder selbst
+        assertEquals("erneut", singleFlight.execute("filterBooks", () -> "erneut", "Roman", null));
+        assertEquals(3, calls("executed"));
+    }
+
+    @Test
+    void shouldPassExceptionToAllCallersAndForgetIt() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                results.add(executor.submit(() -> singleFlight.<String>execute("searchBooks", () -> {
+                    await(release);
+                    throw new IllegalStateException("Datenbank nicht erreichbar");
+                }, "ring")));
+            }
+            while (calls("executed") + calls("coalesced") < 5) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+            for (Future<String> result : results) {
+                Exception e = assertThrows(Exception.class, () -> result.get(5, TimeUnit.SECONDS));
+                assertInstanceOf(IllegalStateException.class, e.getCause());
+            }
+        }
+        assertEquals("ok", singleFlight.execute("searchBooks", () -> "ok", "ring"));
+    }
+
+    private long calls(String result) {
+        return (long) registry.find("bookrate.singleflight.calls").tag("result", result).counters().stream()
+                .mapToDouble(counter -> counter.count()).sum();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package de.pondworth.bookrate;
+
+import de.pondworth.bookrate.model.Book;
+import de.pondworth.bookrate.repository.BookRepository;
+import de.pondworth.bookrate.search.TrigramIndex;
+import de.pondworth.bookrate.service.BookChangedEvent;
+import de.pondworth.bookrate.service.BookPatch;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+
+@ExtendWith(MockitoExtension.class)
+public class TrigramIndexTest {
+
+    @Mock
+    private BookRepository bookRepository;
+
+    private TrigramIndex index;
+
+    @BeforeEach
+    void setUp() {
+        doAnswer(invocation -> {
+            Consumer<Book> action = invocation.getArgument(2);
+            action.accept(book(1L, "Harry Potter", "J.K. Rowling"));
+            action.accept(book(2L, "Der Hobbit", "J.R.R. Tolkien"));
+            action.accept(book(3L, "Clean Code", "Robert C. Martin"));
+            return null;
+        }).when(bookRepository).forEachBook(isNull(), isNull(), any());
+
+        index = new TrigramIndex(bookRepository, true);
+        index.rebuild();
+    }
+
+    @Test
+    void shouldFindByTitleAndAuthorCaseInsensitive() {
+        assertTrue(index.isReady());
+        assertEquals(List.of(1L), index.search("POTTER"));
+        assertEquals(List.of(2L), index.search("tolkien"));
+        assertEquals(List.of(1L, 2L), index.search("j."));
+    }
+
+    @Test
+    void shouldOnlyMatchContiguousSubstrings() {
+        // "hobbit" und "tolkien" kommen vor, aber nicht zusammenhängend
+        assertEquals(List.of(), index.search("hobbit tolkien"));
+        assertEquals(List.of(), index.search("bitj.r"));
+    }
+
+    @Test
+    void shouldFollowCreateUpdateAndDelete() {
+        index.onBookChanged(BookChangedEvent.created(book(4L, "Der Herr der Ringe", "J.R.R. Tolkien")));
+        assertEquals(List.of(2L, 4L), index.search("tolkien"));
+
+        index.onBookChanged(BookChangedEvent.updated(book(2L, "Der kleine Hobbit", "Unbekannt")));
+        assertEquals(List.of(4L), index.search("tolkien"));
+        assertEquals(List.of(2L), index.search("kleine"));
+
+        index.onBookChanged(BookChangedEvent.deleted(4L));
+        assertEquals(List.of(), index.search("tolkien"));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    void shouldKeepUnchangedFieldOnPatch() {
+        index.onBookChanged(BookChangedEvent.patched(2L, 1L, new BookPatch("Das Silmarillion", null, 4, null, null, null)));
+
+        assertEquals(List.of(2L), index.search("silmarillion"));
+        assertEquals(List.of(), index.search("hobbit"));
+        assertEquals(List.of(2L), index.search("tolkien"));
+    }
+
+    private static Book book(Long id, String title, String author) {
+        Book book = new Book(title, author, 5, "", "Roman", "Gelesen");
+        book.setId(id);
+        return book;
+    }
+}
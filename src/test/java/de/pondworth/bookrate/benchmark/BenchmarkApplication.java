@@ -0,0 +1,62 @@
+package de.pondworth.bookrate.benchmark;
+
+import de.pondworth.bookrate.BookrateApplication;
+import de.pondworth.bookrate.model.Book;
+import de.pondworth.bookrate.service.BookImportService;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Startet die echte Anwendung mit H2 im Speicher als Ersatz für PostgreSQL und füllt sie mit Testdaten
+ */
+public final class BenchmarkApplication {
+
+    private BenchmarkApplication() {}
+
+    /**
+     * @param web      mit Tomcat auf einem freien Port (Lasttests) oder ohne (JMH)
+     * @param profiles zusätzliche Spring-Profile, z. B. "virtual"
+     */
+    public static ConfigurableApplicationContext start(String database, boolean web, String... profiles) {
+        return start(database, web, Map.of(), profiles);
+    }
+
+    /**
+     * @param properties überschreibt Werte aus der application.properties, z. B. um Caches abzuschalten
+     */
+    public static ConfigurableApplicationContext start(String database, boolean web, Map<String, String> properties, String... profiles) {
+        // DevTools würde die Anwendung in einem eigenen Classloader neu starten
+        System.setProperty("spring.devtools.restart.enabled", "false");
+
+        List<String> args = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1;MODE=PostgreSQL",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN"));
+        properties.forEach((name, value) -> args.add("--" + name + "=" + value));
+
+        SpringApplication application = new SpringApplication(BookrateApplication.class);
+        application.setWebApplicationType(web ? WebApplicationType.SERVLET : WebApplicationType.NONE);
+        application.setAdditionalProfiles(profiles);
+        return application.run(args.toArray(String[]::new));
+    }
+
+    /**
+     * Importiert die Testdaten über BookImportService, damit Index und Statistiken mitgepflegt werden
+     */
+    public static void seed(ConfigurableApplicationContext context, int count) {
+        List<Book> books = BenchmarkData.books(count);
+        books.forEach(book -> book.setId(null));
+        context.getBean(BookImportService.class).importBooks(books.iterator());
+    }
+}
@@ -0,0 +1,50 @@
+package de.pondworth.bookrate.benchmark;
+
+import de.pondworth.bookrate.model.Book;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Reproduzierbare Testdaten (fester Seed) für alle Benchmarks
+ */
+public final class BenchmarkData {
+
+    private static final String[] TITLE_WORDS = {
+            "Der", "Die", "Das", "Herr", "Ringe", "Schatten", "Wind", "Nacht", "Stadt", "Meer",
+            "Garten", "Spiel", "Reise", "Zeit", "Licht", "Feuer", "Stern", "König", "Haus", "Fluss",
+            "Winter", "Sommer", "Geheimnis", "Krieg", "Frieden", "Insel", "Berg", "Wald", "Traum", "Tor"
+    };
+    private static final String[] FIRST_NAMES = {
+            "Anna", "Ben", "Clara", "David", "Eva", "Felix", "Greta", "Hans", "Ida", "Jonas",
+            "Karl", "Lena", "Max", "Nina", "Otto", "Paula", "Quirin", "Rosa", "Sven", "Tara"
+    };
+    private static final String[] LAST_NAMES = {
+            "Müller", "Schmidt", "Schneider", "Fischer", "Weber", "Meyer", "Wagner", "Becker", "Schulz", "Hoffmann",
+            "Koch", "Richter", "Klein", "Wolf", "Schröder", "Neumann", "Schwarz", "Zimmermann", "Braun", "Krüger",
+            "Hofmann", "Hartmann", "Lange", "Schmitt", "Werner", "Krause", "Meier", "Lehmann", "Tolkien", "Rowling"
+    };
+    private static final String[] GENRES = {"Roman", "Krimi", "Fantasy", "Fachbuch", "Sachbuch", "Unbekannt"};
+    private static final String[] STATUS = {"Gelesen", "Lese ich", "Will ich lesen", "Unbekannt"};
+
+    private BenchmarkData() {}
+
+    public static List<Book> books(int count) {
+        Random random = new Random(42);
+        List<Book> books = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            String title = pick(random, TITLE_WORDS) + " " + pick(random, TITLE_WORDS) + " " + pick(random, TITLE_WORDS);
+            String author = pick(random, FIRST_NAMES) + " " + pick(random, LAST_NAMES);
+            Book book = new Book(title, author, 1 + random.nextInt(5), "Kommentar " + i,
+                    pick(random, GENRES), pick(random, STATUS));
+            book.setId((long) i);
+            books.add(book);
+        }
+        return books;
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
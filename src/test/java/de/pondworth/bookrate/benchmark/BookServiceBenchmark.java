@@ -0,0 +1,138 @@
+package de.pondworth.bookrate.benchmark;
+
+import de.pondworth.bookrate.model.Book;
+import de.pondworth.bookrate.service.BookService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hot Paths im BookService über die echte Anwendung (Spring, Hibernate) mit H2 im Speicher.
+ * "datenbank" misst die Abfragen selbst: Spaltenspeicher, Trigramm-Index, Hibernate-Cache und SingleFlight sind aus.
+ * "speicher" schaltet sie alle ein, wie eine Anwendung mit bookrate.columnar.enabled=true.
+ *
+ * Start: ./mvnw -Pjmh -DskipTests verify -Djmh.includes=BookServiceBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class BookServiceBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Catalog {
+
+        @Param({"10000"})
+        int rows;
+
+        @Param({"datenbank", "speicher"})
+        String paths;
+
+        ConfigurableApplicationContext context;
+        BookService bookService;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            String inMemory = String.valueOf("speicher".equals(paths));
+            context = BenchmarkApplication.start("service" + rows + paths, false, Map.of(
+                    "bookrate.columnar.enabled", inMemory,
+                    "bookrate.search.trigram-index.enabled", inMemory,
+                    "bookrate.jpa-cache.enabled", inMemory,
+                    "bookrate.singleflight.enabled", inMemory));
+            BenchmarkApplication.seed(context, rows);
+            bookService = context.getBean(BookService.class);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            context.close();
+        }
+    }
+
+    // Jeder Zweig von getAllBooks(rating, genre)
+    @State(Scope.Benchmark)
+    public static class AllBooksFilter {
+
+        @Param({"alle", "rating", "genre", "rating+genre"})
+        String filter;
+
+        Integer rating;
+        String genre;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            rating = filter.contains("rating") ? 5 : null;
+            genre = filter.contains("genre") ? "Roman" : null;
+        }
+    }
+
+    // Jeder Zweig von filterBooks(genre, status)
+    @State(Scope.Benchmark)
+    public static class GenreStatusFilter {
+
+        @Param({"keiner", "genre", "status", "genre+status"})
+        String filter;
+
+        String genre;
+        String status;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            genre = filter.contains("genre") ? "Roman" : null;
+            status = filter.contains("status") ? "Gelesen" : null;
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class SearchQuery {
+
+        // häufiger Autor, häufiges Titelwort, kein Treffer
+        @Param({"tolkien", "ring", "quux"})
+        String query;
+    }
+
+    @State(Scope.Thread)
+    public static class Validation {
+
+        final Book valid = new Book("Der Herr der Ringe", "J. R. R. Tolkien", 5, "Klassiker", "Fantasy", "Gelesen");
+        final Book invalid = new Book("Der Herr der Ringe", "J. R. R. Tolkien", 7, "Klassiker", "Fantasy", "Gelesen");
+    }
+
+    @Benchmark
+    public List<Book> getAllBooks(Catalog catalog, AllBooksFilter filter) {
+        return catalog.bookService.getAllBooks(filter.rating, filter.genre);
+    }
+
+    @Benchmark
+    public List<Book> filterBooks(Catalog catalog, GenreStatusFilter filter) {
+        return catalog.bookService.filterBooks(filter.genre, filter.status);
+    }
+
+    @Benchmark
+    public List<Book> searchBooks(Catalog catalog, SearchQuery search) {
+        return catalog.bookService.searchBooks(search.query);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Book validateBook(Catalog catalog, Validation validation) {
+        catalog.bookService.validateBook(validation.valid);
+        return validation.valid;
+    }
+
+    // Ungültige Zeilen im Massenimport: Kosten der Exception inklusive Stacktrace
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public String validateInvalidBook(Catalog catalog, Validation validation) {
+        try {
+            catalog.bookService.validateBook(validation.invalid);
+            return null;
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package de.pondworth.bookrate.benchmark;
+
+import de.pondworth.bookrate.model.Book;
+import de.pondworth.bookrate.search.FuzzyIndex;
+import de.pondworth.bookrate.service.BookChangedEvent;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fehlertolerante Suche über den FuzzyIndex (ohne Datenbank, nur der Index).
+ *
+ * Start: ./mvnw -Pjmh -DskipTests verify -Djmh.includes=FuzzySearchBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class FuzzySearchBenchmark {
+
+    @Param({"100000", "1000000"})
+    private int rows;
+
+    // Vertauschte Buchstaben im Autor, zwei häufige Titelwörter mit Tippfehler, kein Treffer
+    @Param({"tolkein", "schatenn wind", "quux"})
+    private String query;
+
+    private FuzzyIndex index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        index = new FuzzyIndex(null, true);
+        for (Book book : BenchmarkData.books(rows)) {
+            index.onBookChanged(BookChangedEvent.created(book));
+        }
+    }
+
+    // Erste Seite wie bei GET /api/books/search?fuzzy=true ohne limit
+    @Benchmark
+    public List<Long> fuzzyIndex() {
+        return index.search(query, 50);
+    }
+}
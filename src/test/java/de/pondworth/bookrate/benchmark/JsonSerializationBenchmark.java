@@ -0,0 +1,90 @@
+package de.pondworth.bookrate.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import de.pondworth.bookrate.config.CachedBookJsonHttpMessageConverter;
+import de.pondworth.bookrate.model.Book;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson-Serialisierung von List&lt;Book&gt;, so wie sie die Listen-Endpunkte des BookController schreiben,
+ * und dieselbe Liste aus den zwischengespeicherten Bytes des CachedBookJsonHttpMessageConverter.
+ *
+ * Start: ./mvnw -Pjmh -DskipTests verify -Djmh.includes=JsonSerializationBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class JsonSerializationBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    private int size;
+
+    private static final Type BOOK_LIST = new TypeReference<List<Book>>() {}.getType();
+
+    private List<Book> books;
+    private ObjectWriter writer;
+    private CachedBookJsonHttpMessageConverter converter;
+    private HttpOutputMessage response;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        books = BenchmarkData.books(size);
+        // Gleiche Grundeinstellungen wie der ObjectMapper von Spring Boot
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        writer = objectMapper.writerFor(new TypeReference<List<Book>>() {});
+        converter = new CachedBookJsonHttpMessageConverter(objectMapper, size);
+        response = new HttpOutputMessage() {
+            private final HttpHeaders headers = new HttpHeaders();
+
+            @Override
+            public OutputStream getBody() {
+                return OutputStream.nullOutputStream();
+            }
+
+            @Override
+            public HttpHeaders getHeaders() {
+                return headers;
+            }
+        };
+        // Alle Bücher schon im Cache, wie im Betrieb nach dem ersten Abruf
+        try {
+            cachedBytes();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Komplette Antwort im Speicher (z. B. für Caches oder ETags über den Body)
+    @Benchmark
+    public byte[] toBytes() throws JsonProcessingException {
+        return writer.writeValueAsBytes(books);
+    }
+
+    // Direkt in den Response-Stream, wie es MappingJackson2HttpMessageConverter macht
+    @Benchmark
+    public void toStream() throws IOException {
+        writer.writeValue(OutputStream.nullOutputStream(), books);
+    }
+
+    // Wie toStream, aber jedes Buch als fertige Bytes aus dem Cache
+    @Benchmark
+    public void cachedBytes() throws IOException {
+        converter.write(books, BOOK_LIST, MediaType.APPLICATION_JSON, response);
+    }
+}
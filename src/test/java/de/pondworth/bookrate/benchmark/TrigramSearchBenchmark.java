@@ -0,0 +1,94 @@
+package de.pondworth.bookrate.benchmark;
+
+import de.pondworth.bookrate.model.Book;
+import de.pondworth.bookrate.search.TrigramIndex;
+import de.pondworth.bookrate.service.BookChangedEvent;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Vergleicht die Suche über den TrigramIndex mit der LIKE-Abfrage aus
+ * BookRepository.searchByTitleOrAuthor (H2 im Speicher als Ersatz für PostgreSQL).
+ *
+ * Start: ./mvnw -Pjmh -DskipTests verify -Djmh.includes=TrigramSearchBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TrigramSearchBenchmark {
+
+    // "tolkien" trifft ca. 1/30 der Autoren, "ring" kommt in Titeln vor, "quux" gar nicht
+    @Param({"100000", "1000000"})
+    private int rows;
+
+    @Param({"tolkien", "ring", "quux"})
+    private String query;
+
+    private TrigramIndex index;
+    private Connection connection;
+    private PreparedStatement like;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        index = new TrigramIndex(null, true);
+        connection = DriverManager.getConnection("jdbc:h2:mem:trigram" + rows + ";DB_CLOSE_DELAY=-1");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE book (id BIGINT PRIMARY KEY, title VARCHAR(255), author VARCHAR(255))");
+        }
+
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO book (id, title, author) VALUES (?, ?, ?)")) {
+            for (Book book : BenchmarkData.books(rows)) {
+                insert.setLong(1, book.getId());
+                insert.setString(2, book.getTitle());
+                insert.setString(3, book.getAuthor());
+                insert.addBatch();
+                if (book.getId() % 1000 == 0) {
+                    insert.executeBatch();
+                }
+                index.onBookChanged(BookChangedEvent.created(book));
+            }
+            insert.executeBatch();
+        }
+
+        like = connection.prepareStatement("SELECT id FROM book WHERE LOWER(title) LIKE ? OR LOWER(author) LIKE ?");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP ALL OBJECTS");
+        }
+        connection.close();
+    }
+
+    @Benchmark
+    public List<Long> trigramIndex() {
+        return index.search(query);
+    }
+
+    @Benchmark
+    public List<Long> likeQuery() throws SQLException {
+        String pattern = "%" + query.toLowerCase() + "%";
+        like.setString(1, pattern);
+        like.setString(2, pattern);
+        List<Long> ids = new ArrayList<>();
+        try (ResultSet resultSet = like.executeQuery()) {
+            while (resultSet.next()) {
+                ids.add(resultSet.getLong(1));
+            }
+        }
+        return ids;
+    }
+}
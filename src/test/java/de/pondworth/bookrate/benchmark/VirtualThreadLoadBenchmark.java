@@ -0,0 +1,274 @@
+package de.pondworth.bookrate.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lasttest über HTTP: die komplette Anwendung (Tomcat, BookController, BookService, Hikari, H2 im Speicher)
+ * einmal mit Plattform-Threads und einmal mit dem Profil "virtual" (virtuelle Threads).
+ * Jeder Client schickt in einer Schleife eine Anfrage und wartet auf die Antwort (geschlossenes Lastmodell).
+ *
+ * Pro Lauf eine eigene JVM, damit JIT und Caches sich nicht gegenseitig beeinflussen:
+ * ./mvnw -Pload -DskipTests verify
+ * ./mvnw -Pload -DskipTests verify -Dload.clients=2000 -Dload.seconds=60
+ *
+ * Neben Durchsatz und Latenzen wird gemessen, wie viele Threads auf eine Hikari-Verbindung warten
+ * und wo virtuelle Threads an ihren Träger-Thread gepinnt werden (JFR-Event jdk.VirtualThreadPinned).
+ */
+public class VirtualThreadLoadBenchmark {
+
+    private static final String[] GENRES = {"Roman", "Krimi", "Fantasy", "Fachbuch", "Sachbuch"};
+    private static final String[] QUERIES = {"tolkien", "ring", "stern", "wolf", "meer"};
+
+    public static void main(String[] args) throws Exception {
+        String mode = args.length > 0 ? args[0] : "platform";
+        int clients = Integer.getInteger("load.clients", 1000);
+        int books = Integer.getInteger("load.books", 20_000);
+        int warmupSeconds = Integer.getInteger("load.warmup", 10);
+        int seconds = Integer.getInteger("load.seconds", 30);
+        Path result = Path.of(System.getProperty("load.result", "target/load-result.csv"));
+
+        ConfigurableApplicationContext context = "virtual".equals(mode)
+                ? BenchmarkApplication.start("load", true, "virtual")
+                : BenchmarkApplication.start("load", true);
+        try {
+            BenchmarkApplication.seed(context, books);
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            HikariPoolMXBean pool = ((HikariDataSource) context.getBean(DataSource.class)).getHikariPoolMXBean();
+
+            System.out.printf("%s: %d Clients, %d Bücher, %d s Warmup, %d s Messung%n", mode, clients, books, warmupSeconds, seconds);
+            run(port, clients, books, warmupSeconds, null, null);
+
+            Map<String, LongAdder> pinned = new ConcurrentHashMap<>();
+            PoolSampler sampler = new PoolSampler(pool);
+            try (RecordingStream recording = new RecordingStream()) {
+                recording.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ofMillis(1)).withStackTrace();
+                recording.onEvent("jdk.VirtualThreadPinned", event -> pinned
+                        .computeIfAbsent(pinSite(event.getStackTrace() == null ? List.of() : event.getStackTrace().getFrames()),
+                                site -> new LongAdder())
+                        .increment());
+                recording.startAsync();
+                Stats stats = run(port, clients, books, seconds, sampler, pinned);
+                recording.stop();
+                report(mode, clients, seconds, stats, sampler, pinned, result);
+            }
+        } finally {
+            context.close();
+        }
+    }
+
+    private static Stats run(int port, int clients, int books, int seconds,
+                             PoolSampler sampler, Map<String, LongAdder> pinned) throws InterruptedException {
+        HttpClient http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        String base = "http://localhost:" + port + "/api/books";
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        Stats stats = new Stats(clients);
+        if (pinned != null) {
+            pinned.clear();
+        }
+        if (sampler != null) {
+            sampler.start();
+        }
+
+        // Die Clients selbst laufen immer auf virtuellen Threads, damit 1000+ Verbindungen den Treiber nicht bremsen
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients; c++) {
+                int client = c;
+                executor.submit(() -> {
+                    Random random = new Random(client);
+                    while (System.nanoTime() < end) {
+                        HttpRequest request = HttpRequest.newBuilder(URI.create(base + nextPath(random, books))).GET().build();
+                        long start = System.nanoTime();
+                        try {
+                            HttpResponse<byte[]> response = http.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                            stats.record(client, System.nanoTime() - start, response.statusCode() < 400);
+                        } catch (IOException e) {
+                            stats.record(client, System.nanoTime() - start, false);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                    }
+                });
+            }
+        }
+        if (sampler != null) {
+            sampler.stop();
+        }
+        http.close();
+        return stats;
+    }
+
+    // Mischung wie im Frontend: meist Einzelabrufe (Cache), dazu Listen und Suchen (Datenbank)
+    private static String nextPath(Random random, int books) {
+        int roll = random.nextInt(10);
+        if (roll < 6) {
+            return "/" + (1 + random.nextInt(books));
+        }
+        if (roll < 9) {
+            return "?limit=20&genre=" + GENRES[random.nextInt(GENRES.length)];
+        }
+        return "/search?limit=20&query=" + QUERIES[random.nextInt(QUERIES.length)];
+    }
+
+    // Erster Frame außerhalb des JDK, sonst der oberste Frame
+    private static String pinSite(List<RecordedFrame> frames) {
+        for (RecordedFrame frame : frames) {
+            String type = frame.getMethod().getType().getName();
+            if (!type.startsWith("java.") && !type.startsWith("jdk.") && !type.startsWith("sun.")) {
+                return type + "." + frame.getMethod().getName();
+            }
+        }
+        return frames.isEmpty() ? "?" : frames.get(0).getMethod().getType().getName() + "." + frames.get(0).getMethod().getName();
+    }
+
+    private static void report(String mode, int clients, int seconds, Stats stats, PoolSampler sampler,
+                               Map<String, LongAdder> pinned, Path result) throws IOException {
+        long[] latencies = stats.latencies();
+        double throughput = (double) latencies.length / seconds;
+        double p50 = percentile(latencies, 0.50);
+        double p99 = percentile(latencies, 0.99);
+        double p999 = percentile(latencies, 0.999);
+        long pins = pinned.values().stream().mapToLong(LongAdder::sum).sum();
+
+        System.out.printf("%s: %.0f req/s, p50 %.1f ms, p99 %.1f ms, p99.9 %.1f ms, %d Fehler%n",
+                mode, throughput, p50, p99, p999, stats.errors.sum());
+        System.out.printf("%s: Hikari wartend max %d / Mittel %.1f, aktiv max %d%n",
+                mode, sampler.maxAwaiting, sampler.averageAwaiting(), sampler.maxActive);
+        System.out.printf("%s: %d Pinning-Events (>= 1 ms)%n", mode, pins);
+        pinned.entrySet().stream()
+                .sorted(Map.Entry.<String, LongAdder>comparingByValue(Comparator.comparingLong(LongAdder::sum)).reversed())
+                .limit(5)
+                .forEach(entry -> System.out.printf("    %6d  %s%n", entry.getValue().sum(), entry.getKey()));
+
+        Files.createDirectories(result.toAbsolutePath().getParent());
+        boolean header = Files.notExists(result);
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(result, StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
+            if (header) {
+                out.println("mode,clients,requests_per_second,p50_ms,p99_ms,p999_ms,errors,hikari_awaiting_max,hikari_awaiting_avg,pinned_events");
+            }
+            out.printf(Locale.ROOT, "%s,%d,%.0f,%.2f,%.2f,%.2f,%d,%d,%.1f,%d%n", mode, clients, throughput,
+                    p50, p99, p999, stats.errors.sum(), sampler.maxAwaiting, sampler.averageAwaiting(), pins);
+        }
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1_000_000.0;
+    }
+
+    /**
+     * Latenzen pro Client in eigenen Arrays, damit die Messung selbst keine gemeinsame Sperre braucht
+     */
+    private static final class Stats {
+
+        private final long[][] latencies;
+        private final int[] counts;
+        private final LongAdder errors = new LongAdder();
+
+        Stats(int clients) {
+            latencies = new long[clients][1024];
+            counts = new int[clients];
+        }
+
+        void record(int client, long nanos, boolean ok) {
+            if (!ok) {
+                errors.increment();
+            }
+            if (counts[client] == latencies[client].length) {
+                latencies[client] = Arrays.copyOf(latencies[client], counts[client] * 2);
+            }
+            latencies[client][counts[client]++] = nanos;
+        }
+
+        long[] latencies() {
+            long[] all = new long[Arrays.stream(counts).sum()];
+            int offset = 0;
+            for (int c = 0; c < counts.length; c++) {
+                System.arraycopy(latencies[c], 0, all, offset, counts[c]);
+                offset += counts[c];
+            }
+            Arrays.sort(all);
+            return all;
+        }
+    }
+
+    /**
+     * Fragt alle 50 ms ab, wie viele Threads auf eine Verbindung aus dem Hikari-Pool warten
+     */
+    private static final class PoolSampler {
+
+        private final HikariPoolMXBean pool;
+        private volatile boolean running;
+        private Thread thread;
+        // Nur vom Sampler-Thread geschrieben, gelesen erst nach join()
+        private long samples;
+        private long awaitingSum;
+        private int maxAwaiting;
+        private int maxActive;
+
+        PoolSampler(HikariPoolMXBean pool) {
+            this.pool = pool;
+        }
+
+        void start() {
+            running = true;
+            thread = Thread.ofPlatform().daemon().start(() -> {
+                while (running) {
+                    int awaiting = pool.getThreadsAwaitingConnection();
+                    samples++;
+                    awaitingSum += awaiting;
+                    maxAwaiting = Math.max(maxAwaiting, awaiting);
+                    maxActive = Math.max(maxActive, pool.getActiveConnections());
+                    try {
+                        Thread.sleep(50);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            });
+        }
+
+        void stop() throws InterruptedException {
+            running = false;
+            thread.join();
+        }
+
+        double averageAwaiting() {
+            return samples == 0 ? 0 : (double) awaitingSum / samples;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package de.pondworth.bookrate.config;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.pondworth.bookrate.model.Book;
+import de.pondworth.bookrate.service.BookChangedEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JSON aus zwischengespeicherten Bytes pro Buch muss genau dem entsprechen, was Jackson für die Liste schreibt.
+ * Liegt im Paket config, weil der Cache paketintern ist.
+ */
+class CachedBookJsonHttpMessageConverterTest {
+
+    private static final Type BOOK_LIST = new TypeReference<List<Book>>() {}.getType();
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final CachedBookJsonHttpMessageConverter converter = new CachedBookJsonHttpMessageConverter(objectMapper, 100);
+
+    @Test
+    void shouldWriteSameJsonAsJackson() throws Exception {
+        List<Book> books = List.of(book(1L, "Der Hobbit", 3), book(2L, "Die Räuber \"Erstausgabe\"", 0), book(null, "Neu", 0));
+
+        assertEquals(objectMapper.writeValueAsString(books), write(books));
+        assertEquals("[]", write(List.of()));
+        // Ungespeicherte Bücher haben keine ID und landen nicht im Cache
+        assertEquals(2, converter.cache().estimatedSize());
+    }
+
+    @Test
+    void shouldReuseBytesUntilVersionChanges() throws Exception {
+        Book book = book(1L, "Der Hobbit", 3);
+        byte[] first = converter.serialize(book);
+        assertSame(first, converter.serialize(book));
+
+        book.setTitle("Der kleine Hobbit");
+        book.setVersion(4);
+        assertTrue(new String(converter.serialize(book)).contains("Der kleine Hobbit"));
+
+        converter.onBookChanged(BookChangedEvent.deleted(1L));
+        assertNull(converter.cache().getIfPresent(1L));
+    }
+
+    @Test
+    void shouldOnlyWriteBookListsAsJson() {
+        assertTrue(converter.canWrite(BOOK_LIST, List.class, MediaType.APPLICATION_JSON));
+        assertTrue(converter.canWrite(BOOK_LIST, List.class, null));
+        assertFalse(converter.canWrite(BOOK_LIST, List.class, MediaType.APPLICATION_CBOR));
+        assertFalse(converter.canWrite(new TypeReference<List<Map<String, Object>>>() {}.getType(), List.class, MediaType.APPLICATION_JSON));
+        assertFalse(converter.canWrite(Book.class, Book.class, MediaType.APPLICATION_JSON));
+        assertFalse(converter.canWrite(List.class, MediaType.APPLICATION_JSON));
+        assertFalse(converter.canRead(BOOK_LIST, null, MediaType.APPLICATION_JSON));
+    }
+
+    private String write(List<Book> books) throws Exception {
+        MockHttpOutputMessage message = new MockHttpOutputMessage();
+        converter.write(books, BOOK_LIST, MediaType.APPLICATION_JSON, message);
+        return message.getBodyAsString();
+    }
+
+    private static Book book(Long id, String title, long version) {
+        Book book = new Book(title, "J.R.R. Tolkien", 5, null, "Fantasy", "Gelesen");
+        book.setId(id);
+        book.setVersion(version);
+        return book;
+    }
+}
@@ -0,0 +1,78 @@
+package de.pondworth.bookrate.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.cache.CacheManager;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.OptionalLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Regionen des Hibernate-Caches: Größen aus der Konfiguration, Zeitstempel ohne Verdrängung.
+ * Liegt im Paket config, weil die Bean-Methoden paketintern sind.
+ */
+class JpaCacheConfigTest {
+
+    private final JpaCacheConfig config = new JpaCacheConfig();
+    private CacheManager cacheManager;
+
+    @BeforeEach
+    void setUp() {
+        cacheManager = config.hibernateCacheManager(100, 10, Duration.ofMinutes(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        cacheManager.close();
+    }
+
+    @Test
+    void shouldCreateBoundedRegions() {
+        assertEquals(OptionalLong.of(100), region(JpaCacheConfig.BOOK_REGION).getMaximumSize());
+        assertEquals(OptionalLong.empty(), region(JpaCacheConfig.BOOK_REGION).getExpireAfterWrite());
+
+        CaffeineConfiguration<?, ?> queries = region(RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME);
+        assertEquals(OptionalLong.of(10), queries.getMaximumSize());
+        assertEquals(OptionalLong.of(Duration.ofMinutes(1).toNanos()), queries.getExpireAfterWrite());
+
+        CaffeineConfiguration<?, ?> timestamps = region(RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME);
+        assertEquals(OptionalLong.empty(), timestamps.getMaximumSize());
+        assertEquals(OptionalLong.empty(), timestamps.getExpireAfterWrite());
+        assertFalse(timestamps.isStoreByValue());
+    }
+
+    @Test
+    void shouldSeparateCacheManagersPerContext() {
+        CacheManager other = config.hibernateCacheManager(100, 10, Duration.ofMinutes(1));
+        try {
+            assertNotSame(cacheManager, other);
+            cacheManager.getCache(JpaCacheConfig.BOOK_REGION).put(1L, "Testbuch");
+            assertNull(other.getCache(JpaCacheConfig.BOOK_REGION).get(1L));
+        } finally {
+            other.close();
+        }
+    }
+
+    @Test
+    void shouldPassCacheManagerToHibernate() {
+        Map<String, Object> properties = new HashMap<>();
+        config.hibernateCacheCustomizer(cacheManager).customize(properties);
+
+        assertEquals(true, properties.get(AvailableSettings.USE_QUERY_CACHE));
+        assertEquals("jcache", properties.get(AvailableSettings.CACHE_REGION_FACTORY));
+        assertSame(cacheManager, properties.get(ConfigSettings.CACHE_MANAGER));
+    }
+
+    private CaffeineConfiguration<?, ?> region(String name) {
+        return cacheManager.getCache(name).getConfiguration(CaffeineConfiguration.class);
+    }
+}
@@ -0,0 +1,54 @@
+package de.pondworth.bookrate.search;
+
+import de.pondworth.bookrate.model.Book;
+import de.pondworth.bookrate.repository.BookRepository;
+import de.pondworth.bookrate.service.BookChangedEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+
+/**
+ * Löschungen lassen nur veraltete Array-Einträge zurück; genug davon müssen das Mischen genauso auslösen wie neue
+ */
+@ExtendWith(MockitoExtension.class)
+public class PrefixIndexMergeTest {
+
+    @Test
+    void shouldMergeAfterManyDeletions(@Mock BookRepository bookRepository) {
+        doAnswer(invocation -> {
+            Consumer<Book> action = invocation.getArgument(2);
+            for (long id = 1; id <= 3000; id++) {
+                action.accept(book(id, "Band " + id, "Serienautor"));
+            }
+            return null;
+        }).when(bookRepository).forEachBook(isNull(), isNull(), any());
+        PrefixIndex index = new PrefixIndex(bookRepository, true, 3);
+        index.rebuild();
+        // "band 1", "1" und "serienautor" pro Buch
+        assertEquals(9000, index.sortedKeys());
+
+        // Mischschwelle: ein Achtel der Array-Schlüssel, also nach gut 375 Löschungen
+        for (long id = 1; id <= 500; id++) {
+            index.onBookChanged(BookChangedEvent.deleted(id));
+        }
+
+        assertTrue(index.sortedKeys() < 9000, () -> index.sortedKeys() + " Schlüssel");
+        assertEquals(2500, index.suggest("serien", 1).get(0).books());
+        assertEquals(List.of(), index.suggest("band 100", 10).stream().filter(s -> s.text().equals("Band 100")).toList());
+    }
+
+    private static Book book(Long id, String title, String author) {
+        Book book = new Book(title, author, 3, "", "Roman", "Gelesen");
+        book.setId(id);
+        return book;
+    }
+}
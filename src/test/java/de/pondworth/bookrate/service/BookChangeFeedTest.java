@@ -0,0 +1,181 @@
+package de.pondworth.bookrate.service;
+
+import de.pondworth.bookrate.model.Book;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Ringpuffer und Fortsetzen per Last-Event-ID. Liegt im Paket service, weil backlog paketintern ist.
+ */
+class BookChangeFeedTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private BookChangeFeed feed;
+
+    @AfterEach
+    void tearDown() {
+        if (feed != null) {
+            feed.stop();
+        }
+    }
+
+    @Test
+    void shouldResumeAfterLastEventId() {
+        feed = start(10, 10);
+        feed.onBookChanged(BookChangedEvent.created(book(1L)));
+        feed.onBookChanged(BookChangedEvent.patched(1L, 1L, new BookPatch(null, null, 4, null, null, null)));
+        feed.onBookChanged(BookChangedEvent.deleted(1L));
+
+        BookChangeFeed.Backlog backlog = feed.backlog(feed.eventId(1));
+
+        assertFalse(backlog.reset());
+        assertEquals(List.of(2L, 3L), backlog.entries().stream().map(BookChangeFeed.Entry::sequence).toList());
+        assertEquals(new BookChange("updated", 1L, 1L, Map.of("rating", 4)), backlog.entries().get(0).change());
+        assertEquals(new BookChange("deleted", 1L, null, Map.of()), backlog.entries().get(1).change());
+        assertTrue(feed.backlog(feed.eventId(3)).entries().isEmpty());
+    }
+
+    @Test
+    void shouldSendAllFieldsOnCreate() {
+        feed = start(10, 10);
+        feed.onBookChanged(BookChangedEvent.created(book(5L)));
+
+        BookChange change = feed.backlog(feed.eventId(0)).entries().get(0).change();
+
+        assertEquals("created", change.type());
+        assertEquals(0L, change.version());
+        assertEquals("Der Hobbit", change.fields().get("title"));
+        assertTrue(change.fields().containsKey("comment"));
+    }
+
+    @Test
+    void shouldResetWhenLastEventIdFellOutOfBuffer() {
+        feed = start(2, 10);
+        for (long id = 1; id <= 3; id++) {
+            feed.onBookChanged(BookChangedEvent.deleted(id));
+        }
+
+        assertTrue(feed.backlog(feed.eventId(0)).reset());
+        assertEquals(List.of(2L, 3L), feed.backlog(feed.eventId(1)).entries().stream().map(BookChangeFeed.Entry::sequence).toList());
+    }
+
+    @Test
+    void shouldResetForUnknownOrForeignEventId() {
+        feed = start(10, 10);
+        feed.onBookChanged(BookChangedEvent.deleted(1L));
+
+        assertTrue(feed.backlog("abc-1").reset());
+        assertTrue(feed.backlog("kaputt").reset());
+        assertTrue(feed.backlog(feed.eventId(5)).reset());
+        BookChangeFeed.Backlog live = feed.backlog(null);
+        assertFalse(live.reset());
+        assertTrue(live.entries().isEmpty());
+        assertEquals(1L, live.lastSequence());
+    }
+
+    @Test
+    void shouldRejectSubscribersBeyondLimitOrWhenStopped() {
+        feed = start(10, 1);
+        feed.subscribe(null);
+
+        assertThrows(IllegalStateException.class, () -> feed.subscribe(null));
+        feed.stop();
+        assertEquals(0, feed.subscribers());
+        assertThrows(IllegalStateException.class, () -> feed.subscribe(null));
+    }
+
+    @Test
+    void shouldNotQueueBroadcastsWithoutSubscribers() throws Exception {
+        feed = start(10, 10, 1);
+        CountDownLatch release = block(feed);
+
+        for (long id = 1; id <= 5; id++) {
+            feed.onBookChanged(BookChangedEvent.deleted(id));
+        }
+
+        assertEquals(0, feed.queued());
+        release.countDown();
+        assertEquals(List.of(4L, 5L), feed.backlog(feed.eventId(3)).entries().stream().map(BookChangeFeed.Entry::sequence).toList());
+    }
+
+    @Test
+    void shouldResetAllStreamsWhenQueueIsFull() throws Exception {
+        feed = start(10, 10, 2);
+        feed.subscribe(null);
+        awaitQueued(0);
+        CountDownLatch release = block(feed);
+
+        for (long id = 1; id <= 5; id++) {
+            feed.onBookChanged(BookChangedEvent.deleted(id));
+        }
+
+        // Zwei Broadcasts passen in die Warteschlange, der dritte nicht, danach wird nichts mehr eingereiht
+        assertEquals(2, feed.queued());
+        assertEquals(0, resets());
+        release.countDown();
+        awaitQueued(0);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (resets() < 1 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(1, resets());
+
+        // Nach dem reset wird wieder normal gesendet
+        feed.onBookChanged(BookChangedEvent.deleted(6L));
+        awaitQueued(0);
+        assertEquals(1, resets());
+    }
+
+    private BookChangeFeed start(int bufferSize, int maxSubscribers) {
+        return start(bufferSize, maxSubscribers, 100);
+    }
+
+    private BookChangeFeed start(int bufferSize, int maxSubscribers, int queueSize) {
+        BookChangeFeed feed = new BookChangeFeed(registry, bufferSize, Duration.ofMinutes(1), Duration.ZERO, maxSubscribers, queueSize);
+        feed.start();
+        return feed;
+    }
+
+    // Hält den Sende-Thread an, bis der zurückgegebene Latch freigegeben wird
+    private static CountDownLatch block(BookChangeFeed feed) throws InterruptedException {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        assertTrue(feed.send(() -> {
+            running.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        running.await();
+        return release;
+    }
+
+    private void awaitQueued(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (feed.queued() != expected && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(expected, feed.queued());
+    }
+
+    private double resets() {
+        return registry.get("bookrate.changes.resets").counter().count();
+    }
+
+    private static Book book(Long id) {
+        Book book = new Book("Der Hobbit", "J. R. R. Tolkien", 5, null, "Fantasy", "Gelesen");
+        book.setId(id);
+        return book;
+    }
+}